@@ -1,16 +1,35 @@
 package com.estar.arbitrage;
 
+import com.estar.customcode.journal.JournalingOrderbookListener;
+import com.estar.customcode.journal.PriceJournal;
 import com.estar.customcode.processors.ManageOrderBook;
 import com.estar.orderbook.generator.PriceGenerator;
 import com.estar.orderbook.model.OrderbookListener;
 import com.estar.orderbook.model.Price;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 public class Application {
-	
-	public static void main(String[] args) throws InterruptedException {
+	private static final long JOURNAL_SEGMENT_SIZE = 64L << 20;
+
+	/**
+	 * @param args optional directory the price updates are journaled to
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
 		PriceGenerator priceGenerator = new PriceGenerator(100);
-		OrderbookListener orderbookListener = new ManageOrderBook();
-		priceGenerator.subscribe(orderbookListener);
+		ManageOrderBook orderbookListener = new ManageOrderBook();
+		JournalingOrderbookListener journalingListener = args.length > 0 ? new JournalingOrderbookListener(
+				orderbookListener, new PriceJournal(Path.of(args[0]), JOURNAL_SEGMENT_SIZE)) : null;
+		OrderbookListener listener = journalingListener != null ? journalingListener : orderbookListener;
+		// one hook, hooks run concurrently: the listener drains before the journal is closed
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			orderbookListener.close();
+			if (journalingListener != null) {
+				journalingListener.close();
+			}
+		}));
+		priceGenerator.subscribe(listener);
 		Thread.sleep(1000000000);
 	}
 }
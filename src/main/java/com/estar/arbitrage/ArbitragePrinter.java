@@ -4,13 +4,38 @@ public class ArbitragePrinter implements ArbitrageProcessor {
 
 	@Override
 	public void reportArbitrage(ArbitrageRecord arbitrageRecord) {
-		System.out.println("Arbitrage with factor " + arbitrageRecord.factor() + " detected for:");
+		System.out.print(format(arbitrageRecord, new StringBuilder()));
+	}
+
+	/**
+	 * appends the lines printed for the record
+	 *
+	 * @param arbitrageRecord
+	 * @param text
+	 * @return the text appended to
+	 */
+	public static StringBuilder format(ArbitrageRecord arbitrageRecord, StringBuilder text) {
+		if (arbitrageRecord.event() == null) {
+			text.append("Arbitrage with factor ").append(arbitrageRecord.factor()).append(" detected for:\n");
+		} else {
+			text.append("Arbitrage ").append(arbitrageRecord.event()).append(" with factor ").append(arbitrageRecord.factor())
+					.append(", peak factor ").append(arbitrageRecord.peakFactor())
+					.append(", open for ").append(arbitrageRecord.openNanos() / 1_000).append(" us:\n");
+		}
+		if (arbitrageRecord.currencyPath() != null) {
+			text.append(String.join(" -> ", arbitrageRecord.currencyPath())).append('\n');
+		}
+		if (arbitrageRecord.executableNotional() != null) {
+			text.append("Executable notional ").append(arbitrageRecord.executableNotional()).append(' ')
+					.append(arbitrageRecord.currencyPath().get(0)).append(" with volume weighted factor ")
+					.append(arbitrageRecord.volumeWeightedFactor()).append('\n');
+		}
 		for(ArbitrageRecord.Element arbitrageRouteNode : arbitrageRecord.arbitrageElements()) {
-			System.out.println(arbitrageRouteNode.currencyPair() 
-					+ " - Best Bid: " + arbitrageRouteNode.bestBidPrice().price()
-					+ " - Best Ask: " + arbitrageRouteNode.bestAskPrice().price());
+			text.append(arbitrageRouteNode.currencyPair())
+					.append(" - Best Bid: ").append(arbitrageRouteNode.bestBidPrice().price())
+					.append(" - Best Ask: ").append(arbitrageRouteNode.bestAskPrice().price()).append('\n');
 		}
-		
+		return text;
 	}
 
 }
@@ -3,7 +3,6 @@ package com.estar.arbitrage;
 import java.math.BigDecimal;
 import java.util.List;
 
-import com.estar.orderbook.model.CurrencyPair;
 import com.estar.orderbook.model.Price;
 
 /**
@@ -12,14 +11,69 @@ import com.estar.orderbook.model.Price;
  * The factor describes how much profit can be made by using the arbitrage opportunity without factoring in the quantity.
  * E.g. If you can turn 1€ into 1.2€, the factor would be 1.2.
  * 
+ * The currencyPath is the cycle in trading order as currency codes, starting and ending with the same currency, and
+ * the elements are in the same order. The currency pair of an element is its symbol, BASE_QUOTE.
+ * 
+ * If the opportunity was sized over the depth of the orderbooks, the executableNotional is the largest amount of the
+ * first currency of the path which can be traded round the cycle at a profit and the volumeWeightedFactor the profit made on it,
+ * e.g. 0.002 if 1000€ turn into 1002€. If not even the best levels pay the notional is 0 and the volumeWeightedFactor
+ * the one of the best levels.
+ * 
  * The elements contain snapshots of the orderbooks used for the arbitrage.
  * For each CurrencyPair used, both orderbook sides are contained, even though only one side is used for the arbitrage.
+ * 
+ * The snapshotEpoch is the epoch of the orderbooks the arbitrage was detected on, the elements are the best prices
+ * of that snapshot. It is -1 if the elements were read from the orderbooks when reporting.
+ * 
+ * If opportunities are tracked, a record is only reported when its cycle changes and the event says how: OPENED when
+ * the cycle starts to pay, UPDATED when its factor moved beyond the tolerance and CLOSED when it stopped paying. A CLOSED
+ * record repeats the last reported record of the cycle. The openNanos is the time the opportunity has been open and the
+ * peakFactor the largest factor it had so far. Without tracking the event and peakFactor are null.
  */
 public record ArbitrageRecord(BigDecimal factor,
-		List<Element> arbitrageElements) {
+		List<Element> arbitrageElements,
+		List<String> currencyPath,
+		BigDecimal volumeWeightedFactor,
+		BigDecimal executableNotional,
+		long snapshotEpoch,
+		Event event,
+		long openNanos,
+		BigDecimal peakFactor) {
+
+	/**
+	 * record without currency path and sizing, they are null
+	 */
+	public ArbitrageRecord(BigDecimal factor, List<Element> arbitrageElements) {
+		this(factor, arbitrageElements, null, null, null, -1);
+	}
+
+	/**
+	 * record of a cycle without tracking, the event and peak factor are null
+	 */
+	public ArbitrageRecord(BigDecimal factor, List<Element> arbitrageElements, List<String> currencyPath,
+			BigDecimal volumeWeightedFactor, BigDecimal executableNotional, long snapshotEpoch) {
+		this(factor, arbitrageElements, currencyPath, volumeWeightedFactor, executableNotional, snapshotEpoch, null, 0, null);
+	}
+
+	/**
+	 * @param event
+	 * @param openNanos
+	 * @param peakFactor
+	 * @return the same record as a lifecycle event
+	 */
+	public ArbitrageRecord withEvent(Event event, long openNanos, BigDecimal peakFactor) {
+		return new ArbitrageRecord(factor, arbitrageElements, currencyPath, volumeWeightedFactor, executableNotional,
+				snapshotEpoch, event, openNanos, peakFactor);
+	}
+
+	public enum Event {
+		OPENED,
+		UPDATED,
+		CLOSED
+	}
 	
 	public static record Element(
-			CurrencyPair currencyPair,
+			String currencyPair,
 			Price bestBidPrice,
 			Price bestAskPrice) {}
 }
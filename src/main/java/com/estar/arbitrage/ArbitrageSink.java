@@ -0,0 +1,21 @@
+package com.estar.arbitrage;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of the formatted arbitrage records of an {@link AsyncArbitrageProcessor}, only ever written
+ * by its writer thread.
+ */
+public interface ArbitrageSink extends Closeable {
+
+    /**
+     * writes a batch of formatted records
+     *
+     * @param text
+     * @throws IOException
+     */
+    void write(CharSequence text) throws IOException;
+
+    void flush() throws IOException;
+}
@@ -0,0 +1,202 @@
+package com.estar.arbitrage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes the reporting of the records off the detection thread. A record is only offered to a bounded
+ * queue, a writer thread of its own takes the records in batches, formats them like the
+ * {@link ArbitragePrinter} and writes each batch with one write to the {@link ArbitrageSink}.
+ * <p>
+ * Reporting never waits for the writer: when the queue is full the {@link OverflowPolicy} drops a record
+ * and the drop is counted, so a slow sink can not stall the detection or, through it, the book updates.
+ * Records are written in the order they were reported. The sink is only used by the writer thread, it is
+ * also the one closing it once it stopped.
+ */
+public class AsyncArbitrageProcessor implements ArbitrageProcessor, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncArbitrageProcessor.class);
+    private static final long IDLE_POLL_MS = 10;
+
+    public enum OverflowPolicy {
+        /**
+         * the record reported to a full queue is dropped
+         */
+        DROP_NEWEST,
+        /**
+         * the oldest record waiting in a full queue is dropped to make room for the reported one
+         */
+        DROP_OLDEST
+    }
+
+    private final ArrayBlockingQueue<ArbitrageRecord> queue;
+    private final ArbitrageSink sink;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writerThread;
+    // only used by the writer thread
+    private final List<ArbitrageRecord> batch;
+    private final StringBuilder text = new StringBuilder();
+
+    private final AtomicLong reported = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param sink
+     * @param queueSize      number of records waiting for the writer at most
+     * @param batchSize      number of records written at once at most
+     * @param overflowPolicy
+     * @param threadName
+     */
+    public AsyncArbitrageProcessor(ArbitrageSink sink, int queueSize, int batchSize, OverflowPolicy overflowPolicy,
+                                   String threadName) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.sink = sink;
+        this.batchSize = Math.max(1, batchSize);
+        this.overflowPolicy = overflowPolicy;
+        this.batch = new ArrayList<>(this.batchSize);
+        this.writerThread = new Thread(this::writeRecords, threadName);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void reportArbitrage(ArbitrageRecord arbitrageRecord) {
+        reported.incrementAndGet();
+        if (queue.offer(arbitrageRecord)) {
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+            while (!queue.offer(arbitrageRecord)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of records reported so far
+     */
+    public long getReported() {
+        return reported.get();
+    }
+
+    /**
+     * @return number of records dropped for a full queue
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of records written to the sink
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return number of records lost because the sink failed to write them
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of writes to the sink
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return number of records waiting for the writer
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * stops the writer after it wrote the records still queued, the writer then closes the sink. A writer
+     * still busy after the timeout keeps writing and closes the sink when it is done, the sink is never
+     * closed under a write.
+     *
+     * @param timeoutMs time to wait for the writer thread, 0 waits until it is done
+     * @return true if the writer stopped and closed the sink within the timeout
+     */
+    public boolean close(long timeoutMs) {
+        running = false;
+        try {
+            writerThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            LOG.warn("Arbitrage writer still busy after {} ms with {} records queued, it closes the sink when done",
+                    timeoutMs, queue.size());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        close(0);
+    }
+
+    private void writeRecords() {
+        try {
+            drainQueue();
+        } finally {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOG.warn("Can not close the arbitrage sink: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void drainQueue() {
+        while (running || !queue.isEmpty()) {
+            ArbitrageRecord first;
+            try {
+                first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, batchSize - 1);
+            text.setLength(0);
+            for (ArbitrageRecord arbitrageRecord : batch) {
+                ArbitragePrinter.format(arbitrageRecord, text);
+            }
+            try {
+                sink.write(text);
+                sink.flush();
+                written.addAndGet(batch.size());
+            } catch (IOException e) {
+                failed.addAndGet(batch.size());
+                LOG.warn("Can not write {} arbitrage records: {}", batch.size(), e.getMessage());
+            }
+            batches.incrementAndGet();
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.estar.arbitrage;
+
+import java.io.PrintStream;
+
+/**
+ * Writes the records to a print stream, stdout by default. The stream is not closed with the sink.
+ */
+public class ConsoleSink implements ArbitrageSink {
+    private final PrintStream out;
+
+    public ConsoleSink() {
+        this(System.out);
+    }
+
+    public ConsoleSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(CharSequence text) {
+        out.append(text);
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+    }
+}
@@ -0,0 +1,211 @@
+package com.estar.arbitrage;
+
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.collections.LongIntHashIndex;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Turns the cycles kept by every detection run into lifecycle events, so an opportunity is reported when
+ * it opens, when its factor moved by more than the tolerance since it was last reported and when it closes,
+ * not on every run it persists. The opportunity is keyed by its cycle, {@link TopCycles} keeps the cycles
+ * in trading order from their smallest currency, so the currency ids packed into a long identify the cycle
+ * whatever currency the detection started from.
+ * <p>
+ * The open opportunities live in parallel arrays by slot, found by key in a {@link LongIntHashIndex}. A run
+ * where the cycle is not among the kept cycles closes it, so a cycle dropping out of the top cycles closes
+ * as well. A run which only looked at some cycles, like one answered from the cache of a
+ * {@link com.estar.customcode.algo.HotCycleDetector}, does not close anything, the cycles it did not see are
+ * closed by the next complete run. Records are only built for the events. The class is not thread safe, it is used by the thread
+ * running the detection.
+ */
+public class OpportunityTracker {
+    private final double tolerance;
+    private final int bitsPerCurrency;
+    private final int maxCycleLength;
+    private final LongIntHashIndex index;
+
+    // open opportunities by slot, the first size slots are in use
+    private long[] keys;
+    private long[] openedAt;
+    private double[] reportedFactors;
+    private double[] peakFactors;
+    private long[] lastSeen;
+    private ArbitrageRecord[] lastRecords;
+    private int size;
+    private long run;
+
+    private long opened;
+    private long updated;
+    private long closed;
+    private long suppressed;
+
+    /**
+     * @param tolerance             change of the factor reported as UPDATED, smaller changes are not reported
+     * @param currencyCount         number of currencies of the graph
+     * @param expectedOpportunities
+     */
+    public OpportunityTracker(double tolerance, int currencyCount, int expectedOpportunities) {
+        this.tolerance = tolerance;
+        this.bitsPerCurrency = 32 - Integer.numberOfLeadingZeros(currencyCount);
+        this.maxCycleLength = 63 / bitsPerCurrency;
+        this.index = new LongIntHashIndex(expectedOpportunities);
+        int capacity = Math.max(4, expectedOpportunities);
+        this.keys = new long[capacity];
+        this.openedAt = new long[capacity];
+        this.reportedFactors = new double[capacity];
+        this.peakFactors = new double[capacity];
+        this.lastSeen = new long[capacity];
+        this.lastRecords = new ArbitrageRecord[capacity];
+    }
+
+    /**
+     * reports the events of a detection run
+     *
+     * @param topCycles          cycles kept by the run
+     * @param nowNanos           time of the run
+     * @param records            builds the record of a cycle by rank
+     * @param arbitrageProcessor
+     */
+    public void track(TopCycles topCycles, long nowNanos, IntFunction<ArbitrageRecord> records,
+                      ArbitrageProcessor arbitrageProcessor) {
+        track(topCycles, nowNanos, records, arbitrageProcessor, true);
+    }
+
+    /**
+     * reports the events of a detection run
+     *
+     * @param topCycles          cycles kept by the run
+     * @param nowNanos           time of the run
+     * @param records            builds the record of a cycle by rank
+     * @param arbitrageProcessor
+     * @param complete           false if the run only looked at some cycles, the open opportunities it did
+     *                           not keep stay open then
+     */
+    public void track(TopCycles topCycles, long nowNanos, IntFunction<ArbitrageRecord> records,
+                      ArbitrageProcessor arbitrageProcessor, boolean complete) {
+        run++;
+        for (int rank = 0; rank < topCycles.size(); rank++) {
+            long key = key(topCycles, rank);
+            double factor = topCycles.getFactor(rank);
+            int slot = index.get(key);
+            if (slot == LongIntHashIndex.NOT_FOUND) {
+                slot = open(key, nowNanos, factor);
+                lastRecords[slot] = records.apply(rank);
+                opened++;
+                report(slot, ArbitrageRecord.Event.OPENED, nowNanos, arbitrageProcessor);
+                continue;
+            }
+            lastSeen[slot] = run;
+            peakFactors[slot] = Math.max(peakFactors[slot], factor);
+            if (Math.abs(factor - reportedFactors[slot]) > tolerance) {
+                reportedFactors[slot] = factor;
+                lastRecords[slot] = records.apply(rank);
+                updated++;
+                report(slot, ArbitrageRecord.Event.UPDATED, nowNanos, arbitrageProcessor);
+            } else {
+                suppressed++;
+            }
+        }
+        if (!complete) {
+            return;
+        }
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (lastSeen[slot] != run) {
+                closed++;
+                report(slot, ArbitrageRecord.Event.CLOSED, nowNanos, arbitrageProcessor);
+                close(slot);
+            }
+        }
+    }
+
+    /**
+     * @return number of opportunities open after the last run
+     */
+    public int getOpenOpportunities() {
+        return size;
+    }
+
+    public long getOpened() {
+        return opened;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getClosed() {
+        return closed;
+    }
+
+    /**
+     * @return number of times an open opportunity was kept by a run without being reported
+     */
+    public long getSuppressed() {
+        return suppressed;
+    }
+
+    private void report(int slot, ArbitrageRecord.Event event, long nowNanos, ArbitrageProcessor arbitrageProcessor) {
+        arbitrageProcessor.reportArbitrage(lastRecords[slot].withEvent(event, nowNanos - openedAt[slot],
+                ArbitrageFactorFinder.toBigDecimal(peakFactors[slot])));
+    }
+
+    private int open(long key, long nowNanos, double factor) {
+        if (size == keys.length) {
+            grow(size << 1);
+        }
+        int slot = size++;
+        keys[slot] = key;
+        openedAt[slot] = nowNanos;
+        reportedFactors[slot] = factor;
+        peakFactors[slot] = factor;
+        lastSeen[slot] = run;
+        index.put(key, slot);
+        return slot;
+    }
+
+    /**
+     * frees the slot, the last slot in use fills the gap
+     */
+    private void close(int slot) {
+        index.remove(keys[slot]);
+        int last = --size;
+        if (slot != last) {
+            keys[slot] = keys[last];
+            openedAt[slot] = openedAt[last];
+            reportedFactors[slot] = reportedFactors[last];
+            peakFactors[slot] = peakFactors[last];
+            lastSeen[slot] = lastSeen[last];
+            lastRecords[slot] = lastRecords[last];
+            index.put(keys[slot], slot);
+        }
+        lastRecords[last] = null;
+    }
+
+    /**
+     * currency ids + 1 of the cycle packed into a long, unique as the cycles are in trading order from
+     * their smallest currency
+     */
+    private long key(TopCycles topCycles, int rank) {
+        int length = topCycles.getCycleLength(rank);
+        if (length > maxCycleLength) {
+            throw new IllegalArgumentException("Cycle of " + length + " currencies can not be tracked, at most " + maxCycleLength);
+        }
+        long key = 0;
+        for (int k = 0; k < length; k++) {
+            key = key << bitsPerCurrency | (topCycles.getCycleVertex(rank, k) + 1);
+        }
+        return key;
+    }
+
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        openedAt = Arrays.copyOf(openedAt, capacity);
+        reportedFactors = Arrays.copyOf(reportedFactors, capacity);
+        peakFactors = Arrays.copyOf(peakFactors, capacity);
+        lastSeen = Arrays.copyOf(lastSeen, capacity);
+        lastRecords = Arrays.copyOf(lastRecords, capacity);
+    }
+}
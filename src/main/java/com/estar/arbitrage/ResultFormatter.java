@@ -1,35 +1,140 @@
 package com.estar.arbitrage;
 
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.InstrumentRegistry;
 import com.estar.customcode.processors.OrderBook;
 import com.estar.orderbook.model.CurrencyPair;
-import lombok.AllArgsConstructor;
 import lombok.NonNull;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntConsumer;
 
+/**
+ * Builds the {@link ArbitrageRecord}s of the results and hands them to the processor. The currencies and
+ * pairs of the records are the codes and symbols of the instrument registry the graph was built from.
+ *
+ * @param instrumentRegistry registry of the graph the results are found on
+ * @param orderBooks         books by pair id, only read for the factor map of the first versions
+ * @param arbitrageProcessor
+ */
+public record ResultFormatter(@NonNull InstrumentRegistry instrumentRegistry, @NonNull OrderBook[] orderBooks,
+                              @NonNull ArbitrageProcessor arbitrageProcessor) {
 
-public record ResultFormatter(@NonNull Map<CurrencyPair, OrderBook> orderBooks, @NonNull ArbitrageProcessor arbitrageProcessor) {
+    /**
+     * groups the pairs by factor and reports one record per factor, nothing is reported for an empty map.
+     * The pairs are the ones of {@link InstrumentRegistry#forCurrencyPairs()}.
+     *
+     * @param arbitrageCurrencyMap
+     */
     public void processArbitrageRecord(Map<CurrencyPair, BigDecimal> arbitrageCurrencyMap) {
-        ArbitrageRecord arbitrageRecord = null;
-        Map<BigDecimal, ArbitrageRecord> factorArbitrageMap = new HashMap<>();
+        Map<BigDecimal, ArbitrageRecord> factorArbitrageMap = new LinkedHashMap<>();
         for (Map.Entry<CurrencyPair, BigDecimal> arbitrageCurrency : arbitrageCurrencyMap.entrySet()) {
             CurrencyPair currencyPair = arbitrageCurrency.getKey();
-            OrderBook orderBook = orderBooks.get(currencyPair);
-            ArbitrageRecord.Element element = new ArbitrageRecord.Element(currencyPair, orderBook.getBestBuy(), orderBook.getBestSell());
-            if (factorArbitrageMap.containsKey(arbitrageCurrency.getValue())) {
-                arbitrageRecord = factorArbitrageMap.get(arbitrageCurrency.getValue());
-                arbitrageRecord.arbitrageElements().add(element);
-            } else {
-                List<ArbitrageRecord.Element> elements = new ArrayList<>();
-                elements.add(element);
-                arbitrageRecord = new ArbitrageRecord(arbitrageCurrency.getValue(), elements);
-                factorArbitrageMap.put(arbitrageCurrency.getValue(), arbitrageRecord);
+            ArbitrageRecord arbitrageRecord = factorArbitrageMap.computeIfAbsent(arbitrageCurrency.getValue(),
+                    factor -> new ArbitrageRecord(factor, new ArrayList<>()));
+            arbitrageRecord.arbitrageElements().add(element(currencyPair));
+        }
+        factorArbitrageMap.values().forEach(arbitrageProcessor::reportArbitrage);
+    }
+
+    /**
+     * reports one record per kept cycle from the most to the least profitable, with the pairs in trading
+     * order and the sizing of the cycle if it was sized. The prices of the pairs are the ones of the snapshot
+     * the cycles were detected on, the books are not read again.
+     *
+     * @param topCycles
+     * @param snapshot  best prices the detection ran on
+     */
+    public void processArbitrageRecord(TopCycles topCycles, BestPriceMatrix snapshot) {
+        processArbitrageRecord(topCycles, snapshot, rank -> {
+        });
+    }
+
+    /**
+     * reports one record per kept cycle like {@link #processArbitrageRecord(TopCycles, BestPriceMatrix)},
+     * sizing every cycle right before its record is built
+     *
+     * @param topCycles
+     * @param snapshot  best prices the detection ran on
+     * @param sizing    sizes the cycle of a rank in the top cycles
+     */
+    public void processArbitrageRecord(TopCycles topCycles, BestPriceMatrix snapshot, IntConsumer sizing) {
+        for (int rank = 0; rank < topCycles.size(); rank++) {
+            sizing.accept(rank);
+            arbitrageProcessor.reportArbitrage(toRecord(topCycles, rank, snapshot));
+        }
+    }
+
+    /**
+     * reports only the changes of the kept cycles, as OPENED, UPDATED and CLOSED events of the tracker.
+     * Has to be called after every detection run, also without cycles, so closed opportunities are seen.
+     *
+     * Only the cycles of OPENED and UPDATED events are sized, when their record is built.
+     *
+     * @param topCycles
+     * @param snapshot           best prices the detection ran on
+     * @param opportunityTracker
+     * @param sizing             sizes the cycle of a rank in the top cycles
+     */
+    public void processArbitrageEvents(TopCycles topCycles, BestPriceMatrix snapshot, OpportunityTracker opportunityTracker,
+                                       IntConsumer sizing) {
+        processArbitrageEvents(topCycles, snapshot, opportunityTracker, sizing, true);
+    }
+
+    /**
+     * like {@link #processArbitrageEvents(TopCycles, BestPriceMatrix, OpportunityTracker, IntConsumer)} for
+     * a run which may only have looked at some cycles
+     *
+     * @param topCycles
+     * @param snapshot           best prices the detection ran on
+     * @param opportunityTracker
+     * @param sizing             sizes the cycle of a rank in the top cycles
+     * @param complete           false if the run only looked at some cycles, nothing is closed then
+     */
+    public void processArbitrageEvents(TopCycles topCycles, BestPriceMatrix snapshot, OpportunityTracker opportunityTracker,
+                                       IntConsumer sizing, boolean complete) {
+        opportunityTracker.track(topCycles, System.nanoTime(), rank -> {
+            sizing.accept(rank);
+            return toRecord(topCycles, rank, snapshot);
+        }, arbitrageProcessor, complete);
+    }
+
+    private ArbitrageRecord toRecord(TopCycles topCycles, int rank, BestPriceMatrix snapshot) {
+        int length = topCycles.getCycleLength(rank);
+        List<String> currencyPath = new ArrayList<>(length + 1);
+        List<ArbitrageRecord.Element> elements = new ArrayList<>(length);
+        for (int k = 0; k <= length; k++) {
+            currencyPath.add(instrumentRegistry.currencyCode(topCycles.getCycleVertex(rank, k % length)));
+        }
+        for (int k = 0; k < length; k++) {
+            int pair = instrumentRegistry.pairBetween(topCycles.getCycleVertex(rank, k),
+                    topCycles.getCycleVertex(rank, (k + 1) % length));
+            if (pair == InstrumentRegistry.NO_ID) {
+                throw new IllegalArgumentException("No currency pair for " + currencyPath.get(k) + " and " + currencyPath.get(k + 1));
             }
+            elements.add(new ArbitrageRecord.Element(instrumentRegistry.pairSymbol(pair),
+                    snapshot.getBuyPrice(pair), snapshot.getSellPrice(pair)));
         }
-        arbitrageProcessor.reportArbitrage(arbitrageRecord);
+        double volumeWeightedFactor = topCycles.getVolumeWeightedFactor(rank);
+        double notional = topCycles.getNotional(rank);
+        return new ArbitrageRecord(
+                ArbitrageFactorFinder.toBigDecimal(topCycles.getFactor(rank)),
+                elements,
+                currencyPath,
+                Double.isNaN(volumeWeightedFactor) ? null : ArbitrageFactorFinder.toBigDecimal(volumeWeightedFactor),
+                Double.isNaN(notional) ? null : BigDecimal.valueOf(notional).setScale(2, RoundingMode.FLOOR),
+                snapshot.getEpoch());
+    }
+
+    private ArbitrageRecord.Element element(CurrencyPair currencyPair) {
+        OrderBook orderBook = orderBooks[currencyPair.ordinal()];
+        return new ArbitrageRecord.Element(currencyPair.name(), orderBook.getBestBuy(), orderBook.getBestSell());
     }
 }
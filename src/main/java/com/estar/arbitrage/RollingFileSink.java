@@ -0,0 +1,88 @@
+package com.estar.arbitrage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the records to {@code <prefix>.log} in a directory. A batch which would take the file over the
+ * max size first rolls it: {@code <prefix>.log} becomes {@code <prefix>.1.log}, {@code <prefix>.1.log}
+ * becomes {@code <prefix>.2.log} and so on, the oldest file beyond the max number of files is deleted. A
+ * batch is never split over two files, so a single batch larger than the max size still goes into one file.
+ */
+public class RollingFileSink implements ArbitrageSink {
+    private final Path directory;
+    private final String prefix;
+    private final long maxBytes;
+    private final int maxFiles;
+    private OutputStream out;
+    private long size;
+
+    /**
+     * @param directory
+     * @param prefix    name of the files without the suffix
+     * @param maxBytes  size at which a file is rolled
+     * @param maxFiles  number of files kept including the current one
+     * @throws IOException
+     */
+    public RollingFileSink(Path directory, String prefix, long maxBytes, int maxFiles) throws IOException {
+        if (maxBytes < 1 || maxFiles < 1) {
+            throw new IllegalArgumentException("Max size and number of files have to be positive");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        Files.createDirectories(directory);
+        open();
+    }
+
+    @Override
+    public void write(CharSequence text) throws IOException {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        if (size > 0 && size + bytes.length > maxBytes) {
+            roll();
+        }
+        out.write(bytes);
+        size += bytes.length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * @param index 0 for the current file
+     * @return
+     */
+    Path file(int index) {
+        return directory.resolve(index == 0 ? prefix + ".log" : prefix + "." + index + ".log");
+    }
+
+    private void roll() throws IOException {
+        out.close();
+        Files.deleteIfExists(file(maxFiles - 1));
+        for (int index = maxFiles - 2; index >= 0; index--) {
+            if (Files.exists(file(index))) {
+                Files.move(file(index), file(index + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        open();
+    }
+
+    private void open() throws IOException {
+        Path file = file(0);
+        out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        size = Files.size(file);
+    }
+}
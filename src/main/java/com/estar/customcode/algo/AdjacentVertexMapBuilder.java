@@ -1,6 +1,8 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.BestPriceMatrix;
 import com.estar.customcode.model.Edge;
+import com.estar.customcode.model.PricePrecision;
 import com.estar.customcode.model.Vertex;
 import com.estar.orderbook.model.CurrencyPair;
 
@@ -20,26 +22,33 @@ public class AdjacentVertexMapBuilder {
      * @return
      */
     public Map<Vertex, List<Edge>> build(Map<CurrencyPair, BigDecimal[]> currencyMatrix) {
+        return build(BestPriceMatrix.of(currencyMatrix, PricePrecision.defaults()));
+    }
+
+    /**
+     * Creates adjacent vertices for the best prices in ticks, the -log values of the edges are the weights
+     * kept by the matrix
+     *
+     * @param bestPriceMatrix
+     * @return
+     */
+    public Map<Vertex, List<Edge>> build(BestPriceMatrix bestPriceMatrix) {
         Map<Vertex, List<Edge>> adjacentVertexMap = new HashMap<>();
-        for (Map.Entry<CurrencyPair, BigDecimal[]> currencyEntry : currencyMatrix.entrySet()) {
-            CurrencyPair currencyPair = currencyEntry.getKey();
-            String baseCurrency = currencyPair.getBaseCurrency().name();
-            String quoteCurrency = currencyPair.getQuoteCurrency().name();
-            BigDecimal buy = currencyEntry.getValue()[0].setScale(4, RoundingMode.HALF_UP);
-            BigDecimal sell = currencyEntry.getValue()[1].setScale(4, RoundingMode.HALF_UP);
-            addEdge(adjacentVertexMap, new Vertex(baseCurrency), new Vertex(quoteCurrency), buy);
-            addEdge(adjacentVertexMap, new Vertex(quoteCurrency), new Vertex(baseCurrency), sell);
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            if (!bestPriceMatrix.contains(currencyPair.ordinal())) {
+                continue;
+            }
+            Vertex baseCurrency = new Vertex(currencyPair.getBaseCurrency().name(), currencyPair.getBaseCurrency().ordinal());
+            Vertex quoteCurrency = new Vertex(currencyPair.getQuoteCurrency().name(), currencyPair.getQuoteCurrency().ordinal());
+            addEdge(adjacentVertexMap, baseCurrency, quoteCurrency, bestPriceMatrix.getBuyWeight(currencyPair.ordinal()));
+            addEdge(adjacentVertexMap, quoteCurrency, baseCurrency, bestPriceMatrix.getSellWeight(currencyPair.ordinal()));
         }
         return adjacentVertexMap;
     }
 
-    private void addEdge(Map<Vertex, List<Edge>> adjacentVertexMap, Vertex start, Vertex end, BigDecimal weight) {
-        Edge edge = new Edge(start, end, modifyEdgeWeight(weight));
+    private void addEdge(Map<Vertex, List<Edge>> adjacentVertexMap, Vertex start, Vertex end, double weight) {
+        Edge edge = new Edge(start, end, BigDecimal.valueOf(weight).setScale(4, RoundingMode.HALF_UP));
         adjacentVertexMap.putIfAbsent(start, new LinkedList<>());
         adjacentVertexMap.get(start).add(edge);
     }
-
-    private BigDecimal modifyEdgeWeight(BigDecimal weight) {
-        return new BigDecimal(-Math.log(weight.doubleValue())).setScale(4, RoundingMode.HALF_UP);
-    }
 }
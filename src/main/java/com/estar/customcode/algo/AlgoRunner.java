@@ -1,5 +1,7 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.DenseGraph;
 import com.estar.customcode.model.Graph;
 import com.estar.orderbook.model.CurrencyPair;
 
@@ -13,4 +15,37 @@ public record AlgoRunner(CurrencyPairGraphBuilder currencyPairGraphBuilder,
         Graph graph = currencyPairGraphBuilder.build(instrumentData);
         return arbitragePathFinder.findCycles(graph);
     }
+
+    public Map<CurrencyPair, BigDecimal> runAlgorithm(BestPriceMatrix bestPriceMatrix) {
+        Graph graph = currencyPairGraphBuilder.build(bestPriceMatrix);
+        return arbitragePathFinder.findCycles(graph);
+    }
+
+    /**
+     * updates the weights of the reused graph in place and runs the detection into the reused result
+     *
+     * @param bestPriceMatrix
+     * @param graph           graph of all currency pairs
+     * @param result
+     * @return the result
+     */
+    public DetectionResult runAlgorithm(BestPriceMatrix bestPriceMatrix, DenseGraph graph, DetectionResult result) {
+        return runAlgorithm(bestPriceMatrix, graph, arbitragePathFinder, result);
+    }
+
+    /**
+     * same as {@link #runAlgorithm(BestPriceMatrix, DenseGraph, DetectionResult)} with another detector
+     *
+     * @param bestPriceMatrix
+     * @param graph
+     * @param detector
+     * @param result
+     * @return the result
+     */
+    public DetectionResult runAlgorithm(BestPriceMatrix bestPriceMatrix, DenseGraph graph, ArbitrageDetector detector,
+                                        DetectionResult result) {
+        graph.update(bestPriceMatrix);
+        detector.detect(graph, result);
+        return result;
+    }
 }
@@ -0,0 +1,17 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+
+/**
+ * Searches a {@link DenseGraph} for negative cycles. Implementations keep their working state between
+ * runs so a run does not allocate, a detector is therefore used by one thread at a time.
+ */
+public interface ArbitrageDetector {
+    /**
+     * clears the result and fills it with every pair on a negative cycle
+     *
+     * @param graph
+     * @param result
+     */
+    void detect(DenseGraph graph, DetectionResult result);
+}
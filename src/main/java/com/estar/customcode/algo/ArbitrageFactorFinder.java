@@ -1,5 +1,6 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.DenseGraph;
 import com.estar.customcode.model.Edge;
 import com.estar.customcode.model.Graph;
 import com.estar.customcode.model.Vertex;
@@ -27,18 +28,49 @@ public class ArbitrageFactorFinder {
                 }
             }
         }
-        return transformArbitrageValue(totalArbitrage);
+        return toBigDecimal(transformArbitrageValue(totalArbitrage.doubleValue()));
     }
 
     /**
-     * Converting back form -log to real value and subtracting from 1 just to have the difference
+     * Factor of a cycle on the dense graph without allocating. The cycle is in predecessor order as collected
+     * by walking the predecessors of a Bellman-Ford run, so the trade goes from cycle[i + 1] to cycle[i] and
+     * closes from cycle[0] to cycle[length - 1]. The sum is rounded to the decimal places of the weights.
+     *
+     * @param graph
+     * @param cycle  vertex ids in predecessor order
+     * @param length number of vertices in the cycle
+     * @return factor not rounded, NaN if an edge of the cycle is missing or inactive
+     */
+    public double findFactor(DenseGraph graph, int[] cycle, int length) {
+        double totalArbitrage = 0;
+        for (int i = 0; i < length; i++) {
+            int edge = graph.edge(cycle[(i + 1) % length], cycle[i]);
+            if (edge == DenseGraph.NO_EDGE || !graph.isActive(edge)) {
+                return Double.NaN;
+            }
+            totalArbitrage += graph.getWeight(edge);
+        }
+        return transformArbitrageValue(DenseGraph.roundWeight(totalArbitrage));
+    }
+
+    /**
+     * rounds the factor to the reported precision
+     *
+     * @param factor
+     * @return
+     */
+    public static BigDecimal toBigDecimal(double factor) {
+        return new BigDecimal(factor).setScale(3, RoundingMode.CEILING);
+    }
+
+    /**
+     * Converting back form -log to real value and subtracting 1 just to have the difference. The weights
+     * are natural logarithms, so the product of the rates is e to the minus sum of the weights.
      *
      * @param totalArbitrage
      * @return
      */
-    private BigDecimal transformArbitrageValue(BigDecimal totalArbitrage) {
-        double unLoggedArbitrage = Math.pow(2.0, (totalArbitrage.doubleValue() * -1)) - 1;
-        BigDecimal value = new BigDecimal(unLoggedArbitrage).setScale(3, RoundingMode.CEILING);
-        return value;
+    double transformArbitrageValue(double totalArbitrage) {
+        return Math.exp(-totalArbitrage) - 1;
     }
 }
@@ -1,7 +1,9 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.DenseGraph;
 import com.estar.customcode.model.Edge;
 import com.estar.customcode.model.Graph;
+import com.estar.customcode.model.InstrumentRegistry;
 import com.estar.customcode.model.Vertex;
 import com.estar.orderbook.model.CurrencyPair;
 import lombok.AllArgsConstructor;
@@ -12,15 +14,20 @@ import java.math.BigDecimal;
 import java.util.*;
 
 @AllArgsConstructor(onConstructor = @__({@Inject}))
-public class ArbitragePathFinder {
+public class ArbitragePathFinder implements ArbitrageDetector {
+    private static final CurrencyPair[] CURRENCY_PAIRS = CurrencyPair.values();
 
     private final EdgeRelaxer edgeRelaxer;
     private final Map<Vertex, Double> distances = new HashMap<>();
     private final Map<Vertex, Vertex> predecessor = new HashMap<>();
+    private final ShortestPathState state = new ShortestPathState();
     @NonNull
     private final ArbitrageFactorFinder arbitrageFactorFinder;
+    /**
+     * registry of the {@link CurrencyPair} enum, see {@link InstrumentRegistry#forCurrencyPairs()}
+     */
     @NonNull
-    private final Map<String, CurrencyPair> currencyCodeCurrencyPair;
+    private final InstrumentRegistry instrumentRegistry;
 
 
     /**
@@ -86,8 +93,8 @@ public class ArbitragePathFinder {
             if (seenVertices.contains(e.getEndVertex())) continue;
 
             if (distances.get(e.getEndVertex()).doubleValue() > distances.get(e.getStartVertex()).doubleValue() + e.getWeight().doubleValue()) {
-                String arbitrageCurrencyPair = e.getStartVertex().getId() + "_" + e.getEndVertex().getId();
-                CurrencyPair currencyPair = currencyCodeCurrencyPair.get(arbitrageCurrencyPair);
+                CurrencyPair currencyPair = CURRENCY_PAIRS[instrumentRegistry.pairBetween(
+                        e.getStartVertex().getIndex(), e.getEndVertex().getIndex())];
                 ArrayList<Vertex> newCycle = new ArrayList<>();
                 Vertex vertex = e.getStartVertex();
                 do {
@@ -104,4 +111,72 @@ public class ArbitragePathFinder {
         return currencyArbitrageFactorMap;
     }
 
+    /**
+     * Same search as {@link #findCycles(Graph)} on the dense graph: a Bellman-Ford run from every currency,
+     * after each run the edges which can still be relaxed lead to a negative cycle. All working state is kept
+     * in arrays which are reused between runs.
+     *
+     * @param graph
+     * @param result
+     */
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        result.clear();
+        state.ensureCapacity(graph.getVertexCount());
+        for (int source = 0; source < graph.getVertexCount(); source++) {
+            if (graph.isActiveVertex(source)) {
+                findArbitrageCurrency(graph, source, state, result);
+            }
+        }
+    }
+
+    /**
+     * Bellman-Ford run from one currency on the given working state, records the cycles into the result.
+     * Runs for different sources only share the graph so they can run in parallel with their own state.
+     */
+    void findArbitrageCurrency(DenseGraph graph, int sourceVertex, ShortestPathState state, DetectionResult result) {
+        double[] distances = state.distances;
+        int[] predecessors = state.predecessors;
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            distances[v] = Double.POSITIVE_INFINITY;
+            predecessors[v] = v;
+        }
+        distances[sourceVertex] = 0.0;
+        edgeRelaxer.relaxEdges(graph, distances, predecessors);
+        getArbitrageCurrencyWithFactor(graph, state, result);
+    }
+
+    private void getArbitrageCurrencyWithFactor(DenseGraph graph, ShortestPathState state, DetectionResult result) {
+        double[] distances = state.distances;
+        int[] predecessors = state.predecessors;
+        boolean[] seenVertices = state.seen;
+        int[] cycle = state.cycle;
+        Arrays.fill(seenVertices, false);
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int start = graph.getFrom(e);
+            int end = graph.getTo(e);
+            if (seenVertices[end]) continue;
+
+            if (distances[end] > distances[start] + graph.getWeight(e)) {
+                // with the edge as predecessor of its end, walking the predecessors as many times as there are
+                // vertices ends on the cycle
+                predecessors[end] = start;
+                int cycleVertex = end;
+                for (int i = 0; i < graph.getVertexCount(); i++) {
+                    cycleVertex = predecessors[cycleVertex];
+                }
+                int length = 0;
+                int vertex = cycleVertex;
+                do {
+                    seenVertices[vertex] = true;
+                    cycle[length++] = vertex;
+                    vertex = predecessors[vertex];
+                } while (vertex != cycleVertex);
+                double arbitrageFactor = arbitrageFactorFinder.findFactor(graph, cycle, length);
+                if (arbitrageFactor > 0) {
+                    result.recordCycle(graph, arbitrageFactor, cycle, length);
+                }
+            }
+        }
+    }
 }
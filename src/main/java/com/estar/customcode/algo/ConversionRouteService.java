@@ -0,0 +1,188 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.ConversionRoute;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Answers "what is the best route from one currency to another right now" from a table of the best route
+ * between every two currencies, so a query never runs a search.
+ * <p>
+ * The table is computed from a {@link MinPlusArbitrageEngine} on a graph of its own built from the
+ * {@link InstrumentRegistry} of the books, which applies the
+ * pairs whose top of book changed to the all pairs matrix. After every {@link #update(BestPriceMatrix)}
+ * which changed a rate the successors and the edge weights are copied to an immutable snapshot published
+ * in a volatile field. Readers on any thread never lock and never wait for the thread updating the table,
+ * they see either the previous or the new table.
+ * <p>
+ * The route between two currencies is only built on its first query in a table, by the querying thread
+ * from the snapshot, and then kept with the table. An update never builds routes nobody asks for. Two
+ * threads asking for the same route at once can both build it, they build equal routes.
+ * <p>
+ * The rate of a route is the product of the rates of its conversions. While the books have an arbitrage
+ * the best routes are not defined, the table then holds the routes the successors still lead to and no
+ * route where they go round in a cycle.
+ */
+public class ConversionRouteService {
+    private final InstrumentRegistry instrumentRegistry;
+    private final DenseGraph graph;
+    private final MinPlusArbitrageEngine engine;
+    private final DetectionResult detectionResult;
+    private volatile RouteTable routeTable;
+
+    /**
+     * service of the {@link com.estar.orderbook.model.Currency} and {@link com.estar.orderbook.model.CurrencyPair}
+     * enums, see {@link InstrumentRegistry#forCurrencyPairs()}
+     *
+     * @param arbitrageFactorFinder
+     */
+    public ConversionRouteService(@NonNull ArbitrageFactorFinder arbitrageFactorFinder) {
+        this(InstrumentRegistry.forCurrencyPairs(), arbitrageFactorFinder);
+    }
+
+    /**
+     * @param instrumentRegistry registry of the pairs of the best prices, its instruments have to be added
+     *                           before, later ones are not routed through
+     * @param arbitrageFactorFinder
+     */
+    public ConversionRouteService(@NonNull InstrumentRegistry instrumentRegistry, @NonNull ArbitrageFactorFinder arbitrageFactorFinder) {
+        this.instrumentRegistry = instrumentRegistry;
+        this.graph = instrumentRegistry.toGraph();
+        this.engine = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        this.detectionResult = new DetectionResult(graph);
+        this.routeTable = new RouteTable(instrumentRegistry, graph, null, null, false);
+    }
+
+    /**
+     * applies the best prices and publishes a new table if a rate changed, to be called by one thread at a
+     * time
+     *
+     * @param bestPriceMatrix
+     */
+    public void update(BestPriceMatrix bestPriceMatrix) {
+        graph.update(bestPriceMatrix);
+        if (graph.getChangedEdgeCount() == 0) {
+            return;
+        }
+        engine.detect(graph, detectionResult);
+        int vertexCount = graph.getVertexCount();
+        int[] successors = new int[vertexCount * vertexCount];
+        for (int from = 0; from < vertexCount; from++) {
+            for (int to = 0; to < vertexCount; to++) {
+                successors[from * vertexCount + to] = engine.getSuccessor(from, to);
+            }
+        }
+        double[] weights = new double[graph.getEdgeCount()];
+        for (int edge = 0; edge < weights.length; edge++) {
+            weights[edge] = graph.isActive(edge) ? graph.getWeight(edge) : Double.POSITIVE_INFINITY;
+        }
+        routeTable = new RouteTable(instrumentRegistry, graph, successors, weights, !detectionResult.isEmpty());
+    }
+
+    /**
+     * @param from currency code
+     * @param to   currency code
+     * @return best route in the last published table, empty before the first prices or if no pair connects
+     * the currencies
+     * @throws IllegalArgumentException if a currency is not in the graph
+     */
+    public Optional<ConversionRoute> getRoute(@NonNull String from, @NonNull String to) {
+        return getRoute(currency(from), currency(to));
+    }
+
+    /**
+     * @param from currency id of the registry
+     * @param to   currency id of the registry
+     * @return best route in the last published table, empty before the first prices or if no pair connects
+     * the currencies
+     */
+    public Optional<ConversionRoute> getRoute(int from, int to) {
+        return routeTable.route(from, to);
+    }
+
+    /**
+     * @return true if the last published table was computed on books with an arbitrage
+     */
+    public boolean hasArbitrage() {
+        return routeTable.arbitrage;
+    }
+
+    private int currency(String code) {
+        int currency = instrumentRegistry.currencyId(code);
+        if (currency == InstrumentRegistry.NO_ID || currency >= graph.getVertexCount()) {
+            throw new IllegalArgumentException("Unknown currency " + code);
+        }
+        return currency;
+    }
+
+    /**
+     * immutable snapshot of the successors, successors[from * V + to], and of the weights by edge with the
+     * routes built from them so far, without successors before the first prices. The graph is only used for
+     * its edges, which never change, and the registry for the codes of the currencies.
+     */
+    private static final class RouteTable {
+        private final InstrumentRegistry instrumentRegistry;
+        private final DenseGraph graph;
+        private final int[] successors;
+        private final double[] weights;
+        private final boolean arbitrage;
+        // routes[from * V + to], null until the route is queried. Optional and the routes are immutable, a
+        // route seen by another thread is always complete
+        private final Optional<ConversionRoute>[] routes;
+
+        @SuppressWarnings("unchecked")
+        private RouteTable(InstrumentRegistry instrumentRegistry, DenseGraph graph, int[] successors, double[] weights,
+                           boolean arbitrage) {
+            this.instrumentRegistry = instrumentRegistry;
+            this.graph = graph;
+            this.successors = successors;
+            this.weights = weights;
+            this.arbitrage = arbitrage;
+            this.routes = new Optional[graph.getVertexCount() * graph.getVertexCount()];
+        }
+
+        private Optional<ConversionRoute> route(int from, int to) {
+            if (successors == null) {
+                return Optional.empty();
+            }
+            int index = from * graph.getVertexCount() + to;
+            Optional<ConversionRoute> route = routes[index];
+            if (route == null) {
+                route = Optional.ofNullable(buildRoute(from, to));
+                routes[index] = route;
+            }
+            return route;
+        }
+
+        /**
+         * follows the successors from one currency to the other, summing the weights of the edges on the
+         * way. A simple route has fewer conversions than there are currencies, a longer one goes round a
+         * cycle.
+         */
+        private ConversionRoute buildRoute(int from, int to) {
+            String[] path = new String[graph.getVertexCount()];
+            int length = 0;
+            double weight = 0;
+            int current = from;
+            path[length++] = instrumentRegistry.currencyCode(current);
+            while (current != to) {
+                int next = successors[current * graph.getVertexCount() + to];
+                int edge = next == DenseGraph.NO_EDGE ? DenseGraph.NO_EDGE : graph.edge(current, next);
+                if (edge == DenseGraph.NO_EDGE || weights[edge] == Double.POSITIVE_INFINITY || length == path.length) {
+                    return null;
+                }
+                weight += weights[edge];
+                path[length++] = instrumentRegistry.currencyCode(next);
+                current = next;
+            }
+            return new ConversionRoute(path[0], path[length - 1], List.of(Arrays.copyOf(path, length)),
+                    Math.exp(-weight));
+        }
+    }
+}
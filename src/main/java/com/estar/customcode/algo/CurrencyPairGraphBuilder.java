@@ -1,5 +1,6 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.BestPriceMatrix;
 import com.estar.customcode.model.Edge;
 import com.estar.customcode.model.Graph;
 import com.estar.customcode.model.Vertex;
@@ -23,7 +24,14 @@ public class CurrencyPairGraphBuilder {
     private final AdjacentVertexMapBuilder adjacentVertMapBuilder;
 
     public Graph build(Map<CurrencyPair, BigDecimal[]> instrumentData) {
-        Map<Vertex, List<Edge>> vertexAdjacencyMap = adjacentVertMapBuilder.build(instrumentData);
+        return createGraph(adjacentVertMapBuilder.build(instrumentData));
+    }
+
+    public Graph build(BestPriceMatrix bestPriceMatrix) {
+        return createGraph(adjacentVertMapBuilder.build(bestPriceMatrix));
+    }
+
+    private Graph createGraph(Map<Vertex, List<Edge>> vertexAdjacencyMap) {
 
         return Graph.builder()
                 .vertexAdjacencyMap(vertexAdjacencyMap)
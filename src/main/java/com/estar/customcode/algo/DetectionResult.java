@@ -0,0 +1,183 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import com.estar.orderbook.model.CurrencyPair;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reusable result of an {@link ArbitrageDetector} run on a {@link DenseGraph}. For every pair found on a
+ * negative cycle it keeps the best arbitrage factor and the vertices of that cycle, all in arrays allocated
+ * once for the graph (the cycle of a pair when the pair is recorded the first time). The result is only
+ * converted to objects by {@link #toMap()} when it is reported.
+ * <p>
+ * Every recorded cycle is also offered to the {@link TopCycles} of the result if it has one, so the distinct
+ * cycles of a run are kept and not only the best cycle per pair.
+ */
+public class DetectionResult {
+    private final double[] factors;
+    private final int[][] cycles;
+    private final int[] cycleLengths;
+    private final int[] pairs;
+    private final int vertexCount;
+    private TopCycles topCycles;
+    private int size;
+
+    public DetectionResult(DenseGraph graph) {
+        this(graph.getPairCount(), graph.getVertexCount());
+    }
+
+    public DetectionResult(int pairCount, int vertexCount) {
+        this.factors = new double[pairCount];
+        this.cycles = new int[pairCount][];
+        this.cycleLengths = new int[pairCount];
+        this.pairs = new int[pairCount];
+        this.vertexCount = vertexCount;
+        Arrays.fill(factors, Double.NaN);
+    }
+
+    /**
+     * keeps the factor and the cycle for the pair if it is the first or a bigger factor for the pair
+     *
+     * @param pair
+     * @param factor
+     * @param cycle  vertices of the cycle
+     * @param length number of vertices of the cycle
+     */
+    public void record(int pair, double factor, int[] cycle, int length) {
+        if (topCycles != null) {
+            topCycles.offer(cycle, length, factor);
+        }
+        if (Double.isNaN(factors[pair])) {
+            pairs[size++] = pair;
+        } else if (factor <= factors[pair]) {
+            return;
+        }
+        factors[pair] = factor;
+        if (cycles[pair] == null) {
+            cycles[pair] = new int[vertexCount];
+        }
+        System.arraycopy(cycle, 0, cycles[pair], 0, length);
+        cycleLengths[pair] = length;
+    }
+
+    /**
+     * records the cycle for every pair it trades
+     *
+     * @param graph
+     * @param factor
+     * @param cycle  vertices of the cycle in predecessor order
+     * @param length number of vertices of the cycle
+     */
+    public void recordCycle(DenseGraph graph, double factor, int[] cycle, int length) {
+        for (int i = 0; i < length; i++) {
+            record(DenseGraph.pairOf(graph.edge(cycle[(i + 1) % length], cycle[i])), factor, cycle, length);
+        }
+    }
+
+    /**
+     * records every pair of the other result, merging partial results in a fixed order gives the same
+     * result as recording them in that order in the first place. The other result only has the best cycle
+     * per pair, the other cycles reach the top cycles if the other result keeps its own top cycles.
+     *
+     * @param other
+     */
+    public void merge(DetectionResult other) {
+        for (int i = 0; i < other.size; i++) {
+            int pair = other.pairs[i];
+            record(pair, other.factors[pair], other.cycles[pair], other.cycleLengths[pair]);
+        }
+        if (topCycles != null && other.topCycles != null) {
+            topCycles.merge(other.topCycles);
+        }
+    }
+
+    /**
+     * keeps the distinct cycles of every run in the given top cycles, they are cleared with the result
+     *
+     * @param topCycles
+     */
+    public void setTopCycles(TopCycles topCycles) {
+        this.topCycles = topCycles;
+    }
+
+    public TopCycles getTopCycles() {
+        return topCycles;
+    }
+
+    public void clear() {
+        if (topCycles != null) {
+            topCycles.clear();
+        }
+        for (int i = 0; i < size; i++) {
+            factors[pairs[i]] = Double.NaN;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return number of pairs with an arbitrage
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index between 0 and {@link #size()}
+     * @return pair found at that position
+     */
+    public int getPair(int index) {
+        return pairs[index];
+    }
+
+    public boolean contains(int pair) {
+        return !Double.isNaN(factors[pair]);
+    }
+
+    /**
+     * @param pair
+     * @return factor of the pair or NaN if the pair has no arbitrage
+     */
+    public double getFactor(int pair) {
+        return factors[pair];
+    }
+
+    public int getCycleLength(int pair) {
+        return cycleLengths[pair];
+    }
+
+    /**
+     * @param pair
+     * @param index
+     * @return vertex of the cycle in the order the predecessors were walked
+     */
+    public int getCycleVertex(int pair, int index) {
+        return cycles[pair][index];
+    }
+
+    /**
+     * converts the result of a graph of all {@link CurrencyPair}s to the factor map reported so far, the
+     * pairs of other graphs have no {@link CurrencyPair}
+     *
+     * @return
+     * @throws IllegalStateException if the result is not the one of a graph of all {@link CurrencyPair}s
+     */
+    public Map<CurrencyPair, BigDecimal> toMap() {
+        CurrencyPair[] currencyPairs = CurrencyPair.values();
+        if (factors.length != currencyPairs.length) {
+            throw new IllegalStateException("Result of " + factors.length + " pairs is not one of the currency pairs");
+        }
+        Map<CurrencyPair, BigDecimal> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(currencyPairs[pairs[i]], ArbitrageFactorFinder.toBigDecimal(factors[pairs[i]]));
+        }
+        return map;
+    }
+}
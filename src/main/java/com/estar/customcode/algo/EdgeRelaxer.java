@@ -1,5 +1,6 @@
 package com.estar.customcode.algo;
 
+import com.estar.customcode.model.DenseGraph;
 import com.estar.customcode.model.Edge;
 import com.estar.customcode.model.Graph;
 import com.estar.customcode.model.Vertex;
@@ -27,4 +28,27 @@ public class EdgeRelaxer {
             }
         }
     }
+
+    /**
+     * Same relaxation on the arrays of the dense graph, (active vertices - 1) cycles over all edges.
+     * Edges of pairs without rates have infinite weights and never relax a distance.
+     *
+     * @param graph
+     * @param distances    by vertex id
+     * @param predecessors by vertex id
+     */
+    public void relaxEdges(DenseGraph graph, double[] distances, int[] predecessors) {
+        int edgeCount = graph.getEdgeCount();
+        for (int i = 0; i < graph.getActiveVertexCount() - 1; i++) {
+            for (int e = 0; e < edgeCount; e++) {
+                int from = graph.getFrom(e);
+                int to = graph.getTo(e);
+                double distance = distances[from] + graph.getWeight(e);
+                if (distances[to] > distance) {
+                    distances[to] = distance;
+                    predecessors[to] = from;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,250 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Puts a cache of the recently profitable cycles in front of a full search. An opportunity usually stays
+ * on the same cycle for several ticks, so a run first prices the cached cycles again, O(cycle length) each
+ * over the current weights, and reports the ones still paying without searching the graph. The full search
+ * runs every {@code fullSearchInterval} runs and whenever no cached cycle pays, the cycles it finds are
+ * added to the cache. A cycle new to the cache is therefore reported at the latest by the next full search,
+ * with an interval of 1 every run is a full search.
+ * <p>
+ * The cache holds up to {@code capacity} cycles in trading order. A cycle is kept for {@code maxAge} runs
+ * after it last paid, a full cache evicts the cycle which paid longest ago. Cached cycles are priced over
+ * the whole cycle like in {@link TriangularArbitrageEngine}.
+ * <p>
+ * A run answered from the cache only holds the cached cycles still paying, cycles found by the full search
+ * but evicted or not kept for any pair are missing although they may still pay, see {@link #isLastRunCached()}.
+ */
+public class HotCycleDetector implements ArbitrageDetector {
+    private final ArbitrageDetector fullSearch;
+    private final ArbitrageFactorFinder arbitrageFactorFinder;
+    private final int capacity;
+    private final int fullSearchInterval;
+    private final long maxAge;
+
+    private DenseGraph graph;
+    private int[][] cycles = new int[0][];
+    private int[][] cycleEdges = new int[0][];
+    private final int[] lengths;
+    private final long[] lastPaid;
+    private int size;
+    private int[] candidate = new int[0];
+    private int[] predecessors = new int[0];
+    private long run;
+    private long lastFullSearch = Long.MIN_VALUE / 2;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long fullSearches;
+    private long cachedRuns;
+    private boolean lastRunCached;
+
+    /**
+     * @param fullSearch            detector searching the whole graph
+     * @param arbitrageFactorFinder
+     * @param capacity              largest number of cached cycles
+     * @param fullSearchInterval    the full search runs at least every this many runs
+     * @param maxAge                runs a cycle stays cached after it last paid
+     */
+    public HotCycleDetector(@NonNull ArbitrageDetector fullSearch, @NonNull ArbitrageFactorFinder arbitrageFactorFinder,
+                            int capacity, int fullSearchInterval, long maxAge) {
+        if (capacity < 1 || fullSearchInterval < 1) {
+            throw new IllegalArgumentException("Capacity and full search interval have to be positive");
+        }
+        this.fullSearch = fullSearch;
+        this.arbitrageFactorFinder = arbitrageFactorFinder;
+        this.capacity = capacity;
+        this.fullSearchInterval = fullSearchInterval;
+        this.maxAge = maxAge;
+        this.lengths = new int[capacity];
+        this.lastPaid = new long[capacity];
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        if (this.graph != graph) {
+            attach(graph);
+        }
+        run++;
+        if (run - lastFullSearch < fullSearchInterval && size > 0) {
+            result.clear();
+            if (priceCachedCycles(graph, result)) {
+                cachedRuns++;
+                lastRunCached = true;
+                expire();
+                return;
+            }
+        }
+        lastRunCached = false;
+        fullSearches++;
+        lastFullSearch = run;
+        fullSearch.detect(graph, result);
+        for (int i = 0; i < result.size(); i++) {
+            int pair = result.getPair(i);
+            int length = result.getCycleLength(pair);
+            for (int j = 0; j < length; j++) {
+                predecessors[j] = result.getCycleVertex(pair, j);
+            }
+            cache(graph, length);
+        }
+        expire();
+    }
+
+    /**
+     * @return number of times a cached cycle still paid when priced again
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of times a cached cycle did not pay any more
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return hits of all cached cycles priced again, NaN before the first one
+     */
+    public double getHitRatio() {
+        return (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return number of cycles dropped from the cache, for a full cache or for age
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of runs which searched the whole graph
+     */
+    public long getFullSearches() {
+        return fullSearches;
+    }
+
+    /**
+     * @return true if the last run was answered from the cache and its result only holds cached cycles
+     */
+    public boolean isLastRunCached() {
+        return lastRunCached;
+    }
+
+    /**
+     * @return number of runs answered from the cache
+     */
+    public long getCachedRuns() {
+        return cachedRuns;
+    }
+
+    private void attach(DenseGraph graph) {
+        this.graph = graph;
+        int vertexCount = graph.getVertexCount();
+        cycles = new int[capacity][vertexCount];
+        cycleEdges = new int[capacity][vertexCount];
+        candidate = new int[vertexCount];
+        predecessors = new int[vertexCount];
+        size = 0;
+        lastFullSearch = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * @return true if a cached cycle still pays, all of them are recorded
+     */
+    private boolean priceCachedCycles(DenseGraph graph, DetectionResult result) {
+        boolean paid = false;
+        for (int slot = 0; slot < size; slot++) {
+            int length = lengths[slot];
+            double weight = 0;
+            for (int k = 0; k < length && weight < Double.POSITIVE_INFINITY; k++) {
+                weight += graph.getWeight(cycleEdges[slot][k]);
+            }
+            weight = DenseGraph.roundWeight(weight);
+            if (weight < 0) {
+                hits++;
+                paid = true;
+                lastPaid[slot] = run;
+                report(slot, arbitrageFactorFinder.transformArbitrageValue(weight), result);
+            } else {
+                misses++;
+            }
+        }
+        return paid;
+    }
+
+    private void report(int slot, double factor, DetectionResult result) {
+        int length = lengths[slot];
+        for (int i = 0; i < length; i++) {
+            predecessors[i] = cycles[slot][(length - i) % length];
+        }
+        for (int k = 0; k < length; k++) {
+            result.record(DenseGraph.pairOf(cycleEdges[slot][k]), factor, predecessors, length);
+        }
+    }
+
+    /**
+     * adds the cycle in {@link #predecessors} or marks it as paid if it is cached already
+     */
+    private void cache(DenseGraph graph, int length) {
+        TopCycles.tradingOrder(predecessors, length, candidate);
+        for (int slot = 0; slot < size; slot++) {
+            if (lengths[slot] == length && Arrays.equals(cycles[slot], 0, length, candidate, 0, length)) {
+                lastPaid[slot] = run;
+                return;
+            }
+        }
+        for (int k = 0; k < length; k++) {
+            if (graph.edge(candidate[k], candidate[(k + 1) % length]) == DenseGraph.NO_EDGE) {
+                return;
+            }
+        }
+        int slot;
+        if (size < capacity) {
+            slot = size++;
+        } else {
+            slot = 0;
+            for (int i = 1; i < size; i++) {
+                if (lastPaid[i] < lastPaid[slot]) {
+                    slot = i;
+                }
+            }
+            evictions++;
+        }
+        System.arraycopy(candidate, 0, cycles[slot], 0, length);
+        for (int k = 0; k < length; k++) {
+            cycleEdges[slot][k] = graph.edge(candidate[k], candidate[(k + 1) % length]);
+        }
+        lengths[slot] = length;
+        lastPaid[slot] = run;
+    }
+
+    /**
+     * drops the cycles which did not pay for more than the max age, the last slot fills the gap
+     */
+    private void expire() {
+        for (int slot = size - 1; slot >= 0; slot--) {
+            if (run - lastPaid[slot] > maxAge) {
+                evictions++;
+                int last = --size;
+                if (slot != last) {
+                    int[] cycle = cycles[slot];
+                    int[] edges = cycleEdges[slot];
+                    cycles[slot] = cycles[last];
+                    cycleEdges[slot] = cycleEdges[last];
+                    cycles[last] = cycle;
+                    cycleEdges[last] = edges;
+                    lengths[slot] = lengths[last];
+                    lastPaid[slot] = lastPaid[last];
+                }
+            }
+        }
+    }
+}
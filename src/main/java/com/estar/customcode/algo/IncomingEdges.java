@@ -0,0 +1,68 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+
+/**
+ * Edges of a {@link DenseGraph} grouped by their end vertex, with the start vertex and the weight of every
+ * edge in parallel arrays so a {@link RelaxationKernel} can read them in order.
+ * <p>
+ * All edges of the graph are laid out, an inactive edge keeps the infinite weight of the graph and never
+ * relaxes. The layout therefore only depends on the edges of the graph and not on which pairs are quoted,
+ * once built only the weights have to be copied again with {@link #refreshWeights(DenseGraph)}.
+ */
+public class IncomingEdges {
+    final int vertexCount;
+    // in edges of vertex v are at [start[v], start[v + 1])
+    final int[] start;
+    final int[] from;
+    final double[] weight;
+    // edge of the graph at every index
+    private final int[] graphEdge;
+
+    public IncomingEdges(DenseGraph graph) {
+        this.vertexCount = graph.getVertexCount();
+        this.start = new int[vertexCount + 1];
+        int edgeCount = graph.getEdgeCount();
+        for (int e = 0; e < edgeCount; e++) {
+            start[graph.getTo(e) + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            start[v + 1] += start[v];
+        }
+        this.from = new int[edgeCount];
+        this.weight = new double[edgeCount];
+        this.graphEdge = new int[edgeCount];
+        int[] next = new int[vertexCount];
+        System.arraycopy(start, 0, next, 0, vertexCount);
+        for (int e = 0; e < edgeCount; e++) {
+            int index = next[graph.getTo(e)]++;
+            from[index] = graph.getFrom(e);
+            graphEdge[index] = e;
+        }
+        refreshWeights(graph);
+    }
+
+    /**
+     * copies the current weights of the graph the layout was built from
+     */
+    public void refreshWeights(DenseGraph graph) {
+        for (int i = 0; i < graphEdge.length; i++) {
+            weight[i] = graph.getWeight(graphEdge[i]);
+        }
+    }
+
+    /**
+     * @return true if the layout was built from a graph with the same vertices and edges
+     */
+    public boolean isLayoutOf(DenseGraph graph) {
+        return graph.getVertexCount() == vertexCount && graph.getEdgeCount() == graphEdge.length;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getEdgeCount() {
+        return from.length;
+    }
+}
@@ -0,0 +1,175 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Keeps vertex potentials between runs so a run only looks at the edges changed since the previous run.
+ * <p>
+ * The potentials are feasible ({@code p[to] <= p[from] + weight} for every edge) as long as the graph has
+ * no negative cycle, which proves that there is no arbitrage. An edge getting more expensive keeps them
+ * feasible. An edge (u, v) getting cheaper only breaks them if {@code p[u] + weight < p[v]}, then the lower
+ * potential of v is propagated over the out edges of the vertices whose potential drops. Any new negative
+ * cycle has to use the changed edge, so it exists exactly when the propagation comes back to u. Without a
+ * cycle the repaired potentials are feasible again and the cost of the run only depends on the region
+ * reached by the propagation, not on the size of the graph.
+ * <p>
+ * When a cycle is found, before the first run and for a different graph the detector falls back to a full
+ * super source Bellman-Ford run, which also reports all cycles. It keeps doing so while the graph has a
+ * negative cycle. The detector consumes the changes of the graph, so only one such detector should be
+ * used per graph.
+ */
+public class IncrementalArbitrageDetector implements ArbitrageDetector {
+    private final SuperSourceArbitrageFinder fullSearch;
+
+    private DenseGraph graph;
+    private boolean feasible;
+    private double[] potentials = new double[0];
+    private int[] predecessors = new int[0];
+    private boolean[] seenVertices = new boolean[0];
+    private int[] cycle = new int[0];
+    private int[] queue = new int[0];
+    private boolean[] queued = new boolean[0];
+    private long fullRuns;
+    private long incrementalRuns;
+
+    public IncrementalArbitrageDetector(@NonNull ArbitrageFactorFinder arbitrageFactorFinder) {
+        this.fullSearch = new SuperSourceArbitrageFinder(arbitrageFactorFinder);
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        result.clear();
+        if (this.graph != graph) {
+            attach(graph);
+        }
+        if (feasible && repairChangedEdges(graph)) {
+            incrementalRuns++;
+        } else {
+            recompute(graph, result);
+        }
+        graph.clearChanges();
+    }
+
+    /**
+     * @return number of runs which had to search the whole graph
+     */
+    public long getFullRuns() {
+        return fullRuns;
+    }
+
+    /**
+     * @return number of runs which only repaired the potentials around the changed edges
+     */
+    public long getIncrementalRuns() {
+        return incrementalRuns;
+    }
+
+    private void attach(DenseGraph graph) {
+        this.graph = graph;
+        this.feasible = false;
+        int vertexCount = graph.getVertexCount();
+        if (potentials.length < vertexCount) {
+            potentials = new double[vertexCount];
+            predecessors = new int[vertexCount];
+            seenVertices = new boolean[vertexCount];
+            cycle = new int[vertexCount];
+            queue = new int[vertexCount];
+            queued = new boolean[vertexCount];
+        }
+    }
+
+    /**
+     * @return false if a changed edge closes a negative cycle
+     */
+    private boolean repairChangedEdges(DenseGraph graph) {
+        for (int i = 0; i < graph.getChangedEdgeCount(); i++) {
+            int edge = graph.getChangedEdge(i);
+            int from = graph.getFrom(edge);
+            int to = graph.getTo(edge);
+            double potential = potentials[from] + graph.getWeight(edge);
+            if (potential < potentials[to] && !propagate(graph, from, to, potential)) {
+                feasible = false;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * lowers the potential of {@code to} and of every vertex reached over edges which become tight
+     *
+     * @param cycleVertex start of the changed edge, lowering its potential means a negative cycle
+     * @return false if a negative cycle through the changed edge was found
+     */
+    private boolean propagate(DenseGraph graph, int cycleVertex, int to, double potential) {
+        int vertexCount = graph.getVertexCount();
+        int head = 0;
+        int size = 0;
+        potentials[to] = potential;
+        queue[(head + size++) % vertexCount] = to;
+        queued[to] = true;
+        boolean cycleFound = false;
+        // changed edges not repaired yet can close a cycle which does not come back to cycleVertex, more
+        // relaxations than a Bellman-Ford run needs can only mean such a cycle
+        long relaxationBudget = (long) vertexCount * graph.getEdgeCount();
+        while (size > 0 && !cycleFound) {
+            int vertex = queue[head];
+            head = (head + 1) % vertexCount;
+            size--;
+            queued[vertex] = false;
+            for (int i = graph.getOutEdgeStart(vertex); i < graph.getOutEdgeEnd(vertex); i++) {
+                int edge = graph.getOutEdge(i);
+                int next = graph.getTo(edge);
+                double nextPotential = potentials[vertex] + graph.getWeight(edge);
+                if (nextPotential < potentials[next]) {
+                    if (next == cycleVertex || --relaxationBudget < 0) {
+                        cycleFound = true;
+                        break;
+                    }
+                    potentials[next] = nextPotential;
+                    if (!queued[next]) {
+                        queue[(head + size++) % vertexCount] = next;
+                        queued[next] = true;
+                    }
+                }
+            }
+        }
+        // leave the queue flags clean after an early exit
+        for (; size > 0; size--) {
+            queued[queue[head]] = false;
+            head = (head + 1) % vertexCount;
+        }
+        return !cycleFound;
+    }
+
+    /**
+     * super source Bellman-Ford from scratch, the distances become the new potentials if there is no
+     * negative cycle
+     */
+    private void recompute(DenseGraph graph, DetectionResult result) {
+        fullRuns++;
+        int vertexCount = graph.getVertexCount();
+        Arrays.fill(potentials, 0, vertexCount, 0d);
+        for (int v = 0; v < vertexCount; v++) {
+            predecessors[v] = v;
+        }
+        SuperSourceArbitrageFinder.relaxEdges(graph, potentials, predecessors);
+        feasible = !hasRelaxableEdge(graph);
+        if (!feasible) {
+            Arrays.fill(seenVertices, false);
+            fullSearch.getArbitrageCurrencyWithFactor(graph, potentials, predecessors, seenVertices, cycle, result);
+        }
+    }
+
+    private boolean hasRelaxableEdge(DenseGraph graph) {
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            if (potentials[graph.getTo(e)] > potentials[graph.getFrom(e)] + graph.getWeight(e)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
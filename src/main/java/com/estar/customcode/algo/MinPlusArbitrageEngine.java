@@ -0,0 +1,417 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import lombok.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the all pairs shortest -log rate matrix of the graph in a {@code double[V * V]} together with a
+ * successor matrix, the first currency to convert to on the best path from one currency to another.
+ * <p>
+ * The first run computes the matrix by a cache blocked Floyd-Warshall. After that only the changed edges are
+ * looked at and the matrix never holds a negative cycle:
+ * <ul>
+ * <li>an edge (u, v) getting more expensive or removed can only change the entries whose successor path goes
+ * over it. In the column of a currency j these are the currencies whose successors lead to u while u goes on
+ * to v, their entries are computed again by Bellman-Ford rounds over their out edges from the entries of the
+ * column which stay as they are.</li>
+ * <li>an edge (u, v) getting cheaper can only improve paths through it, so every entry is updated from
+ * column u and row v in O(V²). If the edge closes a negative cycle with the best path from v back to u the
+ * cycle is reported and the edge is kept out of the matrix, it is looked at again on every run until it no
+ * longer closes one.</li>
+ * </ul>
+ * If the first run finds a negative cycle the matrix is built again edge by edge like that. Besides the
+ * arbitrage the matrix gives the best conversion rate between any two currencies, see
+ * {@link #getBestRate(int, int)}.
+ * <p>
+ * The engine is built for one graph and consumes its changes, so no other detector consuming the changes
+ * should run on the same graph.
+ */
+public class MinPlusArbitrageEngine implements ArbitrageDetector {
+    static final int BLOCK_SIZE = 32;
+    private static final byte UNKNOWN = 0;
+    private static final byte VISITING = 1;
+    private static final byte AFFECTED = 2;
+    private static final byte UNAFFECTED = 3;
+
+    private final DenseGraph graph;
+    private final ArbitrageFactorFinder arbitrageFactorFinder;
+    private final int vertexCount;
+    // distances[from * V + to], successors[from * V + to]
+    private final double[] distances;
+    private final int[] successors;
+    // weights the matrix was computed with, to tell cheaper from more expensive edges
+    private final double[] weights;
+    // cheaper edges kept out of the matrix because they close a negative cycle
+    private final boolean[] pending;
+    private final int[] pendingEdges;
+    private int pendingCount;
+    // row v and column u copied before an edge (u, v) is applied
+    private final double[] fromColumn;
+    private final int[] fromColumnSuccessors;
+    private final double[] toRow;
+    // currencies of a column whose successor path went over a more expensive edge
+    private final byte[] columnState;
+    private final int[] affected;
+    private final int[] path;
+    private final int[] cycle;
+    private boolean initialized;
+    private long fullRuns;
+    private long incrementalRuns;
+
+    public MinPlusArbitrageEngine(@NonNull DenseGraph graph, @NonNull ArbitrageFactorFinder arbitrageFactorFinder) {
+        this.graph = graph;
+        this.arbitrageFactorFinder = arbitrageFactorFinder;
+        this.vertexCount = graph.getVertexCount();
+        this.distances = new double[vertexCount * vertexCount];
+        this.successors = new int[vertexCount * vertexCount];
+        this.weights = new double[graph.getEdgeCount()];
+        this.pending = new boolean[graph.getEdgeCount()];
+        this.pendingEdges = new int[graph.getEdgeCount()];
+        this.fromColumn = new double[vertexCount];
+        this.fromColumnSuccessors = new int[vertexCount];
+        this.toRow = new double[vertexCount];
+        this.columnState = new byte[vertexCount];
+        this.affected = new int[vertexCount];
+        this.path = new int[vertexCount];
+        this.cycle = new int[vertexCount];
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        if (graph != this.graph) {
+            throw new IllegalArgumentException("The engine was built for another graph");
+        }
+        result.clear();
+        if (initialized) {
+            applyChanges(result);
+            incrementalRuns++;
+        } else {
+            recompute();
+            if (hasNegativeDiagonal()) {
+                rebuildByEdges(result);
+            }
+        }
+        graph.clearChanges();
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return best rate converting from one currency to the other over any path, 0 if there is none. Only
+     * meaningful while the graph has no arbitrage.
+     */
+    public double getBestRate(int from, int to) {
+        return Math.exp(-distances[from * vertexCount + to]);
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return first currency to convert to on the best path, or to itself if there is no path
+     */
+    public int getSuccessor(int from, int to) {
+        return successors[from * vertexCount + to];
+    }
+
+    /**
+     * @return number of runs which computed the matrix from scratch
+     */
+    public long getFullRuns() {
+        return fullRuns;
+    }
+
+    /**
+     * @return number of runs which only applied the changed edges
+     */
+    public long getIncrementalRuns() {
+        return incrementalRuns;
+    }
+
+    /**
+     * the more expensive edges first, the cheaper ones are then applied to a matrix without the paths the
+     * graph lost. The pending edges are looked at again before the changed ones.
+     */
+    private void applyChanges(DetectionResult result) {
+        for (int i = 0; i < graph.getChangedEdgeCount(); i++) {
+            int edge = graph.getChangedEdge(i);
+            if (graph.getWeight(edge) > weights[edge]) {
+                raiseEdge(edge);
+            }
+        }
+        int previousPendingCount = pendingCount;
+        pendingCount = 0;
+        // an edge is written back at most at the index it was read from
+        for (int i = 0; i < previousPendingCount; i++) {
+            int edge = pendingEdges[i];
+            pending[edge] = false;
+            applyCheaperEdge(edge, result);
+        }
+        for (int i = 0; i < graph.getChangedEdgeCount(); i++) {
+            applyCheaperEdge(graph.getChangedEdge(i), result);
+        }
+    }
+
+    /**
+     * applies the edge if it got cheaper than in the matrix, unless it closes a negative cycle. The cycle is
+     * then reported and the edge kept pending.
+     */
+    private void applyCheaperEdge(int edge, DetectionResult result) {
+        double weight = graph.getWeight(edge);
+        if (pending[edge] || !(weight < weights[edge])) {
+            return;
+        }
+        int u = graph.getFrom(edge);
+        int v = graph.getTo(edge);
+        if (DenseGraph.roundWeight(weight + distances[v * vertexCount + u]) < 0) {
+            pending[edge] = true;
+            pendingEdges[pendingCount++] = edge;
+            reportCycle(u, v, result);
+        } else {
+            weights[edge] = weight;
+            applyEdge(u, v, weight);
+        }
+    }
+
+    /**
+     * d[i][j] = min(d[i][j], d[i][u] + w + d[v][j]) for all i, j
+     */
+    private void applyEdge(int u, int v, double weight) {
+        if (weight >= distances[u * vertexCount + v]) {
+            return;
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            fromColumn[i] = distances[i * vertexCount + u];
+            fromColumnSuccessors[i] = i == u ? v : successors[i * vertexCount + u];
+        }
+        System.arraycopy(distances, v * vertexCount, toRow, 0, vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            double throughEdge = fromColumn[i] + weight;
+            if (throughEdge == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            int row = i * vertexCount;
+            for (int j = 0; j < vertexCount; j++) {
+                double distance = throughEdge + toRow[j];
+                if (distance < distances[row + j]) {
+                    distances[row + j] = distance;
+                    successors[row + j] = fromColumnSuccessors[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * the edge got more expensive or was removed. A column can only have paths over the edge if u goes on
+     * to v in it, only the entries of the currencies leading to u there are computed again.
+     */
+    private void raiseEdge(int edge) {
+        int u = graph.getFrom(edge);
+        int v = graph.getTo(edge);
+        weights[edge] = graph.getWeight(edge);
+        for (int j = 0; j < vertexCount; j++) {
+            if (j != u && successors[u * vertexCount + j] == v) {
+                repairColumn(j, collectAffected(u, j));
+            }
+        }
+    }
+
+    /**
+     * follows the successors towards j from every currency, the ones reaching u before j are collected in
+     * {@link #affected}
+     *
+     * @return number of affected currencies
+     */
+    private int collectAffected(int u, int j) {
+        Arrays.fill(columnState, UNKNOWN);
+        columnState[u] = AFFECTED;
+        columnState[j] = UNAFFECTED;
+        int count = 0;
+        affected[count++] = u;
+        for (int start = 0; start < vertexCount; start++) {
+            int length = 0;
+            int current = start;
+            while (columnState[current] == UNKNOWN) {
+                columnState[current] = VISITING;
+                path[length++] = current;
+                current = successors[current * vertexCount + j];
+            }
+            // a walk running into itself does not reach j over u
+            byte state = columnState[current] == AFFECTED ? AFFECTED : UNAFFECTED;
+            for (int i = 0; i < length; i++) {
+                columnState[path[i]] = state;
+                if (state == AFFECTED) {
+                    affected[count++] = path[i];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Bellman-Ford rounds for the affected entries of column j, the best path of an affected currency leaves
+     * the affected ones after at most as many edges as there are of them
+     */
+    private void repairColumn(int j, int count) {
+        for (int i = 0; i < count; i++) {
+            int index = affected[i] * vertexCount + j;
+            distances[index] = Double.POSITIVE_INFINITY;
+            successors[index] = j;
+        }
+        boolean relaxed = true;
+        for (int round = 0; round < count && relaxed; round++) {
+            relaxed = false;
+            for (int i = 0; i < count; i++) {
+                int x = affected[i];
+                int index = x * vertexCount + j;
+                for (int k = graph.getOutEdgeStart(x); k < graph.getOutEdgeEnd(x); k++) {
+                    int edge = graph.getOutEdge(k);
+                    int to = graph.getTo(edge);
+                    double distance = weights[edge] + distances[to * vertexCount + j];
+                    if (distance < distances[index]) {
+                        distances[index] = distance;
+                        successors[index] = to;
+                        relaxed = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private void recompute() {
+        fullRuns++;
+        initialized = true;
+        clearMatrix();
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            weights[e] = graph.getWeight(e);
+            int index = graph.getFrom(e) * vertexCount + graph.getTo(e);
+            distances[index] = Math.min(distances[index], weights[e]);
+        }
+        int blocks = (vertexCount + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        for (int k = 0; k < blocks; k++) {
+            relaxBlock(k, k, k);
+            for (int b = 0; b < blocks; b++) {
+                if (b != k) {
+                    relaxBlock(k, b, k);
+                    relaxBlock(b, k, k);
+                }
+            }
+            for (int i = 0; i < blocks; i++) {
+                for (int j = 0; j < blocks; j++) {
+                    if (i != k && j != k) {
+                        relaxBlock(i, j, k);
+                    }
+                }
+            }
+        }
+    }
+
+    private void clearMatrix() {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        for (int v = 0; v < vertexCount; v++) {
+            distances[v * vertexCount + v] = 0;
+            for (int to = 0; to < vertexCount; to++) {
+                successors[v * vertexCount + to] = to;
+            }
+        }
+    }
+
+    private boolean hasNegativeDiagonal() {
+        for (int v = 0; v < vertexCount; v++) {
+            if (DenseGraph.roundWeight(distances[v * vertexCount + v]) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the matrix from an empty graph with every edge applied as a cheaper one, which keeps the edges closing
+     * a negative cycle pending
+     */
+    private void rebuildByEdges(DetectionResult result) {
+        clearMatrix();
+        Arrays.fill(weights, Double.POSITIVE_INFINITY);
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            applyCheaperEdge(e, result);
+        }
+    }
+
+    /**
+     * Floyd-Warshall step over the intermediate currencies of block k for the entries of block (i, j), run
+     * on the diagonal block first, then on its row and column and then on the other blocks
+     */
+    private void relaxBlock(int rowBlock, int columnBlock, int intermediateBlock) {
+        int rowEnd = Math.min(vertexCount, (rowBlock + 1) * BLOCK_SIZE);
+        int columnStart = columnBlock * BLOCK_SIZE;
+        int columnEnd = Math.min(vertexCount, columnStart + BLOCK_SIZE);
+        int intermediateEnd = Math.min(vertexCount, (intermediateBlock + 1) * BLOCK_SIZE);
+        for (int k = intermediateBlock * BLOCK_SIZE; k < intermediateEnd; k++) {
+            int kRow = k * vertexCount;
+            for (int i = rowBlock * BLOCK_SIZE; i < rowEnd; i++) {
+                int row = i * vertexCount;
+                double toIntermediate = distances[row + k];
+                if (toIntermediate == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int successor = successors[row + k];
+                for (int j = columnStart; j < columnEnd; j++) {
+                    double distance = toIntermediate + distances[kRow + j];
+                    if (distance < distances[row + j]) {
+                        distances[row + j] = distance;
+                        successors[row + j] = successor;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * the cycle of the edge (u, v) and the best path from v back to u, collected in predecessor order like
+     * the other detectors
+     *
+     * @return true if the cycle was reported
+     */
+    private boolean reportCycle(int u, int v, DetectionResult result) {
+        int length = 0;
+        path[length++] = u;
+        for (int current = v; current != u; current = successors[current * vertexCount + u]) {
+            if (length == vertexCount) {
+                return false;
+            }
+            path[length++] = current;
+        }
+        for (int i = 0; i < length; i++) {
+            cycle[i] = path[length - 1 - i];
+        }
+        return record(length, result);
+    }
+
+    /**
+     * records the cycle in {@link #cycle} for each of its pairs if its rates really multiply to more than 1
+     *
+     * @param length
+     * @param result
+     * @return true if the cycle was recorded
+     */
+    private boolean record(int length, DetectionResult result) {
+        double weight = 0;
+        for (int i = 0; i < length; i++) {
+            int edge = graph.edge(cycle[(i + 1) % length], cycle[i]);
+            if (edge == DenseGraph.NO_EDGE || !graph.isActive(edge)) {
+                return false;
+            }
+            weight += graph.getWeight(edge);
+        }
+        weight = DenseGraph.roundWeight(weight);
+        if (!(weight < 0)) {
+            return false;
+        }
+        double factor = arbitrageFactorFinder.transformArbitrageValue(weight);
+        for (int i = 0; i < length; i++) {
+            result.record(DenseGraph.pairOf(graph.edge(cycle[(i + 1) % length], cycle[i])), factor, cycle, length);
+        }
+        return true;
+    }
+}
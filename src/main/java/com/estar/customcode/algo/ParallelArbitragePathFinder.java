@@ -0,0 +1,98 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import lombok.NonNull;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs the per currency Bellman-Ford search of {@link ArbitragePathFinder} with the source currencies split
+ * over a {@link ForkJoinPool}. Every leaf task has its own distances, predecessors and partial result, the
+ * partial results are merged in source order so the result is the same as the one of the serial search
+ * whatever the scheduling. With {@link TopCycles} on the result every leaf keeps top cycles of its own,
+ * merged into the ones of the result, so they hold the same cycles as after the serial search.
+ * <p>
+ * Graphs with fewer active currencies than the parallelism threshold are searched on the calling thread.
+ */
+public class ParallelArbitragePathFinder implements ArbitrageDetector {
+    private final ArbitragePathFinder arbitragePathFinder;
+    private final ForkJoinPool forkJoinPool;
+    private final int parallelismThreshold;
+    private final ShortestPathState state = new ShortestPathState();
+
+    /**
+     * @param arbitragePathFinder  search run for every source currency
+     * @param forkJoinPool
+     * @param parallelismThreshold smallest number of active currencies searched in parallel
+     */
+    public ParallelArbitragePathFinder(@NonNull ArbitragePathFinder arbitragePathFinder, @NonNull ForkJoinPool forkJoinPool,
+                                       int parallelismThreshold) {
+        this.arbitragePathFinder = arbitragePathFinder;
+        this.forkJoinPool = forkJoinPool;
+        this.parallelismThreshold = parallelismThreshold;
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        result.clear();
+        if (graph.getActiveVertexCount() < parallelismThreshold || forkJoinPool.getParallelism() < 2) {
+            state.ensureCapacity(graph.getVertexCount());
+            searchSources(graph, 0, graph.getVertexCount(), state, result);
+            return;
+        }
+        int leafSize = Math.max(1, graph.getVertexCount() / (forkJoinPool.getParallelism() * 4));
+        result.merge(forkJoinPool.invoke(new SourceRangeTask(graph, result.getTopCycles(), 0,
+                graph.getVertexCount(), leafSize)));
+    }
+
+    private void searchSources(DenseGraph graph, int fromSource, int toSource, ShortestPathState state,
+                               DetectionResult result) {
+        for (int source = fromSource; source < toSource; source++) {
+            if (graph.isActiveVertex(source)) {
+                arbitragePathFinder.findArbitrageCurrency(graph, source, state, result);
+            }
+        }
+    }
+
+    /**
+     * searches the sources [fromSource, toSource), splitting the range in halves down to the leaf size
+     */
+    private class SourceRangeTask extends RecursiveTask<DetectionResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final DenseGraph graph;
+        private final TopCycles topCycles;
+        private final int fromSource;
+        private final int toSource;
+        private final int leafSize;
+
+        SourceRangeTask(DenseGraph graph, TopCycles topCycles, int fromSource, int toSource, int leafSize) {
+            this.graph = graph;
+            this.topCycles = topCycles;
+            this.fromSource = fromSource;
+            this.toSource = toSource;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected DetectionResult compute() {
+            if (toSource - fromSource <= leafSize) {
+                ShortestPathState leafState = new ShortestPathState();
+                leafState.ensureCapacity(graph.getVertexCount());
+                DetectionResult partialResult = new DetectionResult(graph);
+                if (topCycles != null) {
+                    partialResult.setTopCycles(topCycles.emptyCopy());
+                }
+                searchSources(graph, fromSource, toSource, leafState, partialResult);
+                return partialResult;
+            }
+            int middle = (fromSource + toSource) >>> 1;
+            SourceRangeTask upper = new SourceRangeTask(graph, topCycles, middle, toSource, leafSize);
+            upper.fork();
+            DetectionResult lower = new SourceRangeTask(graph, topCycles, fromSource, middle, leafSize).compute();
+            lower.merge(upper.join());
+            return lower;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.estar.customcode.algo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One Bellman-Ford round in Jacobi form: every vertex takes the smallest of its own distance and of
+ * {@code distance[from] + weight} over its in edges, reading only the distances of the previous round. The
+ * first in edge reaching the smallest value becomes the predecessor. Since a vertex only writes its own
+ * distance the in edges of a vertex can be evaluated in any grouping, which lets the kernel relax several
+ * edges at once in SIMD lanes and still give the same result as the scalar loop.
+ */
+public interface RelaxationKernel {
+    Logger LOG = LoggerFactory.getLogger(RelaxationKernel.class);
+
+    /**
+     * @param edges
+     * @param distances     distances of the previous round
+     * @param nextDistances distances after the round
+     * @param predecessors  updated for every vertex whose distance decreased
+     * @return true if a distance decreased
+     */
+    boolean relax(IncomingEdges edges, double[] distances, double[] nextDistances, int[] predecessors);
+
+    /**
+     * @return the Vector API kernel if the jdk.incubator.vector module is available (started with
+     * {@code --add-modules jdk.incubator.vector}), the scalar kernel otherwise
+     */
+    static RelaxationKernel vectorOrScalar() {
+        try {
+            return new VectorRelaxationKernel();
+        } catch (LinkageError e) {
+            LOG.info("Vector API not available, relaxing edges with the scalar kernel: {}", e.toString());
+            return new ScalarRelaxationKernel();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.estar.customcode.algo;
+
+/**
+ * {@link RelaxationKernel} relaxing one edge after the other.
+ */
+public class ScalarRelaxationKernel implements RelaxationKernel {
+
+    @Override
+    public boolean relax(IncomingEdges edges, double[] distances, double[] nextDistances, int[] predecessors) {
+        boolean relaxed = false;
+        for (int v = 0; v < edges.vertexCount; v++) {
+            double best = distances[v];
+            int bestFrom = -1;
+            for (int i = edges.start[v]; i < edges.start[v + 1]; i++) {
+                double distance = distances[edges.from[i]] + edges.weight[i];
+                if (distance < best) {
+                    best = distance;
+                    bestFrom = edges.from[i];
+                }
+            }
+            nextDistances[v] = best;
+            if (bestFrom >= 0) {
+                predecessors[v] = bestFrom;
+                relaxed = true;
+            }
+        }
+        return relaxed;
+    }
+}
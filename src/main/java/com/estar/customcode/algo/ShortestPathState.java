@@ -0,0 +1,21 @@
+package com.estar.customcode.algo;
+
+/**
+ * Working arrays of a shortest path search on a dense graph, they are only reallocated when a graph with
+ * more vertices is searched.
+ */
+class ShortestPathState {
+    double[] distances = new double[0];
+    int[] predecessors = new int[0];
+    boolean[] seen = new boolean[0];
+    int[] cycle = new int[0];
+
+    void ensureCapacity(int vertexCount) {
+        if (distances.length < vertexCount) {
+            distances = new double[vertexCount];
+            predecessors = new int[vertexCount];
+            seen = new boolean[vertexCount];
+            cycle = new int[vertexCount];
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+import com.estar.orderbook.model.CurrencyPair;
+import lombok.NonNull;
+
+import javax.inject.Inject;
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Finds all negative cycles with one Bellman-Ford run instead of one run per currency. The run starts from a
+ * virtual source with a zero weight edge to every currency, so all distances start at 0 and every cycle is
+ * reachable. The relaxation stops as soon as a round does not relax any edge, without a negative cycle that
+ * usually happens after a few rounds.
+ * <p>
+ * With a {@link RelaxationKernel} the rounds are run by the kernel in Jacobi form on the {@link IncomingEdges}
+ * of the graph, otherwise edge by edge updating the distances in place.
+ * <p>
+ * Without a kernel the distances and predecessors are local to the call and one finder can be used by many
+ * threads. With a kernel the finder keeps the {@link IncomingEdges} of the last graph and only refreshes their
+ * weights while the graph keeps its edges, it is then used by one thread at a time.
+ */
+public class SuperSourceArbitrageFinder implements ArbitrageDetector {
+    @NonNull
+    private final ArbitrageFactorFinder arbitrageFactorFinder;
+    private final RelaxationKernel relaxationKernel;
+    private IncomingEdges incomingEdges;
+    private DenseGraph incomingEdgesGraph;
+    private double[] nextDistances;
+    private int layoutBuilds;
+
+    @Inject
+    public SuperSourceArbitrageFinder(@NonNull ArbitrageFactorFinder arbitrageFactorFinder) {
+        this(arbitrageFactorFinder, null);
+    }
+
+    public SuperSourceArbitrageFinder(@NonNull ArbitrageFactorFinder arbitrageFactorFinder,
+                                      RelaxationKernel relaxationKernel) {
+        this.arbitrageFactorFinder = arbitrageFactorFinder;
+        this.relaxationKernel = relaxationKernel;
+    }
+
+    /**
+     * @param graph graph of all currency pairs
+     * @return currency pairs on a negative cycle with their arbitrage factor
+     */
+    public Map<CurrencyPair, BigDecimal> findCycles(DenseGraph graph) {
+        DetectionResult result = new DetectionResult(graph);
+        detect(graph, result);
+        return result.toMap();
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        result.clear();
+        int vertexCount = graph.getVertexCount();
+        double[] distances = new double[vertexCount];
+        int[] predecessors = new int[vertexCount];
+        for (int v = 0; v < vertexCount; v++) {
+            predecessors[v] = v;
+        }
+        if (relaxationKernel == null) {
+            relaxEdges(graph, distances, predecessors);
+        } else {
+            relaxEdges(graph, relaxationKernel, incomingEdges(graph), nextDistances, distances, predecessors);
+        }
+        getArbitrageCurrencyWithFactor(graph, distances, predecessors, new boolean[vertexCount], new int[vertexCount], result);
+    }
+
+    /**
+     * the layout of the last graph with its weights refreshed, built again only for another graph or when the
+     * number of edges changed
+     */
+    private IncomingEdges incomingEdges(DenseGraph graph) {
+        if (incomingEdges == null || incomingEdgesGraph != graph || !incomingEdges.isLayoutOf(graph)) {
+            incomingEdges = new IncomingEdges(graph);
+            incomingEdgesGraph = graph;
+            nextDistances = new double[graph.getVertexCount()];
+            layoutBuilds++;
+        } else {
+            incomingEdges.refreshWeights(graph);
+        }
+        return incomingEdges;
+    }
+
+    /**
+     * @return how many times the incoming edges were laid out, the other kernel runs only refreshed the weights
+     */
+    public int getLayoutBuilds() {
+        return layoutBuilds;
+    }
+
+    /**
+     * at most (active vertices - 1) Jacobi rounds of the kernel, stops early after a round without relaxation.
+     * The distances of the last round end up in the given array, next is the buffer of the other rounds.
+     */
+    static void relaxEdges(DenseGraph graph, RelaxationKernel relaxationKernel, IncomingEdges edges,
+                           double[] next, double[] distances, int[] predecessors) {
+        double[] current = distances;
+        boolean relaxed = true;
+        for (int i = 0; i < graph.getActiveVertexCount() - 1 && relaxed; i++) {
+            relaxed = relaxationKernel.relax(edges, current, next, predecessors);
+            double[] previous = current;
+            current = next;
+            next = previous;
+        }
+        if (current != distances) {
+            System.arraycopy(current, 0, distances, 0, distances.length);
+        }
+    }
+
+    /**
+     * at most (active vertices - 1) rounds, stops early after a round without relaxation
+     */
+    static void relaxEdges(DenseGraph graph, double[] distances, int[] predecessors) {
+        int edgeCount = graph.getEdgeCount();
+        boolean relaxed = true;
+        for (int i = 0; i < graph.getActiveVertexCount() - 1 && relaxed; i++) {
+            relaxed = false;
+            for (int e = 0; e < edgeCount; e++) {
+                int from = graph.getFrom(e);
+                int to = graph.getTo(e);
+                double distance = distances[from] + graph.getWeight(e);
+                if (distances[to] > distance) {
+                    distances[to] = distance;
+                    predecessors[to] = from;
+                    relaxed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * every edge which can still be relaxed leads to a negative cycle. Taking the edge as predecessor of its end
+     * and walking the predecessors as many times as there are vertices ends on the cycle, the cycle is then
+     * collected in predecessor order.
+     */
+    void getArbitrageCurrencyWithFactor(DenseGraph graph, double[] distances, int[] predecessors,
+                                        boolean[] seenVertices, int[] cycle, DetectionResult result) {
+        int vertexCount = graph.getVertexCount();
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            int start = graph.getFrom(e);
+            int end = graph.getTo(e);
+            if (seenVertices[end] || !(distances[end] > distances[start] + graph.getWeight(e))) {
+                continue;
+            }
+            // the edge closes the cycle, the predecessors of the rounds run may not have closed it yet
+            predecessors[end] = start;
+            int cycleVertex = end;
+            for (int i = 0; i < vertexCount; i++) {
+                cycleVertex = predecessors[cycleVertex];
+            }
+            int length = 0;
+            int vertex = cycleVertex;
+            do {
+                seenVertices[vertex] = true;
+                cycle[length++] = vertex;
+                vertex = predecessors[vertex];
+            } while (vertex != cycleVertex);
+            double arbitrageFactor = arbitrageFactorFinder.findFactor(graph, cycle, length);
+            if (arbitrageFactor > 0) {
+                result.recordCycle(graph, arbitrageFactor, cycle, length);
+            }
+        }
+    }
+}
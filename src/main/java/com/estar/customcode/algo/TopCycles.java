@@ -0,0 +1,295 @@
+package com.estar.customcode.algo;
+
+import java.util.Arrays;
+
+/**
+ * The K most profitable distinct cycles of a detection run. Every cycle offered is turned into trading
+ * order and rotated to start at its smallest currency, so EUR -> USD -> GBP and USD -> GBP -> EUR are the
+ * same cycle and only its best factor is kept. The kept cycles are a bounded min-heap on the factor with
+ * the least profitable cycle at the root, a cycle is only taken if it beats the root once K cycles are
+ * kept, so no more than K cycles are ever stored and nothing is sorted before reporting.
+ * <p>
+ * Cycles with the same factor are ordered by their currencies, the kept cycles and their ranking do not
+ * depend on the order they were offered in. The ranking is computed on the first read after a change, by
+ * sorting the K cycles only. Everything is allocated once, the class is not thread safe.
+ */
+public class TopCycles {
+    private final int capacity;
+    private final double minProfit;
+    // cycles in trading order from their smallest currency, by slot
+    private final int[][] cycles;
+    private final int[] lengths;
+    private final double[] factors;
+    private final double[] notionals;
+    private final double[] volumeWeightedFactors;
+    // slots as a min-heap, the worst kept cycle at 0
+    private final int[] heap;
+    // slots from the best to the worst cycle
+    private final int[] ranking;
+    private final int[] candidate;
+    private int size;
+    private boolean ranked;
+
+    /**
+     * @param capacity    number of cycles kept, K
+     * @param minProfit   cycles with a factor up to this value are not kept
+     * @param vertexCount number of currencies of the graph
+     */
+    public TopCycles(int capacity, double minProfit, int vertexCount) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("At least one cycle has to be kept: " + capacity);
+        }
+        this.capacity = capacity;
+        this.minProfit = minProfit;
+        this.cycles = new int[capacity][vertexCount];
+        this.lengths = new int[capacity];
+        this.factors = new double[capacity];
+        this.notionals = new double[capacity];
+        this.volumeWeightedFactors = new double[capacity];
+        this.heap = new int[capacity];
+        this.ranking = new int[capacity];
+        this.candidate = new int[vertexCount];
+        clear();
+    }
+
+    /**
+     * keeps the cycle if it is among the K most profitable so far
+     *
+     * @param cycle  vertices in predecessor order as recorded in a {@link DetectionResult}
+     * @param length number of vertices of the cycle
+     * @param factor
+     * @return true if the cycle was kept or its factor improved
+     */
+    public boolean offer(int[] cycle, int length, double factor) {
+        if (!(factor > minProfit)) {
+            return false;
+        }
+        tradingOrder(cycle, length, candidate);
+        return keepCandidate(length, factor);
+    }
+
+    /**
+     * offers every cycle kept by the other top cycles, the K best of both are kept as if all their cycles had
+     * been offered here
+     *
+     * @param other top cycles of a partial run on the same graph
+     */
+    public void merge(TopCycles other) {
+        for (int i = 0; i < other.size; i++) {
+            int slot = other.heap[i];
+            if (other.factors[slot] > minProfit) {
+                System.arraycopy(other.cycles[slot], 0, candidate, 0, other.lengths[slot]);
+                keepCandidate(other.lengths[slot], other.factors[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return empty top cycles with the same K and minimum profit, for a partial run
+     */
+    public TopCycles emptyCopy() {
+        return new TopCycles(capacity, minProfit, candidate.length);
+    }
+
+    /**
+     * keeps the candidate cycle, already in trading order, if it is among the K most profitable so far
+     */
+    private boolean keepCandidate(int length, double factor) {
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            if (lengths[slot] == length && Arrays.equals(cycles[slot], 0, length, candidate, 0, length)) {
+                if (factor <= factors[slot]) {
+                    return false;
+                }
+                factors[slot] = factor;
+                siftDown(i);
+                ranked = false;
+                return true;
+            }
+        }
+        int slot;
+        if (size < capacity) {
+            slot = size;
+            heap[size] = slot;
+            store(slot, length, factor);
+            siftUp(size++);
+        } else if (compare(factor, candidate, length, heap[0]) > 0) {
+            slot = heap[0];
+            store(slot, length, factor);
+            siftDown(0);
+        } else {
+            return false;
+        }
+        ranked = false;
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        ranked = false;
+        Arrays.fill(notionals, Double.NaN);
+        Arrays.fill(volumeWeightedFactors, Double.NaN);
+    }
+
+    /**
+     * @return number of kept cycles, at most K
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param rank 0 for the most profitable cycle
+     * @return
+     */
+    public double getFactor(int rank) {
+        return factors[slot(rank)];
+    }
+
+    public int getCycleLength(int rank) {
+        return lengths[slot(rank)];
+    }
+
+    /**
+     * @param rank
+     * @param index
+     * @return currency of the cycle in trading order, index 0 is the smallest currency of the cycle
+     */
+    public int getCycleVertex(int rank, int index) {
+        return cycles[slot(rank)][index];
+    }
+
+    /**
+     * adds the sizing of a cycle
+     *
+     * @param rank
+     * @param notional             amount of the first currency of the cycle which can be traded round it
+     * @param volumeWeightedFactor factor reached when trading the notional
+     */
+    public void size(int rank, double notional, double volumeWeightedFactor) {
+        notionals[slot(rank)] = notional;
+        volumeWeightedFactors[slot(rank)] = volumeWeightedFactor;
+    }
+
+    /**
+     * @param rank
+     * @return executable notional in the first currency of the cycle or NaN if not sized
+     */
+    public double getNotional(int rank) {
+        return notionals[slot(rank)];
+    }
+
+    /**
+     * @param rank
+     * @return factor over the executable notional or NaN if not sized
+     */
+    public double getVolumeWeightedFactor(int rank) {
+        return volumeWeightedFactors[slot(rank)];
+    }
+
+    private int slot(int rank) {
+        if (!ranked) {
+            rank();
+        }
+        return ranking[rank];
+    }
+
+    /**
+     * insertion sort of the kept cycles from best to worst
+     */
+    private void rank() {
+        for (int i = 0; i < size; i++) {
+            int slot = heap[i];
+            int j = i;
+            while (j > 0 && compare(slot, ranking[j - 1]) > 0) {
+                ranking[j] = ranking[j - 1];
+                j--;
+            }
+            ranking[j] = slot;
+        }
+        ranked = true;
+    }
+
+    /**
+     * trading order is the reverse of the predecessor order, rotated to start at the smallest currency so
+     * every rotation of a cycle gives the same vertices
+     *
+     * @param cycle  vertices in predecessor order
+     * @param length
+     * @param into   vertices in trading order
+     */
+    static void tradingOrder(int[] cycle, int length, int[] into) {
+        int smallest = 0;
+        for (int i = 1; i < length; i++) {
+            if (cycle[i] < cycle[smallest]) {
+                smallest = i;
+            }
+        }
+        for (int k = 0; k < length; k++) {
+            into[k] = cycle[(smallest - k + length) % length];
+        }
+    }
+
+    private void store(int slot, int length, double factor) {
+        System.arraycopy(candidate, 0, cycles[slot], 0, length);
+        lengths[slot] = length;
+        factors[slot] = factor;
+        notionals[slot] = Double.NaN;
+        volumeWeightedFactors[slot] = Double.NaN;
+    }
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(slot, heap[parent]) >= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(slot, heap[child]) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    private int compare(int slot, int other) {
+        return compare(factors[slot], cycles[slot], lengths[slot], other);
+    }
+
+    /**
+     * @return positive if the cycle is better than the one of the slot: a higher factor, or for the same
+     * factor fewer currencies and then smaller currencies
+     */
+    private int compare(double factor, int[] cycle, int length, int slot) {
+        int result = Double.compare(factor, factors[slot]);
+        if (result == 0) {
+            result = Integer.compare(lengths[slot], length);
+        }
+        if (result == 0) {
+            result = Arrays.compare(cycles[slot], 0, length, cycle, 0, length);
+        }
+        return result;
+    }
+}
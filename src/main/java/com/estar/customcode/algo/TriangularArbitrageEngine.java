@@ -0,0 +1,194 @@
+package com.estar.customcode.algo;
+
+import com.estar.customcode.model.DenseGraph;
+
+import java.util.Arrays;
+
+/**
+ * Enumerates every directed cycle of up to {@code maxCycleLength} currencies of the graph topology once
+ * (including the round trip over a single pair, which is negative for a crossed book) and indexes the
+ * cycles by the edges they use. A run only re-evaluates the cycles through the edges changed since the
+ * previous run, summing the cached -log rates of the few edges of each cycle, and keeps the set of negative
+ * cycles up to date. The cost of a run depends on the number of changed edges and the cycles per
+ * edge, not on a graph search, and every reported cycle is an exact path.
+ * <p>
+ * The engine is built for one graph and consumes its changes, so no other detector consuming the changes
+ * should run on the same graph. The number of cycles grows quickly with the length, for the currency pairs
+ * traded today triangles ({@code maxCycleLength = 3}) and quadrangles are cheap.
+ */
+public class TriangularArbitrageEngine implements ArbitrageDetector {
+    private final DenseGraph graph;
+    private final ArbitrageFactorFinder arbitrageFactorFinder;
+
+    // cycles as edges, cycle c uses cycleEdges[cycleStart[c] .. cycleStart[c + 1])
+    private final int[] cycleStart;
+    private final int[] cycleEdges;
+    // cycles using an edge, edge e is used by edgeCycles[edgeCycleStart[e] .. edgeCycleStart[e + 1])
+    private final int[] edgeCycleStart;
+    private final int[] edgeCycles;
+
+    private final double[] cycleWeights;
+    // negative cycles as a set with O(1) add and remove
+    private final int[] negativeCycles;
+    private final int[] negativePosition;
+    private int negativeCount;
+    private final int[] cycle;
+    private boolean initialized;
+
+    /**
+     * @param graph          graph the cycles are enumerated on
+     * @param maxCycleLength longest cycle in currencies, at least 3
+     * @param arbitrageFactorFinder
+     */
+    public TriangularArbitrageEngine(DenseGraph graph, int maxCycleLength, ArbitrageFactorFinder arbitrageFactorFinder) {
+        if (maxCycleLength < 3) {
+            throw new IllegalArgumentException("Cycles need at least 3 currencies: " + maxCycleLength);
+        }
+        this.graph = graph;
+        this.arbitrageFactorFinder = arbitrageFactorFinder;
+        CycleCollector collector = new CycleCollector(graph, maxCycleLength);
+        this.cycleStart = Arrays.copyOf(collector.cycleStart, collector.cycleCount + 1);
+        this.cycleEdges = Arrays.copyOf(collector.cycleEdges, collector.edgeCount);
+
+        int cycleCount = collector.cycleCount;
+        this.edgeCycleStart = new int[graph.getEdgeCount() + 1];
+        for (int i = 0; i < cycleEdges.length; i++) {
+            edgeCycleStart[cycleEdges[i] + 1]++;
+        }
+        for (int e = 0; e < graph.getEdgeCount(); e++) {
+            edgeCycleStart[e + 1] += edgeCycleStart[e];
+        }
+        this.edgeCycles = new int[cycleEdges.length];
+        int[] next = Arrays.copyOf(edgeCycleStart, graph.getEdgeCount());
+        for (int c = 0; c < cycleCount; c++) {
+            for (int i = cycleStart[c]; i < cycleStart[c + 1]; i++) {
+                edgeCycles[next[cycleEdges[i]]++] = c;
+            }
+        }
+        this.cycleWeights = new double[cycleCount];
+        this.negativeCycles = new int[cycleCount];
+        this.negativePosition = new int[cycleCount];
+        Arrays.fill(negativePosition, -1);
+        this.cycle = new int[maxCycleLength];
+    }
+
+    /**
+     * @return number of enumerated cycles
+     */
+    public int getCycleCount() {
+        return cycleWeights.length;
+    }
+
+    @Override
+    public void detect(DenseGraph graph, DetectionResult result) {
+        if (graph != this.graph) {
+            throw new IllegalArgumentException("The engine was built for another graph");
+        }
+        result.clear();
+        if (!initialized) {
+            for (int c = 0; c < cycleWeights.length; c++) {
+                evaluate(c);
+            }
+            initialized = true;
+        } else {
+            for (int i = 0; i < graph.getChangedEdgeCount(); i++) {
+                int edge = graph.getChangedEdge(i);
+                for (int j = edgeCycleStart[edge]; j < edgeCycleStart[edge + 1]; j++) {
+                    evaluate(edgeCycles[j]);
+                }
+            }
+        }
+        graph.clearChanges();
+        for (int i = 0; i < negativeCount; i++) {
+            report(negativeCycles[i], result);
+        }
+    }
+
+    private void evaluate(int c) {
+        double weight = 0;
+        for (int i = cycleStart[c]; i < cycleStart[c + 1]; i++) {
+            weight += graph.getWeight(cycleEdges[i]);
+        }
+        weight = DenseGraph.roundWeight(weight);
+        cycleWeights[c] = weight;
+        boolean negative = weight < 0;
+        if (negative && negativePosition[c] < 0) {
+            negativePosition[c] = negativeCount;
+            negativeCycles[negativeCount++] = c;
+        } else if (!negative && negativePosition[c] >= 0) {
+            int last = negativeCycles[--negativeCount];
+            negativeCycles[negativePosition[c]] = last;
+            negativePosition[last] = negativePosition[c];
+            negativePosition[c] = -1;
+        }
+    }
+
+    /**
+     * records every pair of the cycle, the cycle is stored in predecessor order like the other detectors
+     */
+    private void report(int c, DetectionResult result) {
+        double factor = arbitrageFactorFinder.transformArbitrageValue(cycleWeights[c]);
+        int length = cycleStart[c + 1] - cycleStart[c];
+        for (int i = 0; i < length; i++) {
+            cycle[i] = graph.getFrom(cycleEdges[cycleStart[c] + (length - i) % length]);
+        }
+        for (int i = cycleStart[c]; i < cycleStart[c + 1]; i++) {
+            result.record(DenseGraph.pairOf(cycleEdges[i]), factor, cycle, length);
+        }
+    }
+
+    /**
+     * depth first enumeration of the simple cycles, a cycle is only collected from its smallest vertex so
+     * every rotation is collected once
+     */
+    private static class CycleCollector {
+        private final DenseGraph graph;
+        private final int maxCycleLength;
+        private final boolean[] onPath;
+        private final int[] path;
+        private int[] cycleStart = new int[16];
+        private int[] cycleEdges = new int[64];
+        private int cycleCount;
+        private int edgeCount;
+
+        CycleCollector(DenseGraph graph, int maxCycleLength) {
+            this.graph = graph;
+            this.maxCycleLength = maxCycleLength;
+            this.onPath = new boolean[graph.getVertexCount()];
+            this.path = new int[maxCycleLength];
+            for (int start = 0; start < graph.getVertexCount(); start++) {
+                onPath[start] = true;
+                extend(start, start, 0);
+                onPath[start] = false;
+            }
+        }
+
+        private void extend(int start, int vertex, int depth) {
+            for (int i = graph.getOutEdgeStart(vertex); i < graph.getOutEdgeEnd(vertex); i++) {
+                int edge = graph.getOutEdge(i);
+                int next = graph.getTo(edge);
+                path[depth] = edge;
+                if (next == start && depth + 1 >= 2) {
+                    add(depth + 1);
+                } else if (next > start && !onPath[next] && depth + 1 < maxCycleLength) {
+                    onPath[next] = true;
+                    extend(start, next, depth + 1);
+                    onPath[next] = false;
+                }
+            }
+        }
+
+        private void add(int length) {
+            if (cycleCount + 1 >= cycleStart.length) {
+                cycleStart = Arrays.copyOf(cycleStart, cycleStart.length * 2);
+            }
+            while (edgeCount + length > cycleEdges.length) {
+                cycleEdges = Arrays.copyOf(cycleEdges, cycleEdges.length * 2);
+            }
+            cycleStart[cycleCount] = edgeCount;
+            System.arraycopy(path, 0, cycleEdges, edgeCount, length);
+            edgeCount += length;
+            cycleStart[++cycleCount] = edgeCount;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.estar.customcode.algo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link RelaxationKernel} using the incubating Vector API. The in edges of a vertex are processed as many
+ * at a time as the preferred vector has lanes: the distances of the start vertices are gathered, the weights
+ * added and the minimum of the lanes taken. Only when the minimum improves the best value so far the first
+ * lane holding it is looked up, the value is then computed again from that edge so it is exactly the value
+ * the scalar kernel keeps. The in edges left over after the last full vector are relaxed one by one.
+ * <p>
+ * Loading the class fails with a {@link LinkageError} if the module is not available, see
+ * {@link RelaxationKernel#vectorOrScalar()}.
+ */
+public class VectorRelaxationKernel implements RelaxationKernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean relax(IncomingEdges edges, double[] distances, double[] nextDistances, int[] predecessors) {
+        int lanes = SPECIES.length();
+        boolean relaxed = false;
+        for (int v = 0; v < edges.vertexCount; v++) {
+            double best = distances[v];
+            int bestEdge = -1;
+            int i = edges.start[v];
+            int end = edges.start[v + 1];
+            for (; i + lanes <= end; i += lanes) {
+                DoubleVector candidates = DoubleVector.fromArray(SPECIES, distances, 0, edges.from, i)
+                        .add(DoubleVector.fromArray(SPECIES, edges.weight, i));
+                double min = candidates.reduceLanes(VectorOperators.MIN);
+                if (min < best) {
+                    bestEdge = i + candidates.compare(VectorOperators.EQ, min).firstTrue();
+                    best = distances[edges.from[bestEdge]] + edges.weight[bestEdge];
+                }
+            }
+            for (; i < end; i++) {
+                double distance = distances[edges.from[i]] + edges.weight[i];
+                if (distance < best) {
+                    best = distance;
+                    bestEdge = i;
+                }
+            }
+            nextDistances[v] = best;
+            if (bestEdge >= 0) {
+                predecessors[v] = edges.from[bestEdge];
+                relaxed = true;
+            }
+        }
+        return relaxed;
+    }
+
+    /**
+     * @return number of edges relaxed at once
+     */
+    public int getLanes() {
+        return SPECIES.length();
+    }
+}
@@ -0,0 +1,150 @@
+package com.estar.customcode.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index from a long key to a non negative int value (usually a slot in a pool of
+ * parallel arrays). Keys and values are held in two primitive arrays and collisions are resolved by
+ * linear probing, removals shift the following entries back so no tombstones are left behind.
+ * <p>
+ * Compared to a {@code Map<Long, V>} there is no boxing of the key and no node per entry, the index only
+ * allocates when it grows beyond its largest size so far. Load factor is kept at or below 0.5.
+ * The class is not thread safe.
+ */
+public class LongIntHashIndex {
+    public static final int NOT_FOUND = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != NOT_FOUND;
+    }
+
+    /**
+     * @param key
+     * @return value stored for the key or {@link #NOT_FOUND}
+     */
+    public int get(long key) {
+        int index = indexOf(key);
+        while (values[index] != NOT_FOUND) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * stores the value for the key
+     *
+     * @param key
+     * @param value non negative value
+     * @return previous value of the key or {@link #NOT_FOUND}
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int index = indexOf(key);
+        while (values[index] != NOT_FOUND) {
+            if (keys[index] == key) {
+                int previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > (mask + 1) >> 1) {
+            grow();
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * @param key
+     * @return removed value or {@link #NOT_FOUND} if the key was not present
+     */
+    public int remove(long key) {
+        int index = indexOf(key);
+        while (values[index] != NOT_FOUND) {
+            if (keys[index] == key) {
+                int removed = values[index];
+                shiftBack(index);
+                size--;
+                return removed;
+            }
+            index = (index + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    public void clear() {
+        Arrays.fill(values, NOT_FOUND);
+        size = 0;
+    }
+
+    /**
+     * closes the gap at the removed index by moving back every following entry of the probe sequence
+     * whose home index does not lie between the gap and its current position
+     */
+    private void shiftBack(int gap) {
+        int index = (gap + 1) & mask;
+        while (values[index] != NOT_FOUND) {
+            int home = indexOf(keys[index]);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        values[gap] = NOT_FOUND;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldValues.length << 1);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != NOT_FOUND) {
+                int index = indexOf(oldKeys[i]);
+                while (values[index] != NOT_FOUND) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NOT_FOUND);
+        mask = capacity - 1;
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,31 @@
+package com.estar.customcode.journal;
+
+import com.estar.orderbook.model.OrderbookListener;
+import com.estar.orderbook.model.Price;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Appends every update to a {@link PriceJournal} before handing it to the listener, so the journal has the
+ * feed in the order the listener received it. Closing it closes the journal, not the listener: close the
+ * listener first so nothing it still processes is missing from the journal. Updates received after closing
+ * fail with an {@link IllegalStateException} and are not handed to the listener.
+ */
+@AllArgsConstructor
+public class JournalingOrderbookListener implements OrderbookListener, AutoCloseable {
+    @NonNull
+    private final OrderbookListener orderbookListener;
+    @NonNull
+    private final PriceJournal priceJournal;
+
+    @Override
+    public void handlePriceUpdate(Action action, Price price) {
+        priceJournal.append(action, price);
+        orderbookListener.handlePriceUpdate(action, price);
+    }
+
+    @Override
+    public void close() {
+        priceJournal.close();
+    }
+}
@@ -0,0 +1,221 @@
+package com.estar.customcode.journal;
+
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Append only journal of the price updates in memory mapped segment files. Every update is a record of
+ * {@link #RECORD_SIZE} bytes:
+ * <pre>
+ *  0 long  timestamp, nanoseconds since the epoch
+ *  8 long  price id
+ * 16 long  unscaled value of the price
+ * 24 int   quantity
+ * 28 short pair id of the instrument registry, unsigned
+ * 30 byte  scale of the price
+ * 31 byte  action ordinal + 1, bit 7 set for an ask
+ * </pre>
+ * The price is kept as the unscaled value and the scale of its {@link BigDecimal}, not rounded to a
+ * {@link com.estar.customcode.model.PricePrecision}, so the journal gives back the exact prices appended,
+ * scale included.
+ * The last byte is written last and is never 0, a 0 marks the end of the records of a segment. A segment
+ * starts with a header of {@link #HEADER_SIZE} bytes and is created with its full size and mapped when it
+ * is started, appending a record only writes the mapped memory: it makes no system call, the operating
+ * system writes the pages back, and it does not allocate for prices of up to 15 digits with a scale of 0
+ * to 18. Longer prices or negative scales are read through a {@link java.math.BigInteger}. Only starting
+ * the next segment once the current one is full opens and maps a file.
+ * <p>
+ * A journal always starts a new segment after the ones already in the directory. Only one thread may
+ * append at a time, like {@link com.estar.customcode.processors.PriceEventRing} the calls have to be
+ * ordered by the caller. Closing the journal flushes it once, appending after that fails. {@link PriceJournalReader}
+ * reads the segments back.
+ */
+public class PriceJournal implements AutoCloseable {
+    public static final int RECORD_SIZE = 32;
+    public static final int HEADER_SIZE = 16;
+    /**
+     * largest pair id a record can hold
+     */
+    public static final int MAX_INSTRUMENT = 0xFFFF;
+    static final int MAGIC = 0x504A4E4C;
+    static final int VERSION = 1;
+    static final String SUFFIX = ".journal";
+    static final int TIMESTAMP_OFFSET = 0;
+    static final int ID_OFFSET = 8;
+    static final int PRICE_OFFSET = 16;
+    static final int QUANTITY_OFFSET = 24;
+    static final int INSTRUMENT_OFFSET = 28;
+    static final int SCALE_OFFSET = 30;
+    static final int HEADER_BYTE_OFFSET = 31;
+    static final int ASK_FLAG = 0x80;
+    static final int ACTION_MASK = 0x7F;
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private final Path directory;
+    private final long segmentSize;
+    // epoch nanos at System.nanoTime() 0, the timestamps are taken without asking for the wall clock
+    private final long epochNanosOffset;
+    private MappedByteBuffer segment;
+    private int segmentIndex;
+    private int segments;
+    private long records;
+    // set by close, possibly on another thread than the one appending
+    private volatile boolean closed;
+
+    /**
+     * @param directory   created if it does not exist
+     * @param segmentSize size of a segment file in bytes including the header
+     * @throws IOException
+     */
+    public PriceJournal(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size has to be between " + (HEADER_SIZE + RECORD_SIZE)
+                    + " and " + Integer.MAX_VALUE + ": " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.epochNanosOffset = System.currentTimeMillis() * 1_000_000 - System.nanoTime();
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        this.segmentIndex = existing.isEmpty() ? 0 : index(existing.get(existing.size() - 1)) + 1;
+        startSegment();
+    }
+
+    /**
+     * appends the update with the current time
+     *
+     * @param action
+     * @param price
+     */
+    public void append(Action action, Price price) {
+        append(action, price, epochNanosOffset + System.nanoTime());
+    }
+
+    /**
+     * @param action
+     * @param price
+     * @param timestampNanos nanoseconds since the epoch
+     * @throws IllegalArgumentException if the scale of the price does not fit a byte or the pair id an
+     *                                  unsigned short
+     * @throws ArithmeticException      if the unscaled value of the price does not fit a long
+     * @throws IllegalStateException    if the journal is closed
+     */
+    public void append(Action action, Price price, long timestampNanos) {
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        int scale = price.price().scale();
+        if (scale < Byte.MIN_VALUE || scale > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Scale of the price can not be journaled: " + price.price());
+        }
+        int instrument = price.instrument();
+        if (instrument < 0 || instrument > MAX_INSTRUMENT) {
+            throw new IllegalArgumentException("Pair id can not be journaled: " + instrument);
+        }
+        long unscaledPrice = unscaledValue(price.price());
+        if (segment.remaining() < RECORD_SIZE) {
+            nextSegment();
+        }
+        int position = segment.position();
+        segment.putLong(position + TIMESTAMP_OFFSET, timestampNanos);
+        segment.putLong(position + ID_OFFSET, price.id());
+        segment.putLong(position + PRICE_OFFSET, unscaledPrice);
+        segment.putInt(position + QUANTITY_OFFSET, price.quantity());
+        segment.putShort(position + INSTRUMENT_OFFSET, (short) instrument);
+        segment.put(position + SCALE_OFFSET, (byte) scale);
+        segment.put(position + HEADER_BYTE_OFFSET, (byte) ((action.ordinal() + 1) | (price.ask() ? ASK_FLAG : 0)));
+        segment.position(position + RECORD_SIZE);
+        records++;
+    }
+
+    /**
+     * @return number of records appended by this journal
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return number of segments started by this journal
+     */
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * writes the mapped pages of the current segment to the file
+     */
+    public void flush() {
+        segment.force();
+    }
+
+    /**
+     * flushes the journal, only the first call has an effect
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            flush();
+        }
+    }
+
+    /**
+     * unscaled value of the price at its own scale. Prices of up to 15 digits are exact as a double, scaled
+     * by a power of ten they round back to their unscaled value without creating objects.
+     */
+    private static long unscaledValue(BigDecimal price) {
+        int scale = price.scale();
+        if (scale >= 0 && scale < POW10.length && price.precision() <= 15) {
+            return Math.round(price.doubleValue() * POW10[scale]);
+        }
+        return price.unscaledValue().longValueExact();
+    }
+
+    static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static int index(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private void nextSegment() {
+        segmentIndex++;
+        try {
+            startSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not start journal segment " + segmentIndex + " in " + directory, e);
+        }
+    }
+
+    private void startSegment() throws IOException {
+        Path file = directory.resolve(String.format("%010d%s", segmentIndex, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(0);
+        segments++;
+    }
+}
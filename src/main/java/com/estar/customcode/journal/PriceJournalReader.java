@@ -0,0 +1,111 @@
+package com.estar.customcode.journal;
+
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reads the records of a {@link PriceJournal} in the order they were appended, over all segments of the
+ * directory. The reader is a cursor: {@link #next()} moves to the next record and the getters read its
+ * fields straight from the mapped segment, nothing is copied or allocated per record except by
+ * {@link #toPrice()}. The segments are listed when the reader is created.
+ */
+public class PriceJournalReader {
+    private static final Action[] ACTIONS = Action.values();
+
+    private final List<Path> files;
+    private int nextFile;
+    private MappedByteBuffer segment;
+    // offset of the current record, -1 before the first one
+    private int position = -1;
+
+    public PriceJournalReader(Path directory) throws IOException {
+        this.files = PriceJournal.segments(directory);
+    }
+
+    /**
+     * @return true if there is a next record, it is the current one from now on
+     * @throws IOException
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (segment != null) {
+                int next = position < 0 ? PriceJournal.HEADER_SIZE : position + PriceJournal.RECORD_SIZE;
+                if (next + PriceJournal.RECORD_SIZE <= segment.limit()
+                        && segment.get(next + PriceJournal.HEADER_BYTE_OFFSET) != 0) {
+                    position = next;
+                    return true;
+                }
+            }
+            if (nextFile == files.size()) {
+                return false;
+            }
+            open(files.get(nextFile++));
+        }
+    }
+
+    public long getTimestampNanos() {
+        return segment.getLong(position + PriceJournal.TIMESTAMP_OFFSET);
+    }
+
+    public long getId() {
+        return segment.getLong(position + PriceJournal.ID_OFFSET);
+    }
+
+    /**
+     * @return unscaled value of the price, the price is this value times 10 to the minus {@link #getScale()}
+     */
+    public long getUnscaledPrice() {
+        return segment.getLong(position + PriceJournal.PRICE_OFFSET);
+    }
+
+    public int getScale() {
+        return segment.get(position + PriceJournal.SCALE_OFFSET);
+    }
+
+    public int getQuantity() {
+        return segment.getInt(position + PriceJournal.QUANTITY_OFFSET);
+    }
+
+    /**
+     * @return pair id of the instrument registry the price was appended with
+     */
+    public int getInstrument() {
+        return Short.toUnsignedInt(segment.getShort(position + PriceJournal.INSTRUMENT_OFFSET));
+    }
+
+    public boolean isAsk() {
+        return (segment.get(position + PriceJournal.HEADER_BYTE_OFFSET) & PriceJournal.ASK_FLAG) != 0;
+    }
+
+    public Action getAction() {
+        return ACTIONS[(segment.get(position + PriceJournal.HEADER_BYTE_OFFSET) & PriceJournal.ACTION_MASK) - 1];
+    }
+
+    /**
+     * @return the current record as the price it was appended from, the price has the same value and scale
+     */
+    public Price toPrice() {
+        return new Price(getId(), getInstrument(), isAsk(), getQuantity(), BigDecimal.valueOf(getUnscaledPrice(), getScale()));
+    }
+
+    private void open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        if (segment.limit() < PriceJournal.HEADER_SIZE || segment.getInt(0) != PriceJournal.MAGIC
+                || segment.getInt(8) != PriceJournal.RECORD_SIZE) {
+            throw new IOException("Not a price journal segment: " + file);
+        }
+        position = -1;
+    }
+}
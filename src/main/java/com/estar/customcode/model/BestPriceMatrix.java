@@ -0,0 +1,201 @@
+package com.estar.customcode.model;
+
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.Price;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Best buy and best sell of every available currency pair in ticks of the {@link PricePrecision}, by the
+ * pair ids of the {@link InstrumentRegistry}.
+ * This is the input of the algorithm, index 0 of the former BigDecimal[] is the buy price and index 1
+ * the sell price. The -log weights of the prices are kept next to them, taken from the books when they
+ * publish them so building the graph only copies them.
+ * <p>
+ * A matrix filled from the books is a snapshot: it also keeps the best prices read together with the
+ * ticks and the epoch of the books it was read at, so results can be reported with exactly the values
+ * they were detected on. The epoch is the highest version of the tops of book read, every pair holds a top
+ * of book published at or before it. A matrix created with depth levels also keeps the {@link BookDepth} of
+ * every pair copied with its top of book, so results are sized on the levels of the same update.
+ */
+public class BestPriceMatrix {
+    private final PricePrecision precision;
+    private final long[] buyTicks;
+    private final long[] sellTicks;
+    private final double[] buyWeights;
+    private final double[] sellWeights;
+    private final Price[] buyPrices;
+    private final Price[] sellPrices;
+    private final BookDepth[] depths;
+    private long epoch = -1;
+    private int size;
+
+    /**
+     * matrix of the {@link CurrencyPair}s without depth, the pair ids are the ones of
+     * {@link InstrumentRegistry#forCurrencyPairs()}
+     *
+     * @param precision
+     */
+    public BestPriceMatrix(PricePrecision precision) {
+        this(precision, CurrencyPair.values().length, 0);
+    }
+
+    /**
+     * @param precision
+     * @param pairCount   number of pairs of the registry
+     * @param depthLevels levels kept per book side, 0 to keep no depth
+     */
+    public BestPriceMatrix(PricePrecision precision, int pairCount, int depthLevels) {
+        this.precision = precision;
+        this.buyTicks = new long[pairCount];
+        this.sellTicks = new long[pairCount];
+        this.buyWeights = new double[pairCount];
+        this.sellWeights = new double[pairCount];
+        this.buyPrices = new Price[pairCount];
+        this.sellPrices = new Price[pairCount];
+        this.depths = new BookDepth[depthLevels > 0 ? pairCount : 0];
+        for (int i = 0; i < depths.length; i++) {
+            depths[i] = new BookDepth(depthLevels);
+        }
+    }
+
+    /**
+     * converts the BigDecimal representation used by the earlier versions of the algorithm
+     *
+     * @param currencyMatrix
+     * @param precision
+     * @return
+     */
+    public static BestPriceMatrix of(Map<CurrencyPair, BigDecimal[]> currencyMatrix, PricePrecision precision) {
+        BestPriceMatrix bestPriceMatrix = new BestPriceMatrix(precision);
+        for (Map.Entry<CurrencyPair, BigDecimal[]> currencyEntry : currencyMatrix.entrySet()) {
+            int pair = currencyEntry.getKey().ordinal();
+            bestPriceMatrix.put(pair,
+                    precision.toTicks(pair, currencyEntry.getValue()[0]),
+                    precision.toTicks(pair, currencyEntry.getValue()[1]));
+        }
+        return bestPriceMatrix;
+    }
+
+    public void put(int pair, long buy, long sell) {
+        put(pair, buy, sell, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * @param pair
+     * @param buy
+     * @param sell
+     * @param buyWeight    -log weight of the buy price, computed from the ticks if NaN
+     * @param sellWeight   -log weight of the sell price, computed from the ticks if NaN
+     */
+    public void put(int pair, long buy, long sell, double buyWeight, double sellWeight) {
+        if (!contains(pair)) {
+            size++;
+        }
+        buyTicks[pair] = buy;
+        sellTicks[pair] = sell;
+        buyWeights[pair] = Double.isNaN(buyWeight) ? precision.toWeight(pair, buy) : buyWeight;
+        sellWeights[pair] = Double.isNaN(sellWeight) ? precision.toWeight(pair, sell) : sellWeight;
+    }
+
+    /**
+     * @param pair
+     * @param buy          best buy read together with the ticks
+     * @param sell         best sell read together with the ticks
+     */
+    public void putPrices(int pair, Price buy, Price sell) {
+        buyPrices[pair] = buy;
+        sellPrices[pair] = sell;
+    }
+
+    /**
+     * @param epoch highest version of the tops of book the values were read from
+     */
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * @return epoch of the books the values were read at, -1 if not read from books
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * @param pair
+     * @return best buy of the snapshot or null if not read from a book
+     */
+    public Price getBuyPrice(int pair) {
+        return buyPrices[pair];
+    }
+
+    /**
+     * @param pair
+     * @return best sell of the snapshot or null if not read from a book
+     */
+    public Price getSellPrice(int pair) {
+        return sellPrices[pair];
+    }
+
+    /**
+     * @param pair
+     * @return levels of the book of the pair, to be copied together with its top of book, or null if the
+     * matrix keeps no depth
+     */
+    public BookDepth getDepth(int pair) {
+        return depths.length > 0 ? depths[pair] : null;
+    }
+
+    public boolean contains(int pair) {
+        return buyTicks[pair] != 0;
+    }
+
+    /**
+     * @return number of pairs the matrix has room for
+     */
+    public int getPairCount() {
+        return buyTicks.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public PricePrecision getPrecision() {
+        return precision;
+    }
+
+    public long getBuyTicks(int pair) {
+        return buyTicks[pair];
+    }
+
+    public long getSellTicks(int pair) {
+        return sellTicks[pair];
+    }
+
+    public double getBuyRate(int pair) {
+        return precision.toDouble(pair, getBuyTicks(pair));
+    }
+
+    public double getSellRate(int pair) {
+        return precision.toDouble(pair, getSellTicks(pair));
+    }
+
+    /**
+     * @param pair
+     * @return -log of the buy rate rounded like the weights of the {@link DenseGraph}
+     */
+    public double getBuyWeight(int pair) {
+        return buyWeights[pair];
+    }
+
+    /**
+     * @param pair
+     * @return -log of the sell rate rounded like the weights of the {@link DenseGraph}
+     */
+    public double getSellWeight(int pair) {
+        return sellWeights[pair];
+    }
+}
@@ -0,0 +1,65 @@
+package com.estar.customcode.model;
+
+/**
+ * Best price levels of both sides of a book copied together, best first, in ticks of the
+ * {@link PricePrecision} of the pair with the total quantity of the orders of every level. The ask side
+ * gives the buy prices and the bid side the sell prices like in a {@link BestPriceMatrix}.
+ */
+public class BookDepth {
+    private final long[] askTicks;
+    private final long[] askQuantities;
+    private final long[] bidTicks;
+    private final long[] bidQuantities;
+    private int askLevels;
+    private int bidLevels;
+
+    /**
+     * @param depthLevels largest number of levels kept per side
+     */
+    public BookDepth(int depthLevels) {
+        this.askTicks = new long[depthLevels];
+        this.askQuantities = new long[depthLevels];
+        this.bidTicks = new long[depthLevels];
+        this.bidQuantities = new long[depthLevels];
+    }
+
+    /**
+     * @param ask
+     * @return array the ticks of the levels of the side are copied to
+     */
+    public long[] ticks(boolean ask) {
+        return ask ? askTicks : bidTicks;
+    }
+
+    /**
+     * @param ask
+     * @return array the quantities of the levels of the side are copied to
+     */
+    public long[] quantities(boolean ask) {
+        return ask ? askQuantities : bidQuantities;
+    }
+
+    /**
+     * @param ask
+     * @param levels number of levels copied to the side
+     */
+    public void setLevels(boolean ask, int levels) {
+        if (ask) {
+            askLevels = levels;
+        } else {
+            bidLevels = levels;
+        }
+    }
+
+    public int getLevels(boolean ask) {
+        return ask ? askLevels : bidLevels;
+    }
+
+    public long getTicks(boolean ask, int level) {
+        return ticks(ask)[level];
+    }
+
+    public long getQuantity(boolean ask, int level) {
+        return quantities(ask)[level];
+    }
+}
@@ -0,0 +1,21 @@
+package com.estar.customcode.model;
+
+import java.util.List;
+
+/**
+ * Best way to convert one currency to another over the current top of books, the currencies are their codes.
+ *
+ * @param from
+ * @param to
+ * @param currencies currencies converted through in order, starting with {@code from} and ending with {@code to}
+ * @param rate       amount of {@code to} received for one {@code from} along the route
+ */
+public record ConversionRoute(String from, String to, List<String> currencies, double rate) {
+
+    /**
+     * @return number of conversions of the route
+     */
+    public int hops() {
+        return currencies.size() - 1;
+    }
+}
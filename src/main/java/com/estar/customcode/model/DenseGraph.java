@@ -0,0 +1,290 @@
+package com.estar.customcode.model;
+
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+
+import java.util.Arrays;
+
+/**
+ * Graph of the currencies kept in primitive arrays. Every currency has a dense int id and every currency
+ * pair {@code p} two edges, edge {@code 2p} from base to quote weighted with -log of the buy rate and edge
+ * {@code 2p + 1} from quote to base weighted with -log of the sell rate.
+ * <p>
+ * The topology is fixed when the graph is created, the weights are updated in place when the rates change.
+ * A pair without rates has infinite weights so its edges never relax a distance. The weights are rounded to
+ * {@link #WEIGHT_DECIMALS} decimal places like the edges of the {@link Graph}.
+ * <p>
+ * Every edge whose weight changed is remembered until {@link #clearChanges()}, so a detector keeping state
+ * between runs only has to look at those edges.
+ */
+public class DenseGraph {
+    public static final int NO_EDGE = -1;
+    public static final int WEIGHT_DECIMALS = 4;
+    private static final double WEIGHT_SCALE = Math.pow(10, WEIGHT_DECIMALS);
+
+    private final int vertexCount;
+    private final int[] from;
+    private final int[] to;
+    private final double[] weight;
+    private final boolean[] pairActive;
+    private final int[] vertexPairs;
+    private final int[] edgeByVertices;
+    private final int[] outEdgeStart;
+    private final int[] outEdges;
+    private final boolean[] edgeChanged;
+    private final int[] changedEdges;
+    private int changedEdgeCount;
+    private int activeVertexCount;
+
+    /**
+     * @param vertexCount number of currencies
+     * @param pairBase    base currency id of every pair
+     * @param pairQuote   quote currency id of every pair
+     */
+    public DenseGraph(int vertexCount, int[] pairBase, int[] pairQuote) {
+        if (pairBase.length != pairQuote.length) {
+            throw new IllegalArgumentException("Every pair needs a base and a quote currency");
+        }
+        this.vertexCount = vertexCount;
+        int edgeCount = pairBase.length * 2;
+        this.from = new int[edgeCount];
+        this.to = new int[edgeCount];
+        this.weight = new double[edgeCount];
+        this.pairActive = new boolean[pairBase.length];
+        this.vertexPairs = new int[vertexCount];
+        this.edgeByVertices = new int[vertexCount * vertexCount];
+        this.outEdgeStart = new int[vertexCount + 1];
+        this.outEdges = new int[edgeCount];
+        this.edgeChanged = new boolean[edgeCount];
+        this.changedEdges = new int[edgeCount];
+        Arrays.fill(weight, Double.POSITIVE_INFINITY);
+        Arrays.fill(edgeByVertices, NO_EDGE);
+        for (int pair = 0; pair < pairBase.length; pair++) {
+            from[2 * pair] = to[2 * pair + 1] = pairBase[pair];
+            to[2 * pair] = from[2 * pair + 1] = pairQuote[pair];
+            edgeByVertices[pairBase[pair] * vertexCount + pairQuote[pair]] = 2 * pair;
+            edgeByVertices[pairQuote[pair] * vertexCount + pairBase[pair]] = 2 * pair + 1;
+        }
+        // edges grouped by their start vertex
+        for (int edge = 0; edge < edgeCount; edge++) {
+            outEdgeStart[from[edge] + 1]++;
+        }
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            outEdgeStart[vertex + 1] += outEdgeStart[vertex];
+        }
+        int[] next = Arrays.copyOf(outEdgeStart, vertexCount);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            outEdges[next[from[edge]]++] = edge;
+        }
+    }
+
+    /**
+     * graph of all {@link CurrencyPair}s, currency ids are the ordinals of {@link Currency} and pair ids the
+     * ordinals of {@link CurrencyPair}
+     *
+     * @return
+     */
+    public static DenseGraph forCurrencyPairs() {
+        return InstrumentRegistry.forCurrencyPairs().toGraph();
+    }
+
+    /**
+     * updates the edges of all pairs with the weights of the matrix, pairs missing in the matrix are removed
+     *
+     * @param bestPriceMatrix matrix by the pair ids of the graph
+     */
+    public void update(BestPriceMatrix bestPriceMatrix) {
+        for (int pair = 0; pair < pairActive.length; pair++) {
+            if (bestPriceMatrix.contains(pair)) {
+                updateWeights(pair, bestPriceMatrix.getBuyWeight(pair), bestPriceMatrix.getSellWeight(pair));
+            } else {
+                remove(pair);
+            }
+        }
+    }
+
+    /**
+     * @param pair
+     * @param buyRate  rate of the edge from base to quote
+     * @param sellRate rate of the edge from quote to base
+     * @return true if a weight changed
+     */
+    public boolean update(int pair, double buyRate, double sellRate) {
+        return updateWeights(pair, toWeight(buyRate), toWeight(sellRate));
+    }
+
+    /**
+     * @param pair
+     * @param buyWeight  weight of the edge from base to quote as computed by {@link #toWeight(double)}
+     * @param sellWeight weight of the edge from quote to base
+     * @return true if a weight changed
+     */
+    public boolean updateWeights(int pair, double buyWeight, double sellWeight) {
+        activate(pair, true);
+        return setWeight(2 * pair, buyWeight) | setWeight(2 * pair + 1, sellWeight);
+    }
+
+    /**
+     * removes both edges of the pair from the search
+     *
+     * @param pair
+     * @return true if the pair had rates
+     */
+    public boolean remove(int pair) {
+        if (!pairActive[pair]) {
+            return false;
+        }
+        activate(pair, false);
+        setWeight(2 * pair, Double.POSITIVE_INFINITY);
+        setWeight(2 * pair + 1, Double.POSITIVE_INFINITY);
+        return true;
+    }
+
+    /**
+     * @return number of edges whose weight changed since the last {@link #clearChanges()}
+     */
+    public int getChangedEdgeCount() {
+        return changedEdgeCount;
+    }
+
+    /**
+     * @param index between 0 and {@link #getChangedEdgeCount()}
+     * @return changed edge, every edge is listed once
+     */
+    public int getChangedEdge(int index) {
+        return changedEdges[index];
+    }
+
+    public void clearChanges() {
+        for (int i = 0; i < changedEdgeCount; i++) {
+            edgeChanged[changedEdges[i]] = false;
+        }
+        changedEdgeCount = 0;
+    }
+
+    /**
+     * @param vertex
+     * @return index of the first out edge of the vertex for {@link #getOutEdge(int)}
+     */
+    public int getOutEdgeStart(int vertex) {
+        return outEdgeStart[vertex];
+    }
+
+    /**
+     * @param vertex
+     * @return index after the last out edge of the vertex for {@link #getOutEdge(int)}
+     */
+    public int getOutEdgeEnd(int vertex) {
+        return outEdgeStart[vertex + 1];
+    }
+
+    public int getOutEdge(int index) {
+        return outEdges[index];
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * @return number of currencies which are part of at least one pair with rates
+     */
+    public int getActiveVertexCount() {
+        return activeVertexCount;
+    }
+
+    public int getEdgeCount() {
+        return from.length;
+    }
+
+    public int getPairCount() {
+        return pairActive.length;
+    }
+
+    public int getFrom(int edge) {
+        return from[edge];
+    }
+
+    public int getTo(int edge) {
+        return to[edge];
+    }
+
+    public double getWeight(int edge) {
+        return weight[edge];
+    }
+
+    public boolean isActive(int edge) {
+        return pairActive[edge >> 1];
+    }
+
+    public boolean isActiveVertex(int vertex) {
+        return vertexPairs[vertex] > 0;
+    }
+
+    /**
+     * @param edge
+     * @return pair the edge belongs to
+     */
+    public static int pairOf(int edge) {
+        return edge >> 1;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return edge between the two currencies or {@link #NO_EDGE}
+     */
+    public int edge(int from, int to) {
+        return edgeByVertices[from * vertexCount + to];
+    }
+
+    /**
+     * -log of the rate rounded to {@link #WEIGHT_DECIMALS} decimal places
+     *
+     * @param rate
+     * @return
+     */
+    public static double toWeight(double rate) {
+        return roundWeight(-Math.log(rate));
+    }
+
+    /**
+     * rounds half up to {@link #WEIGHT_DECIMALS} decimal places, also used for sums of weights
+     *
+     * @param weight
+     * @return
+     */
+    public static double roundWeight(double weight) {
+        return Math.copySign(Math.floor(Math.abs(weight) * WEIGHT_SCALE + 0.5d), weight) / WEIGHT_SCALE;
+    }
+
+    private boolean setWeight(int edge, double value) {
+        if (weight[edge] == value) {
+            return false;
+        }
+        weight[edge] = value;
+        if (!edgeChanged[edge]) {
+            edgeChanged[edge] = true;
+            changedEdges[changedEdgeCount++] = edge;
+        }
+        return true;
+    }
+
+    private void activate(int pair, boolean active) {
+        if (pairActive[pair] == active) {
+            return;
+        }
+        pairActive[pair] = active;
+        int delta = active ? 1 : -1;
+        countVertex(from[2 * pair], delta);
+        countVertex(to[2 * pair], delta);
+    }
+
+    private void countVertex(int vertex, int delta) {
+        boolean wasActive = vertexPairs[vertex] > 0;
+        vertexPairs[vertex] += delta;
+        if (wasActive != vertexPairs[vertex] > 0) {
+            activeVertexCount += delta;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.estar.customcode.model;
+
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns currencies and currency pairs to dense int ids. Currency ids count from 0 in the order the
+ * currencies are added, pair ids as well. The pair between two currencies is found in a currency by
+ * currency table, a lookup by ids is two array reads and never builds or hashes a string. Codes are only
+ * hashed when instruments are added or resolved by name, e.g. while loading them.
+ * <p>
+ * The pipeline is indexed by the ids of a registry: the instrument of a price is its pair id, and the order
+ * books, the {@link BestPriceMatrix}, the {@link PricePrecision}, the {@link DenseGraph}, the sizing, the
+ * conversion routes and the journal all go by pair and currency id. Codes and symbols are only looked up
+ * to report results. {@link #forCurrencyPairs()} is the registry of the {@link Currency} and
+ * {@link CurrencyPair} enums of the price feed, any other universe is registered by its codes.
+ * <p>
+ * Instruments can be added at any time, a {@link DenseGraph} built by {@link #toGraph()} has the
+ * instruments registered at that moment. The class is not thread safe, the registry is expected to be
+ * filled before the detection runs or to be handed over by the thread filling it.
+ */
+public class InstrumentRegistry {
+    public static final int NO_ID = -1;
+    private static final int INITIAL_CURRENCIES = 8;
+
+    private final Map<String, Integer> currencyIds = new HashMap<>();
+    private final List<String> currencyCodes = new ArrayList<>();
+    private int[] pairBase = new int[INITIAL_CURRENCIES];
+    private int[] pairQuote = new int[INITIAL_CURRENCIES];
+    private int pairCount;
+    // pair id by base * currencyCapacity + quote, NO_ID where there is no pair
+    private int[] pairByCurrencies = new int[0];
+    private int currencyCapacity;
+
+    /**
+     * registry of the {@link Currency} and {@link CurrencyPair} enums, the ids are the ordinals
+     *
+     * @return
+     */
+    public static InstrumentRegistry forCurrencyPairs() {
+        InstrumentRegistry instrumentRegistry = new InstrumentRegistry();
+        for (Currency currency : Currency.values()) {
+            instrumentRegistry.addCurrency(currency.name());
+        }
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            instrumentRegistry.addPair(currencyPair.getBaseCurrency().name(), currencyPair.getQuoteCurrency().name());
+        }
+        return instrumentRegistry;
+    }
+
+    /**
+     * registry of pairs given by their symbols, e.g. "EUR_USD" or "EUR/USD"
+     *
+     * @param symbols
+     * @return
+     */
+    public static InstrumentRegistry of(String... symbols) {
+        InstrumentRegistry instrumentRegistry = new InstrumentRegistry();
+        for (String symbol : symbols) {
+            String[] currencies = symbol.split("[_/]");
+            if (currencies.length != 2) {
+                throw new IllegalArgumentException("Currency pair has to be BASE_QUOTE or BASE/QUOTE: " + symbol);
+            }
+            instrumentRegistry.addPair(currencies[0], currencies[1]);
+        }
+        return instrumentRegistry;
+    }
+
+    /**
+     * @param code
+     * @return id of the currency, the existing one if it was added before
+     */
+    public int addCurrency(String code) {
+        Integer id = currencyIds.get(code);
+        if (id != null) {
+            return id;
+        }
+        int currency = currencyCodes.size();
+        currencyIds.put(code, currency);
+        currencyCodes.add(code);
+        if (currency == currencyCapacity) {
+            growCurrencies(Math.max(INITIAL_CURRENCIES, currencyCapacity << 1));
+        }
+        return currency;
+    }
+
+    /**
+     * adds the pair and its currencies if they are not registered yet
+     *
+     * @param base
+     * @param quote
+     * @return id of the pair, the existing one if it was added before
+     */
+    public int addPair(String base, String quote) {
+        int baseId = addCurrency(base);
+        int quoteId = addCurrency(quote);
+        if (baseId == quoteId) {
+            throw new IllegalArgumentException("Currency pair needs two currencies: " + base + "_" + quote);
+        }
+        int existing = pairBetween(baseId, quoteId);
+        if (existing != NO_ID) {
+            if (pairBase[existing] != baseId) {
+                throw new IllegalArgumentException("Currency pair " + base + "_" + quote + " is registered inverted");
+            }
+            return existing;
+        }
+        int pair = pairCount++;
+        if (pair == pairBase.length) {
+            pairBase = Arrays.copyOf(pairBase, pair << 1);
+            pairQuote = Arrays.copyOf(pairQuote, pair << 1);
+        }
+        pairBase[pair] = baseId;
+        pairQuote[pair] = quoteId;
+        pairByCurrencies[baseId * currencyCapacity + quoteId] = pair;
+        return pair;
+    }
+
+    public int getCurrencyCount() {
+        return currencyCodes.size();
+    }
+
+    public int getPairCount() {
+        return pairCount;
+    }
+
+    /**
+     * @param code
+     * @return id of the currency or {@link #NO_ID}
+     */
+    public int currencyId(String code) {
+        Integer id = currencyIds.get(code);
+        return id != null ? id : NO_ID;
+    }
+
+    public String currencyCode(int currency) {
+        return currencyCodes.get(currency);
+    }
+
+    public int getBase(int pair) {
+        return pairBase[pair];
+    }
+
+    public int getQuote(int pair) {
+        return pairQuote[pair];
+    }
+
+    /**
+     * @param pair
+     * @return symbol of the pair as BASE_QUOTE
+     */
+    public String pairSymbol(int pair) {
+        return currencyCode(pairBase[pair]) + "_" + currencyCode(pairQuote[pair]);
+    }
+
+    /**
+     * @param base
+     * @param quote
+     * @return id of the pair quoted as base and quote or {@link #NO_ID}
+     */
+    public int pairId(int base, int quote) {
+        int pair = pairBetween(base, quote);
+        return pair != NO_ID && pairBase[pair] == base ? pair : NO_ID;
+    }
+
+    /**
+     * the pair trading between the currencies in either direction, as a cycle can use a pair inverted
+     *
+     * @param currency
+     * @param other
+     * @return id of the pair or {@link #NO_ID}
+     */
+    public int pairBetween(int currency, int other) {
+        int pair = pairByCurrencies[currency * currencyCapacity + other];
+        return pair != NO_ID ? pair : pairByCurrencies[other * currencyCapacity + currency];
+    }
+
+    /**
+     * graph of all registered pairs, vertex ids are the currency ids and pair ids the same as here
+     *
+     * @return
+     */
+    public DenseGraph toGraph() {
+        return new DenseGraph(getCurrencyCount(), Arrays.copyOf(pairBase, pairCount), Arrays.copyOf(pairQuote, pairCount));
+    }
+
+    private void growCurrencies(int capacity) {
+        int[] grown = new int[capacity * capacity];
+        Arrays.fill(grown, NO_ID);
+        for (int base = 0; base < currencyCapacity; base++) {
+            System.arraycopy(pairByCurrencies, base * currencyCapacity, grown, base * capacity, currencyCapacity);
+        }
+        pairByCurrencies = grown;
+        currencyCapacity = capacity;
+    }
+}
@@ -0,0 +1,120 @@
+package com.estar.customcode.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Decimal precision used per currency pair to represent prices as scaled long ticks,
+ * e.g. with a scale of 5 the price 1.083 is stored as 108300. Pairs are the pair ids of the
+ * {@link InstrumentRegistry}, every pair without a scale of its own has the default scale.
+ * <p>
+ * The order books and the algorithm work on ticks only, {@link BigDecimal} is converted from and to
+ * at the edges (incoming {@link com.estar.orderbook.model.Price} and reported records).
+ */
+public class PricePrecision {
+    public static final int DEFAULT_SCALE = 5;
+    /**
+     * the inverted price is computed as 10^(2 * scale) / ticks which has to fit into a long
+     */
+    public static final int MAX_SCALE = 8;
+
+    private static final long[] POW10 = new long[2 * MAX_SCALE + 1];
+    private static final double[] DOUBLE_POW10 = new double[MAX_SCALE + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+        for (int i = 0; i < DOUBLE_POW10.length; i++) {
+            DOUBLE_POW10[i] = POW10[i];
+        }
+    }
+
+    private final int defaultScale;
+    // scale by pair id, pairs past the end have the default scale
+    private int[] scaleByPair = new int[0];
+
+    public PricePrecision(int defaultScale) {
+        checkScale(defaultScale);
+        this.defaultScale = defaultScale;
+    }
+
+    public static PricePrecision defaults() {
+        return new PricePrecision(DEFAULT_SCALE);
+    }
+
+    /**
+     * overrides the number of decimal places used for the given currency pair
+     *
+     * @param pair
+     * @param scale
+     * @return
+     */
+    public PricePrecision withScale(int pair, int scale) {
+        checkScale(scale);
+        if (pair >= scaleByPair.length) {
+            int length = scaleByPair.length;
+            scaleByPair = Arrays.copyOf(scaleByPair, pair + 1);
+            Arrays.fill(scaleByPair, length, pair, defaultScale);
+        }
+        scaleByPair[pair] = scale;
+        return this;
+    }
+
+    public int scale(int pair) {
+        return pair < scaleByPair.length ? scaleByPair[pair] : defaultScale;
+    }
+
+    /**
+     * converts the price to ticks, rounding half up if the price has more decimal places than the scale.
+     * Prices which already fit the scale are converted without creating intermediate objects.
+     *
+     * @param pair
+     * @param price
+     * @return
+     */
+    public long toTicks(int pair, BigDecimal price) {
+        int scale = scale(pair);
+        if (price.scale() >= 0 && price.scale() <= scale && price.precision() <= 15) {
+            return Math.round(price.doubleValue() * DOUBLE_POW10[scale]);
+        }
+        return price.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal toBigDecimal(int pair, long ticks) {
+        return BigDecimal.valueOf(ticks, scale(pair));
+    }
+
+    public double toDouble(int pair, long ticks) {
+        return ticks / DOUBLE_POW10[scale(pair)];
+    }
+
+    /**
+     * @param pair
+     * @param ticks
+     * @return -log of the price rounded like the weights of the {@link DenseGraph}
+     */
+    public double toWeight(int pair, long ticks) {
+        return DenseGraph.toWeight(toDouble(pair, ticks));
+    }
+
+    /**
+     * returns 1 / price in ticks of the same scale rounded half up
+     *
+     * @param pair
+     * @param ticks
+     * @return
+     */
+    public long invert(int pair, long ticks) {
+        long one = POW10[2 * scale(pair)];
+        return (2 * one + ticks) / (2 * ticks);
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("Scale " + scale + " not in range 0.." + MAX_SCALE);
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.estar.customcode.model;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
+/**
+ * currency of the {@link Graph}, the index is its id in the {@link InstrumentRegistry}
+ */
 @Data
 public class Vertex {
     private final String id;
+    @EqualsAndHashCode.Exclude
+    private final int index;
 }
@@ -0,0 +1,182 @@
+package com.estar.customcode.processors;
+
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.BookDepth;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.PricePrecision;
+
+/**
+ * Sizes the cycles of a {@link TopCycles} over the depth of the books: starting with the first
+ * currency of the cycle, every conversion consumes the price levels of the book side its edge is weighted
+ * from, from best to worst. As in the {@link DenseGraph} the edge from base to quote trades the buy book
+ * (the ask orders) and the edge from quote to base the sell book, the price of a level being the rate of
+ * the edge, so the first levels give the rates the cycle was detected with. The notional keeps growing
+ * while the product of the rates of the current levels, the marginal factor, is above 1 and every level
+ * has quantity left, so the notional is the largest amount which can still be traded round the cycle at a
+ * profit.
+ * <p>
+ * The walk takes at most one step per level of the books on the cycle. The rates of the levels are the
+ * rates actually traded at, so an opportunity found on the top of book rates can come out with no
+ * executable notional. The levels of a book side are converted once per run, the first time a cycle of
+ * the run uses them, so cycles which are not sized cost little. Runs are expected on one thread at a time.
+ * <p>
+ * The levels are the {@link BookDepth} of the snapshot the cycles were found on, copied by every book
+ * together with its top of book, so the sizing walks the books as they were at the detection and not as
+ * they are when the results are reported.
+ */
+public class ArbitrageSizer {
+    private static final double EXHAUSTED = 1e-12;
+
+    private final PricePrecision precision;
+    // levels of every edge, capacities in the currency converted from
+    private final double[][] rates;
+    private final double[][] capacities;
+    private final int[] levelCounts;
+    private final long[] loadedRun;
+    private final int[] cycleEdges;
+    private final int[] cycleLevels;
+    private final double[] remaining;
+    private long run;
+    private BestPriceMatrix snapshot;
+
+    /**
+     * @param precision
+     * @param graph       graph of the currency pairs the results are found on
+     * @param depthLevels largest number of levels walked per book side
+     */
+    public ArbitrageSizer(PricePrecision precision, DenseGraph graph, int depthLevels) {
+        this.precision = precision;
+        this.rates = new double[graph.getEdgeCount()][depthLevels];
+        this.capacities = new double[graph.getEdgeCount()][depthLevels];
+        this.levelCounts = new int[graph.getEdgeCount()];
+        this.loadedRun = new long[graph.getEdgeCount()];
+        this.cycleEdges = new int[graph.getVertexCount()];
+        this.cycleLevels = new int[graph.getVertexCount()];
+        this.remaining = new double[graph.getVertexCount()];
+    }
+
+    /**
+     * sizes every kept cycle
+     *
+     * @param graph
+     * @param topCycles
+     * @param snapshot  best prices with the depth the cycles were found on
+     */
+    public void size(DenseGraph graph, TopCycles topCycles, BestPriceMatrix snapshot) {
+        startRun(snapshot);
+        for (int rank = 0; rank < topCycles.size(); rank++) {
+            size(graph, topCycles, rank);
+        }
+    }
+
+    /**
+     * starts sizing the cycles of a new detection run, the levels converted for the previous run are read
+     * again
+     *
+     * @param snapshot best prices with the depth the cycles of the run were found on
+     */
+    public void startRun(BestPriceMatrix snapshot) {
+        if (snapshot.getPairCount() > 0 && snapshot.getDepth(0) == null) {
+            throw new IllegalArgumentException("The snapshot keeps no depth");
+        }
+        this.snapshot = snapshot;
+        run++;
+    }
+
+    /**
+     * sizes one kept cycle of the current run
+     *
+     * @param graph
+     * @param topCycles
+     * @param rank
+     */
+    public void size(DenseGraph graph, TopCycles topCycles, int rank) {
+        int length = topCycles.getCycleLength(rank);
+        for (int k = 0; k < length; k++) {
+            int edge = graph.edge(topCycles.getCycleVertex(rank, k), topCycles.getCycleVertex(rank, (k + 1) % length));
+            if (edge == DenseGraph.NO_EDGE) {
+                topCycles.size(rank, 0, Double.NaN);
+                return;
+            }
+            load(edge);
+            cycleEdges[k] = edge;
+            cycleLevels[k] = 0;
+            remaining[k] = levelCounts[edge] > 0 ? capacities[edge][0] : 0;
+        }
+        double notional = 0;
+        double proceeds = 0;
+        double topFactor = Double.NaN;
+        while (true) {
+            double marginal = 1;
+            double amount = Double.POSITIVE_INFINITY;
+            int limiting = -1;
+            boolean depthLeft = true;
+            for (int k = 0; k < length && depthLeft; k++) {
+                int edge = cycleEdges[k];
+                depthLeft = cycleLevels[k] < levelCounts[edge];
+                if (depthLeft) {
+                    double capacity = remaining[k] / marginal;
+                    if (capacity < amount) {
+                        amount = capacity;
+                        limiting = k;
+                    }
+                    marginal *= rates[edge][cycleLevels[k]];
+                }
+            }
+            if (!depthLeft) {
+                break;
+            }
+            if (Double.isNaN(topFactor)) {
+                topFactor = marginal - 1;
+            }
+            if (marginal <= 1) {
+                break;
+            }
+            notional += amount;
+            proceeds += amount * marginal;
+            consume(length, amount, limiting);
+        }
+        topCycles.size(rank, notional, notional > 0 ? proceeds / notional - 1 : topFactor);
+    }
+
+    /**
+     * takes the amount of the first currency round the cycle, moving to the next level where a level is used up
+     */
+    private void consume(int length, double amount, int limiting) {
+        double converted = amount;
+        for (int k = 0; k < length; k++) {
+            int edge = cycleEdges[k];
+            double rate = rates[edge][cycleLevels[k]];
+            remaining[k] -= converted;
+            if (k == limiting || remaining[k] <= capacities[edge][cycleLevels[k]] * EXHAUSTED) {
+                cycleLevels[k]++;
+                remaining[k] = cycleLevels[k] < levelCounts[edge] ? capacities[edge][cycleLevels[k]] : 0;
+            }
+            converted *= rate;
+        }
+    }
+
+    /**
+     * converts the levels of the side the edge is weighted from, once per run. The quantity of a level is in
+     * the base currency, the capacity of the edge from quote to base is converted to the quote currency.
+     */
+    private void load(int edge) {
+        if (loadedRun[edge] == run) {
+            return;
+        }
+        loadedRun[edge] = run;
+        int pair = DenseGraph.pairOf(edge);
+        // even edges go from base to quote at the buy rate, odd edges back at the sell rate
+        boolean baseToQuote = (edge & 1) == 0;
+        BookDepth depth = snapshot.getDepth(pair);
+        int count = Math.min(depth.getLevels(baseToQuote), rates[edge].length);
+        for (int i = 0; i < count; i++) {
+            double rate = precision.toDouble(pair, depth.getTicks(baseToQuote, i));
+            long quantity = depth.getQuantity(baseToQuote, i);
+            rates[edge][i] = rate;
+            capacities[edge][i] = baseToQuote ? quantity : quantity / rate;
+        }
+        levelCounts[edge] = count;
+    }
+}
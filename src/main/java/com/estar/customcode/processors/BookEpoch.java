@@ -0,0 +1,32 @@
+package com.estar.customcode.processors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter shared by all order books which is advanced by every book publishing a new {@link TopOfBook}.
+ * The value it is advanced to is the version of the published top of book, so the versions order the
+ * publications of all books read together.
+ * <p>
+ * Writers never wait for readers. A reader takes the immutable top of book of every book as it is
+ * published, each one holds the values of a single update, and knows from its version which publication
+ * of the book it holds.
+ */
+public class BookEpoch {
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * @return version of the last top of book published by any book
+     */
+    public long current() {
+        return epoch.get();
+    }
+
+    /**
+     * called by a writer for every top of book it publishes
+     *
+     * @return version of the top of book
+     */
+    long advance() {
+        return epoch.incrementAndGet();
+    }
+}
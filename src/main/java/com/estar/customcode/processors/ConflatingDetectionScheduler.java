@@ -0,0 +1,140 @@
+package com.estar.customcode.processors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the arbitrage detection on its own thread at most once per burst of book updates instead of once
+ * per update. The book update stage applies every update eagerly and only reports it here, the detection
+ * then runs on the latest state of the books as soon as one of the following holds
+ * <ul>
+ *     <li>the book update stage reported the end of a burst (nothing left to apply)</li>
+ *     <li>{@code maxBatch} updates are pending</li>
+ *     <li>the first pending update waits for {@code maxDelay}</li>
+ * </ul>
+ * Updates reported while the detection runs make it run once more afterwards, so the final state of every
+ * burst is always examined.
+ */
+public class ConflatingDetectionScheduler implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ConflatingDetectionScheduler.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Runnable detection;
+    private final long maxDelayNanos;
+    private final long maxBatch;
+    private final Thread detectionThread;
+
+    private final AtomicLong pendingUpdates = new AtomicLong();
+    private final AtomicLong detectionRuns = new AtomicLong();
+    private final AtomicLong conflatedUpdates = new AtomicLong();
+    private volatile long firstPendingNanos;
+    private volatile boolean burstEnded;
+    private volatile boolean running = true;
+
+    /**
+     * @param detection  detection run on the latest state of the books
+     * @param maxDelay   longest time an update waits for the detection while a burst goes on
+     * @param timeUnit   unit of the max delay
+     * @param maxBatch   number of pending updates which triggers the detection while a burst goes on
+     * @param threadName
+     */
+    public ConflatingDetectionScheduler(Runnable detection, long maxDelay, TimeUnit timeUnit, int maxBatch, String threadName) {
+        this.detection = detection;
+        this.maxDelayNanos = timeUnit.toNanos(maxDelay);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.detectionThread = new Thread(this::runDetections, threadName);
+        this.detectionThread.setDaemon(true);
+        this.detectionThread.start();
+    }
+
+    /**
+     * called by the book update stage after it applied an update
+     *
+     * @param endOfBurst true if no further update is waiting to be applied
+     */
+    public void onUpdate(boolean endOfBurst) {
+        long pending = pendingUpdates.getAndIncrement();
+        if (pending == 0) {
+            firstPendingNanos = System.nanoTime();
+        }
+        if (endOfBurst) {
+            burstEnded = true;
+        }
+        if (pending == 0 || endOfBurst || pending + 1 >= maxBatch) {
+            LockSupport.unpark(detectionThread);
+        }
+    }
+
+    /**
+     * called by the book update stage when a burst ends with an update which does not need the detection,
+     * so the updates of the burst still pending are examined right away
+     */
+    public void onBurstEnd() {
+        burstEnded = true;
+        if (pendingUpdates.get() > 0) {
+            LockSupport.unpark(detectionThread);
+        }
+    }
+
+    /**
+     * @return number of detections run so far
+     */
+    public long getDetectionRuns() {
+        return detectionRuns.get();
+    }
+
+    /**
+     * @return number of book updates covered by the detections run so far
+     */
+    public long getConflatedUpdates() {
+        return conflatedUpdates.get();
+    }
+
+    /**
+     * stops the scheduler after a last detection of the pending updates
+     *
+     * @param timeoutMs time to wait for the detection thread, 0 waits until it is done
+     */
+    public void close(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(detectionThread);
+        try {
+            detectionThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(0);
+    }
+
+    private void runDetections() {
+        while (running || pendingUpdates.get() > 0) {
+            long pending = pendingUpdates.get();
+            if (pending == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            long waited = System.nanoTime() - firstPendingNanos;
+            if (running && !burstEnded && pending < maxBatch && waited < maxDelayNanos) {
+                LockSupport.parkNanos(this, maxDelayNanos - waited);
+                continue;
+            }
+            // reset before taking the updates, an end of burst reported in between only causes an early run
+            burstEnded = false;
+            conflatedUpdates.addAndGet(pendingUpdates.getAndSet(0));
+            detectionRuns.incrementAndGet();
+            try {
+                detection.run();
+            } catch (RuntimeException e) {
+                LOG.info("Can not run arbitrage detection: {}", e.getMessage());
+            }
+        }
+    }
+}
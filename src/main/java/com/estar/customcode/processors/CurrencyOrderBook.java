@@ -1,111 +1,197 @@
 package com.estar.customcode.processors;
 
-import com.estar.orderbook.model.CurrencyPair;
+import com.estar.customcode.model.BookDepth;
+import com.estar.customcode.model.PricePrecision;
 import com.estar.orderbook.model.OrderbookListener.Action;
 import com.estar.orderbook.model.Price;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 
+/**
+ * Order book of a single currency pair, the pair id of the {@link com.estar.customcode.model.InstrumentRegistry}
+ * the prices are for. Each side keeps its orders in sorted price levels
+ * ({@link OrderBookSide}) which are updated incrementally, so the best buy and best sell are
+ * maintained on every update instead of being recomputed from the whole side.
+ * <p>
+ * Prices are converted once to ticks of the {@link PricePrecision} of the pair when they enter the book,
+ * the book and the best values are kept in ticks. The -log weights of the best values are published with
+ * them, they are computed once per price level by the sides. The best prices are published as well, so a
+ * reader of the {@link TopOfBook} gets the prices and ticks of the same update.
+ * <p>
+ * A book created as single writer is only ever updated by one thread (e.g. the shard owning the pair) and
+ * takes no lock, otherwise concurrent updates are serialized by a lock. In both cases every change of the
+ * best values is published as a new {@link TopOfBook} stamped with the next value of the {@link BookEpoch},
+ * the writer never waits for readers.
+ * <p>
+ * The published levels of the sides and the top of book are read together under a sequence lock of the
+ * book: the sequence is odd while an update is applied and published, a reader copies them again until it
+ * saw the same even sequence before and after.
+ */
 public class CurrencyOrderBook implements OrderBook {
-    private final CurrencyPair currencyPair;
-    private PriorityQueue<Price> bestBuy;
-    private PriorityQueue<Price> bestSell;
-    private Map<Long, Price> buyOrderBook;
-    private Map<Long, Price> sellOrderBook;
-
-    private Lock lock = new ReentrantLock();
+    private static final Logger LOG = LoggerFactory.getLogger(CurrencyOrderBook.class);
+
+    private final int pair;
+    private final PricePrecision precision;
+    private final OrderBookSide buyOrderBook;
+    private final OrderBookSide sellOrderBook;
+    private final BookEpoch bookEpoch;
+    private final Lock lock;
+    private volatile TopOfBook topOfBook = TopOfBook.EMPTY;
+    private volatile long sequence;
+    // best orders of the sides as last published, only used by the writer
+    private Price publishedBuyOrder;
+    private Price publishedSellOrder;
+
+
+    public CurrencyOrderBook(int pair) {
+        this(pair, PricePrecision.defaults());
+    }
 
+    public CurrencyOrderBook(int pair, PricePrecision precision) {
+        this(pair, precision, new BookEpoch(), false);
+    }
 
-    public CurrencyOrderBook(CurrencyPair currencyPair) {
-        this.currencyPair = currencyPair;
-        this.buyOrderBook = new ConcurrentHashMap<>();
-        this.sellOrderBook = new ConcurrentHashMap<>();
+    /**
+     * @param pair         id of the currency pair
+     * @param precision
+     * @param bookEpoch    epoch shared with the other books read together with this one
+     * @param singleWriter true if the caller guarantees that only one thread updates the book
+     */
+    public CurrencyOrderBook(int pair, PricePrecision precision, BookEpoch bookEpoch, boolean singleWriter) {
+        this.pair = pair;
+        this.precision = precision;
+        this.bookEpoch = bookEpoch;
+        this.lock = singleWriter ? null : new ReentrantLock();
+        this.buyOrderBook = new OrderBookSide(true, pair, precision);
+        this.sellOrderBook = new OrderBookSide(false, pair, precision);
     }
 
     @Override
-    public CurrencyPair getInstrument() {
-        return currencyPair;
+    public int getInstrument() {
+        return pair;
     }
 
     @Override
     public Price getBestBuy() {
-        return bestBuy != null ? bestBuy.peek() : getDefaultBestBuy();
+        Price bestBuy = buyOrderBook.getBestPrice();
+        return bestBuy != null ? bestBuy : getDefaultBestBuy();
     }
 
     @Override
     public Price getBestSell() {
-        return bestSell != null ? bestSell.peek() : getDefaultBestSell();
+        Price bestSell = sellOrderBook.getBestPrice();
+        return bestSell != null ? bestSell : getDefaultBestSell();
     }
 
     @Override
-    public void manageOrder(Action action, Price price) {
-        Map<Long, Price> orderBook;
-        boolean isBuy = price.ask();
-        if (isBuy) {
-            orderBook = buyOrderBook;
-
-        } else {
-            orderBook = sellOrderBook;
-        }
-        synchronized (lock) {
-            updateOrderBook(action, orderBook, price);
-            updateBestValues(isBuy);
-        }
+    public long getBestBuyTicks() {
+        long bestBuy = buyOrderBook.getBestTicks();
+        return bestBuy != NO_PRICE ? bestBuy : invert(sellOrderBook.getBestTicks());
     }
 
-    public void updateOrderBook(Action action, Map<Long, Price> orderBook, Price price) {
-        switch (action) {
-            case INSERT -> {
-                orderBook.put(price.id(), price);
-            }
-            case DELETE -> {
-                orderBook.remove(price.id());
+    @Override
+    public long getBestSellTicks() {
+        long bestSell = sellOrderBook.getBestTicks();
+        return bestSell != NO_PRICE ? bestSell : invert(buyOrderBook.getBestTicks());
+    }
+
+    @Override
+    public TopOfBook getTopOfBook() {
+        return topOfBook;
+    }
+
+    /**
+     * levels as published by the sides, without the inverted prices of the other side used when a side is
+     * empty as there is no quantity to trade there. Can be called from any thread.
+     */
+    @Override
+    public TopOfBook copyDepth(BookDepth depth) {
+        while (true) {
+            long version = sequence;
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
             }
-            case MODIFY -> {
-                if (orderBook.containsKey(price.id())) {
-                    orderBook.put(price.id(), price);
-                } else {
-                    System.out.println("No price with id " + price.id() + " found for modification\n");
-                }
+            TopOfBook published = topOfBook;
+            depth.setLevels(true, buyOrderBook.copyDepth(depth.ticks(true), depth.quantities(true)));
+            depth.setLevels(false, sellOrderBook.copyDepth(depth.ticks(false), depth.quantities(false)));
+            if (sequence == version) {
+                return published;
             }
         }
-        if (Action.INSERT == action || Action.MODIFY == action) {
-            orderBook.put(price.id(), price);
+    }
+
+    @Override
+    public boolean manageOrder(Action action, Price price) {
+        OrderBookSide orderBook = price.ask() ? buyOrderBook : sellOrderBook;
+        if (lock == null) {
+            return apply(action, orderBook, price);
+        }
+        lock.lock();
+        try {
+            return apply(action, orderBook, price);
+        } finally {
+            lock.unlock();
         }
+    }
 
+    private boolean apply(Action action, OrderBookSide orderBook, Price price) {
+        long version = sequence;
+        sequence = version + 1;
+        try {
+            updateOrderBook(action, orderBook, price);
+            return publishTopOfBook();
+        } finally {
+            sequence = version + 2;
+        }
     }
 
     /**
-     * updates the best buy or best sell based on the incoming price.
-     * We have a priority queue which based on comparator keeps all sell
-     * in descending order of price and buy in ascending and always pick
-     * the top one as best sell  and buy
-     * @param isBuy
+     * publishes a new top of book if the best values or the best orders changed, another order becoming
+     * the best one of an unchanged level does not change the graph
+     *
+     * @return true if the best values changed
      */
-    void updateBestValues(boolean isBuy) {
-        List<Price> priceList;
-        Comparator<Price> comparator;
-        if (isBuy) {
-            priceList = this.buyOrderBook.values().stream().collect(Collectors.toList());
-            comparator = Comparator.comparing(Price::price); //ascending
-        } else {
-            priceList = this.sellOrderBook.values().stream().collect(Collectors.toList());
-            comparator = (o1, o2) -> {
-                return (o1.price().compareTo(o2.price())) * -1; //descending
-            };
+    private boolean publishTopOfBook() {
+        long bestBuy = getBestBuyTicks();
+        long bestSell = getBestSellTicks();
+        Price buyOrder = buyOrderBook.getBestPrice();
+        Price sellOrder = sellOrderBook.getBestPrice();
+        TopOfBook current = topOfBook;
+        boolean changed = current.buyTicks() != bestBuy || current.sellTicks() != bestSell;
+        if (!changed && buyOrder == publishedBuyOrder && sellOrder == publishedSellOrder) {
+            return false;
         }
-        PriorityQueue<Price> pricePriorityQueue = new PriorityQueue<>(comparator);
-        pricePriorityQueue.addAll(priceList);
-        if (isBuy) {
-            this.bestBuy = pricePriorityQueue;
-        } else {
-            this.bestSell = pricePriorityQueue;
+        publishedBuyOrder = buyOrder;
+        publishedSellOrder = sellOrder;
+        topOfBook = new TopOfBook(bestBuy, bestSell,
+                buyOrderBook.isEmpty() ? sellOrderBook.getBestInverseWeight() : buyOrderBook.getBestWeight(),
+                sellOrderBook.isEmpty() ? buyOrderBook.getBestInverseWeight() : sellOrderBook.getBestWeight(),
+                getBestBuy(), getBestSell(), bookEpoch.advance());
+        return changed;
+    }
+
+    /**
+     * applies the action to one side of the book, the side takes care of keeping its best price.
+     * A modification of an unknown order is reported and then added like an insert.
+     *
+     * @param action
+     * @param orderBook
+     * @param price
+     */
+    void updateOrderBook(Action action, OrderBookSide orderBook, Price price) {
+        switch (action) {
+            case INSERT -> orderBook.put(price, precision.toTicks(pair, price.price()));
+            case DELETE -> orderBook.remove(price.id());
+            case MODIFY -> {
+                if (!orderBook.contains(price.id())) {
+                    LOG.warn("No price with id {} found for modification of pair {}", price.id(), pair);
+                }
+                orderBook.put(price, precision.toTicks(pair, price.price()));
+            }
         }
     }
 
@@ -116,30 +202,31 @@ public class CurrencyOrderBook implements OrderBook {
      * @return
      */
     Price getDefaultBestBuy() {
-        Price bestSell = getBestSell();
-        return bestSell != null ?
-                new Price(bestSell.id(),
-                        bestSell.instrument(),
-                        !bestSell.ask(),
-                        bestSell.quantity(),
-                        new BigDecimal(1).divide(bestSell.price(), 3, RoundingMode.HALF_UP))
-                : null;
+        return invert(sellOrderBook.getBestPrice(), sellOrderBook.getBestTicks());
     }
 
     /**
-     * it returns the ideal buy. It is needed to compute the arbitrage if the first very transaction of a
+     * it returns the ideal sell. It is needed to compute the arbitrage if the first very transaction of a
      * specific order book is buy
      *
      * @return
      */
     Price getDefaultBestSell() {
-        Price bestBuy = getBestBuy();
-        return bestBuy != null ?
-                new Price(bestBuy.id(),
-                        bestBuy.instrument(),
-                        !bestBuy.ask(),
-                        bestBuy.quantity(),
-                        new BigDecimal(1).divide(bestBuy.price(), 3, RoundingMode.HALF_UP))
-                : null;
+        return invert(buyOrderBook.getBestPrice(), buyOrderBook.getBestTicks());
+    }
+
+    private Price invert(Price price, long ticks) {
+        if (price == null || ticks == NO_PRICE) {
+            return null;
+        }
+        return new Price(price.id(),
+                price.instrument(),
+                !price.ask(),
+                price.quantity(),
+                precision.toBigDecimal(pair, precision.invert(pair, ticks)));
+    }
+
+    private long invert(long ticks) {
+        return ticks != NO_PRICE ? precision.invert(pair, ticks) : NO_PRICE;
     }
 }
@@ -1,21 +1,32 @@
 package com.estar.customcode.processors;
 
 import com.estar.arbitrage.ArbitragePrinter;
+import com.estar.arbitrage.ArbitrageSink;
+import com.estar.arbitrage.AsyncArbitrageProcessor;
+import com.estar.arbitrage.ConsoleSink;
+import com.estar.arbitrage.OpportunityTracker;
+import com.estar.arbitrage.RollingFileSink;
 import com.estar.arbitrage.ArbitrageProcessor;
 import com.estar.arbitrage.ResultFormatter;
 import com.estar.customcode.algo.*;
 import com.estar.customcode.exceptions.ProcessException;
-import com.estar.orderbook.model.CurrencyPair;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.ConversionRoute;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+import com.estar.customcode.model.PricePrecision;
 import com.estar.orderbook.model.OrderbookListener;
 import com.estar.orderbook.model.Price;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.*;
-import java.util.function.Supplier;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
 
 /**
  * @Author Nahusha Ganiga
@@ -25,31 +36,107 @@ import java.util.function.Supplier;
  * is just to have tidy implementation. The class runs two async task 1. updates the order book
  * 2. Calls the bellman ford algo to find the negative path and then calculate the negative path weight
  * to evaluate the arbitrage factor
+ * <p>
+ * Both tasks run on the {@link OrderBookPipeline} which lives as long as the listener, call {@link #close()}
+ * to shut it down.
+ * <p>
+ * The listener handles the pairs of its {@link InstrumentRegistry}, the instrument of a {@link Price} is the
+ * pair id in that registry. There is one book per pair registered when the listener is created, the best
+ * prices, the graph, the sizing and the reported records are all indexed by the ids of the registry.
  */
-public class ManageOrderBook implements OrderbookListener {
-
-    private final Map<CurrencyPair, OrderBook> currencyPairOrderBookMap;
+public class ManageOrderBook implements OrderbookListener, AutoCloseable {
+    private final InstrumentRegistry instrumentRegistry;
+    private final PricePrecision pricePrecision;
+    private final BookEpoch bookEpoch = new BookEpoch();
+    // books by pair id
+    private final OrderBook[] orderBooks;
     private final AlgoRunner algoRunner;
+    private final ArbitrageDetector arbitrageDetector;
+    private final HotCycleDetector hotCycleDetector;
+    private final OrderBookPipeline pipeline;
+    // detection state reused by every run, the pipeline runs one detection at a time
+    private final BestPriceMatrix bestPriceMatrix;
+    private final DenseGraph graph;
+    private final DetectionResult detectionResult;
+    private final TopCycles topCycles;
+    private final ConversionRouteService conversionRouteService;
+    private final ArbitrageSizer arbitrageSizer;
+    private final IntConsumer cycleSizing;
+    private final AsyncArbitrageProcessor asyncArbitrageProcessor;
+    private final OpportunityTracker opportunityTracker;
+    private final long shutdownTimeoutMs;
 
     private ResultFormatter resultFormatter;
     private static Logger LOG = LoggerFactory.getLogger(ManageOrderBook.class);
 
     public ManageOrderBook() {
-        currencyPairOrderBookMap = buildOrderBookMapForAvailableCurrencyPair();
+        this(PricePrecision.defaults(), PipelineConfig.defaults());
+    }
+
+    /**
+     * listener of the {@link com.estar.orderbook.model.CurrencyPair}s, see {@link InstrumentRegistry#forCurrencyPairs()}
+     *
+     * @param pricePrecision
+     * @param pipelineConfig
+     */
+    public ManageOrderBook(PricePrecision pricePrecision, PipelineConfig pipelineConfig) {
+        this(InstrumentRegistry.forCurrencyPairs(), pricePrecision, pipelineConfig);
+    }
+
+    /**
+     * @param instrumentRegistry pairs handled, instruments added to it later are not
+     * @param pricePrecision     precision by pair id of the registry
+     * @param pipelineConfig
+     */
+    public ManageOrderBook(InstrumentRegistry instrumentRegistry, PricePrecision pricePrecision, PipelineConfig pipelineConfig) {
+        this.instrumentRegistry = instrumentRegistry;
+        this.pricePrecision = pricePrecision;
+        this.graph = instrumentRegistry.toGraph();
+        this.detectionResult = new DetectionResult(graph);
+        this.bestPriceMatrix = new BestPriceMatrix(pricePrecision, graph.getPairCount(), OrderBookSide.DEPTH_LEVELS);
+        this.orderBooks = buildOrderBooks(graph.getPairCount());
         AdjacentVertexMapBuilder adjacentVertexMapBuilder = new AdjacentVertexMapBuilder();
         CurrencyPairGraphBuilder currencyPairGraphBuilder = new CurrencyPairGraphBuilder(adjacentVertexMapBuilder);
         EdgeRelaxer edgeRelaxer = new EdgeRelaxer();
         ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
-        Map<String, CurrencyPair> currencyStringCurrencyPairMap = UtilClass.getCurrencyPair();
-        ArbitragePathFinder arbitragePathFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder, currencyStringCurrencyPairMap);
-        ArbitrageProcessor arbitrageProcessor = new ArbitragePrinter();
+        ArbitragePathFinder arbitragePathFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder,
+                InstrumentRegistry.forCurrencyPairs());
+        this.asyncArbitrageProcessor = pipelineConfig.isAsyncReporting()
+                ? new AsyncArbitrageProcessor(reportSink(pipelineConfig), pipelineConfig.getReportQueueSize(),
+                pipelineConfig.getReportBatchSize(), pipelineConfig.getReportOverflowPolicy(), "arbitrage-report")
+                : null;
+        ArbitrageProcessor arbitrageProcessor = asyncArbitrageProcessor != null ? asyncArbitrageProcessor : new ArbitragePrinter();
+        this.shutdownTimeoutMs = pipelineConfig.getShutdownTimeoutMs();
         this.algoRunner = new AlgoRunner(currencyPairGraphBuilder, arbitragePathFinder);
-        this.resultFormatter = new ResultFormatter(currencyPairOrderBookMap, arbitrageProcessor);
-
+        ArbitrageDetector fullSearch = switch (pipelineConfig.getDetectionMode()) {
+            case PER_VERTEX -> arbitragePathFinder;
+            case SUPER_SOURCE -> new SuperSourceArbitrageFinder(arbitrageFactorFinder);
+            case INCREMENTAL -> new IncrementalArbitrageDetector(arbitrageFactorFinder);
+            case TRIANGULAR -> new TriangularArbitrageEngine(graph, pipelineConfig.getMaxCycleLength(), arbitrageFactorFinder);
+            case PARALLEL -> new ParallelArbitragePathFinder(arbitragePathFinder, ForkJoinPool.commonPool(),
+                    pipelineConfig.getParallelismThreshold());
+            case SIMD -> new SuperSourceArbitrageFinder(arbitrageFactorFinder, RelaxationKernel.vectorOrScalar());
+            case MIN_PLUS -> new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        };
+        this.hotCycleDetector = pipelineConfig.getHotCycles() > 0
+                ? new HotCycleDetector(fullSearch, arbitrageFactorFinder, pipelineConfig.getHotCycles(),
+                pipelineConfig.getFullSearchInterval(), pipelineConfig.getHotCycleMaxAge())
+                : null;
+        this.arbitrageDetector = hotCycleDetector != null ? hotCycleDetector : fullSearch;
+        this.topCycles = new TopCycles(pipelineConfig.getTopCycles(), pipelineConfig.getMinCycleProfit(), graph.getVertexCount());
+        this.detectionResult.setTopCycles(topCycles);
+        this.conversionRouteService = new ConversionRouteService(instrumentRegistry, arbitrageFactorFinder);
+        this.arbitrageSizer = new ArbitrageSizer(pricePrecision, graph, OrderBookSide.DEPTH_LEVELS);
+        this.cycleSizing = rank -> arbitrageSizer.size(graph, topCycles, rank);
+        this.opportunityTracker = pipelineConfig.isTrackOpportunities()
+                ? new OpportunityTracker(pipelineConfig.getOpportunityTolerance(), graph.getVertexCount(), pipelineConfig.getTopCycles())
+                : null;
+        this.resultFormatter = new ResultFormatter(instrumentRegistry, orderBooks, arbitrageProcessor);
+        this.pipeline = new OrderBookPipeline(pipelineConfig, this::updateOrderBook, this::detectArbitrage);
     }
 
     /**
-     * listens for update order action, runs two async task
+     * listens for update order action, runs two async task on the pipeline
      * 1. Updates the order book based on the action (ADD, MODIFY, INSERT). It also evaluates best buy
      * 2. Once the update task is done then it detect for Arbitrage cycle and then compute the arbitrage factor
      * and prints instrument and factor.
@@ -60,35 +147,155 @@ public class ManageOrderBook implements OrderbookListener {
      */
     @Override
     public void handlePriceUpdate(Action action, Price price) {
-        int core_count = Runtime.getRuntime().availableProcessors();
-        ExecutorService executorService = Executors.newFixedThreadPool(core_count);
-        updateOrderBook(action, price);
-        CompletableFuture.supplyAsync(updateOrderBook(action, price), executorService)
-                .thenApplyAsync(orderBooks -> updateBestBuyMatrix(orderBooks))
-                .thenAccept(bestPriceMatrix -> trackArbitrageOpportunity(bestPriceMatrix))
-                .exceptionally(throwable -> {
-                    LOG.info("Can not get build bestBuy");
-                    return null;
-                });
-        executorService.shutdown();
-    }
-
-    private Supplier<Map<CurrencyPair, OrderBook>> updateOrderBook(Action action, Price price) {
-        CurrencyPair currencyPair = price.instrument();
-        OrderBook currencyOrderBook = currencyPairOrderBookMap.get(currencyPair);
-        currencyOrderBook.manageOrder(action, price);
-        return () -> currencyPairOrderBookMap;
-    }
-
-
-    private Map<CurrencyPair, BigDecimal[]> updateBestBuyMatrix(Map<CurrencyPair, OrderBook> orderBooks) throws CompletionException {
-        Map<CurrencyPair, BigDecimal[]> bestBuyMatrix = new HashMap<>();
-        if (orderBooks.size() > 2) {
-            for (Map.Entry<CurrencyPair, OrderBook> entry : orderBooks.entrySet()) {
-                OrderBook orderBook = entry.getValue();
-                BigDecimal bestBuy[] = new BigDecimal[]{orderBook.getBestBuy().price(), orderBook.getBestSell().price()};
-                bestBuyMatrix.put(entry.getKey(), bestBuy);
+        pipeline.submit(action, price);
+    }
+
+    /**
+     * @return number of updates published to the ingestion ring but not yet applied to the order books
+     */
+    public int getRingOccupancy() {
+        return pipeline.getRingOccupancy();
+    }
+
+    /**
+     * @return number of updates which changed a top of book and triggered the detection
+     */
+    public long getProcessedEvents() {
+        return pipeline.getProcessedEvents();
+    }
+
+    /**
+     * @return number of updates which left every top of book unchanged and did not trigger the detection
+     */
+    public long getFilteredEvents() {
+        return pipeline.getFilteredEvents();
+    }
+
+    /**
+     * @return number of arbitrage detections run so far when the detection is conflated
+     */
+    public long getDetectionRuns() {
+        return pipeline.getDetectionRuns();
+    }
+
+    /**
+     * @return number of updates covered by the conflated detections run so far
+     */
+    public long getConflatedUpdates() {
+        return pipeline.getConflatedUpdates();
+    }
+
+    /**
+     * share of the cached cycles still paying when priced again, read without synchronization so it may
+     * lag behind the detection thread
+     *
+     * @return NaN if the hot cycle cache is disabled or nothing was priced yet
+     */
+    public double getHotCycleHitRatio() {
+        return hotCycleDetector != null ? hotCycleDetector.getHitRatio() : Double.NaN;
+    }
+
+    /**
+     * @return number of cycles evicted from the hot cycle cache, 0 if it is disabled
+     */
+    public long getHotCycleEvictions() {
+        return hotCycleDetector != null ? hotCycleDetector.getEvictions() : 0;
+    }
+
+    /**
+     * @return number of arbitrage records dropped because the writer fell behind, 0 without async reporting
+     */
+    public long getDroppedReports() {
+        return asyncArbitrageProcessor != null ? asyncArbitrageProcessor.getDropped() : 0;
+    }
+
+    /**
+     * @return number of arbitrage records written by the async writer, 0 without async reporting
+     */
+    public long getWrittenReports() {
+        return asyncArbitrageProcessor != null ? asyncArbitrageProcessor.getWritten() : 0;
+    }
+
+    /**
+     * best route between two currencies as of the last detection run, safe to call from any thread
+     *
+     * @param from currency code
+     * @param to   currency code
+     * @return empty before the first detection run or if no pair connects the currencies
+     * @throws IllegalArgumentException if a currency is not in the registry
+     */
+    public Optional<ConversionRoute> getBestRoute(String from, String to) {
+        return conversionRouteService.getRoute(from, to);
+    }
+
+    /**
+     * shuts down the pipeline after the pending updates are processed, then writes the pending records
+     */
+    @Override
+    public void close() {
+        pipeline.close();
+        if (asyncArbitrageProcessor != null) {
+            asyncArbitrageProcessor.close(shutdownTimeoutMs);
+        }
+    }
+
+    private static ArbitrageSink reportSink(PipelineConfig pipelineConfig) {
+        if (pipelineConfig.getReportFile() == null) {
+            return new ConsoleSink();
+        }
+        Path reportFile = Path.of(pipelineConfig.getReportFile()).toAbsolutePath();
+        String name = reportFile.getFileName().toString();
+        try {
+            return new RollingFileSink(reportFile.getParent(), name.endsWith(".log") ? name.substring(0, name.length() - 4) : name,
+                    pipelineConfig.getReportFileMaxBytes(), pipelineConfig.getReportFileCount());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not open the report file " + reportFile, e);
+        }
+    }
+
+    /**
+     * @return true if the top of book of the currency pair changed, only then the graph changed
+     */
+    private boolean updateOrderBook(Action action, Price price) {
+        if (price.instrument() < 0 || price.instrument() >= orderBooks.length) {
+            throw new ProcessException("Unknown currency pair " + price.instrument());
+        }
+        return orderBooks[price.instrument()].manageOrder(action, price);
+    }
+
+    private void detectArbitrage() {
+        trackArbitrageOpportunity(updateBestBuyMatrix(orderBooks));
+    }
+
+
+    /**
+     * reads the top of book of all books. Every book publishes an immutable {@link TopOfBook} per change
+     * which is read once together with the depth of the same update, so the buy and sell of a pair and the
+     * levels the results are sized on are always of one update. The books are written by different threads
+     * which never wait for the read, pairs can therefore be of publications made while reading. It takes no
+     * lock and does not allocate, the matrix keeps the best prices read with the ticks and as epoch the
+     * highest version read, the last publication it holds, which are reported with the results.
+     *
+     * @param orderBooks by pair id
+     * @return
+     * @throws CompletionException
+     */
+    private BestPriceMatrix updateBestBuyMatrix(OrderBook[] orderBooks) throws CompletionException {
+        BestPriceMatrix bestBuyMatrix = bestPriceMatrix;
+        if (orderBooks.length > 2) {
+            long epoch = 0;
+            for (OrderBook orderBook : orderBooks) {
+                TopOfBook topOfBook = orderBook.copyDepth(bestBuyMatrix.getDepth(orderBook.getInstrument()));
+                if (!topOfBook.isComplete()) {
+                    throw new ProcessException("No best price available for "
+                            + instrumentRegistry.pairSymbol(orderBook.getInstrument()));
+                }
+                bestBuyMatrix.put(orderBook.getInstrument(), topOfBook.buyTicks(), topOfBook.sellTicks(),
+                        topOfBook.buyWeight(), topOfBook.sellWeight());
+                bestBuyMatrix.putPrices(orderBook.getInstrument(), topOfBook.buy(), topOfBook.sell());
+                epoch = Math.max(epoch, topOfBook.version());
             }
+            bestBuyMatrix.setEpoch(epoch);
 
             return bestBuyMatrix;
         } else {
@@ -97,25 +304,34 @@ public class ManageOrderBook implements OrderbookListener {
     }
 
     /**
-     * Map to hold all the order book, the concurrent hashmap will block only that order which needs to be
-     * updated
+     * one book per pair, indexed by the pair id. The pipeline guarantees a single writer thread per currency
+     * pair so the books take no lock.
      *
+     * @param pairCount
      * @return
      */
-    private Map<CurrencyPair, OrderBook> buildOrderBookMapForAvailableCurrencyPair() {
-        Map<CurrencyPair, OrderBook> orderBookMap = new ConcurrentHashMap<>();
-        for (CurrencyPair currencyPair : CurrencyPair.values()) {
-            OrderBook orderBook = new CurrencyOrderBook(currencyPair);
-            orderBookMap.put(currencyPair, orderBook);
+    private OrderBook[] buildOrderBooks(int pairCount) {
+        OrderBook[] orderBooks = new OrderBook[pairCount];
+        for (int pair = 0; pair < pairCount; pair++) {
+            orderBooks[pair] = new CurrencyOrderBook(pair, pricePrecision, bookEpoch, true);
         }
-        return orderBookMap;
+        return orderBooks;
     }
 
     /**
      * Call to Bellman ford algorithm and if arbitrage cycle present than print the result
      */
-    private void trackArbitrageOpportunity(Map<CurrencyPair, BigDecimal[]> bestMatrixPrice) {
-        Map<CurrencyPair, BigDecimal> result = algoRunner.runAlgorithm(bestMatrixPrice);
-        resultFormatter.processArbitrageRecord(result);
+    private void trackArbitrageOpportunity(BestPriceMatrix bestMatrixPrice) {
+        algoRunner.runAlgorithm(bestMatrixPrice, graph, arbitrageDetector, detectionResult);
+        conversionRouteService.update(bestMatrixPrice);
+        // only the cycles whose records are reported are sized
+        arbitrageSizer.startRun(bestMatrixPrice);
+        if (opportunityTracker != null) {
+            // a run answered from the hot cycle cache does not see every open opportunity
+            boolean complete = hotCycleDetector == null || !hotCycleDetector.isLastRunCached();
+            resultFormatter.processArbitrageEvents(topCycles, bestMatrixPrice, opportunityTracker, cycleSizing, complete);
+        } else {
+            resultFormatter.processArbitrageRecord(topCycles, bestMatrixPrice, cycleSizing);
+        }
     }
 }
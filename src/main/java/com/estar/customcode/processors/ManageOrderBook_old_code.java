@@ -4,6 +4,7 @@ import com.estar.arbitrage.ArbitragePrinter;
 import com.estar.arbitrage.ArbitrageProcessor;
 import com.estar.arbitrage.ResultFormatter;
 import com.estar.customcode.algo.*;
+import com.estar.customcode.model.InstrumentRegistry;
 import com.estar.orderbook.model.CurrencyPair;
 import com.estar.orderbook.model.OrderbookListener;
 import com.estar.orderbook.model.Price;
@@ -27,6 +28,8 @@ import java.util.concurrent.Executors;
  */
 public class ManageOrderBook_old_code implements OrderbookListener {
 
+    private static final CurrencyPair[] CURRENCY_PAIRS = CurrencyPair.values();
+
     private final Map<CurrencyPair, OrderBook> currencyPairOrderBookMap;
     private final AlgoRunner algoRunner;
 
@@ -41,11 +44,13 @@ public class ManageOrderBook_old_code implements OrderbookListener {
         CurrencyPairGraphBuilder currencyPairGraphBuilder = new CurrencyPairGraphBuilder(adjacentVertexMapBuilder);
         EdgeRelaxer edgeRelaxer = new EdgeRelaxer();
         ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
-        Map<String, CurrencyPair> currencyStringCurrencyPairMap = UtilClass.getCurrencyPair();
-        ArbitragePathFinder arbitragePathFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder, currencyStringCurrencyPairMap);
+        ArbitragePathFinder arbitragePathFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder,
+                InstrumentRegistry.forCurrencyPairs());
         ArbitrageProcessor arbitrageProcessor = new ArbitragePrinter();
         this.algoRunner = new AlgoRunner(currencyPairGraphBuilder, arbitragePathFinder);
-        this.resultFormatter = new ResultFormatter(currencyPairOrderBookMap, arbitrageProcessor);
+        OrderBook[] orderBooks = new OrderBook[CURRENCY_PAIRS.length];
+        currencyPairOrderBookMap.forEach((currencyPair, orderBook) -> orderBooks[currencyPair.ordinal()] = orderBook);
+        this.resultFormatter = new ResultFormatter(InstrumentRegistry.forCurrencyPairs(), orderBooks, arbitrageProcessor);
 
     }
 
@@ -62,11 +67,11 @@ public class ManageOrderBook_old_code implements OrderbookListener {
     public void handlePriceUpdate(Action action, Price price) {
         ExecutorService executorService = Executors.newFixedThreadPool(20);
         CompletableFuture<Void> manageOrderBook = CompletableFuture.runAsync(() -> {  // Aysnc task
-            CurrencyPair currencyPair = price.instrument();
+            CurrencyPair currencyPair = CURRENCY_PAIRS[price.instrument()];
             OrderBook currencyOrderBook = currencyPairOrderBookMap.get(currencyPair);
             currencyOrderBook.manageOrder(action, price);
         }, executorService).thenRun(() -> {                                           //Since we have the object via map we only used thenRun()
-            CurrencyPair currencyPair = price.instrument();
+            CurrencyPair currencyPair = CURRENCY_PAIRS[price.instrument()];
             OrderBook currencyOrderBook = currencyPairOrderBookMap.get(currencyPair);
             BigDecimal values[] = new BigDecimal[2];
             values[0] = currencyOrderBook.getBestBuy().price();
@@ -89,7 +94,7 @@ public class ManageOrderBook_old_code implements OrderbookListener {
     private Map<CurrencyPair, OrderBook> buildOrderBookMapForAvailableCurrencyPair() {
         Map<CurrencyPair, OrderBook> orderBookMap = new ConcurrentHashMap<>();
         for (CurrencyPair currencyPair : CurrencyPair.values()) {
-            OrderBook orderBook = new CurrencyOrderBook(currencyPair);
+            OrderBook orderBook = new CurrencyOrderBook(currencyPair.ordinal());
             orderBookMap.put(currencyPair, orderBook);
         }
         return orderBookMap;
@@ -1,6 +1,6 @@
 package com.estar.customcode.processors;
 
-import com.estar.orderbook.model.CurrencyPair;
+import com.estar.customcode.model.BookDepth;
 import com.estar.orderbook.model.Price;
 
 import java.math.BigDecimal;
@@ -9,16 +9,21 @@ import static com.estar.orderbook.model.OrderbookListener.Action;
 
 
 public interface OrderBook {
+    /**
+     * value in ticks returned if the book has no price at all
+     */
+    public static final long NO_PRICE = 0L;
+
     public static enum TRANSACTION_ACTION{
         BUY,
         SELL,
     }
 
     /**
-     * returns currency pair for the instrument
+     * returns id of the currency pair of the book in the instrument registry
      * @return
      */
-    public CurrencyPair getInstrument();
+    public int getInstrument();
 
     /**
      * returns best buy price for that currency pair
@@ -32,13 +37,46 @@ public interface OrderBook {
      */
     public Price getBestSell();
 
+    /**
+     * returns best buy price in ticks of the price precision of the book or {@link #NO_PRICE}
+     * @return
+     */
+    public long getBestBuyTicks();
+
+    /**
+     * returns best sell price in ticks of the price precision of the book or {@link #NO_PRICE}
+     * @return
+     */
+    public long getBestSellTicks();
+
+    /**
+     * returns best buy and best sell in ticks and as prices as one consistent value
+     * @return
+     */
+    public default TopOfBook getTopOfBook() {
+        return new TopOfBook(getBestBuyTicks(), getBestSellTicks(), getBestBuy(), getBestSell());
+    }
+
+    /**
+     * copies the best price levels of both sides together with the top of book of the same update. Books
+     * without depth report no level.
+     *
+     * @param depth receives the levels of both sides
+     * @return top of book of the update the levels are of
+     */
+    public default TopOfBook copyDepth(BookDepth depth) {
+        depth.setLevels(true, 0);
+        depth.setLevels(false, 0);
+        return getTopOfBook();
+    }
+
     /**
      * Add, remove modify price. Also update the bestbuy and bestSell value based on the operation
      *
      * @param action
      * @param price
-     *
+     * @return true if the best buy or best sell changed
      */
-    public void manageOrder(Action action, Price price);
+    public boolean manageOrder(Action action, Price price);
 
 }
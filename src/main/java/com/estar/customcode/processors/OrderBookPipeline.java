@@ -0,0 +1,260 @@
+package com.estar.customcode.processors;
+
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * Long lived two stage pipeline owned by the listener. The book update stage applies every price update
+ * exactly once, the detection stage runs afterwards on a thread of its own, one run at a time.
+ * <p>
+ * In {@link PipelineConfig.IngestionMode#EXECUTOR} the book update stage consists of single threaded lanes
+ * and a currency pair is always handled by the same lane, so the updates of a pair are applied in the order
+ * they were received. In {@link PipelineConfig.IngestionMode#RING} the feed thread only publishes the update
+ * into a {@link PriceEventRing} and its consumer thread is the book update stage.
+ * {@link PipelineConfig.IngestionMode#SHARDED} uses one ring per shard and routes a currency pair always to
+ * the same shard. In every mode a currency pair has exactly one writer thread.
+ * <p>
+ * With {@link PipelineConfig#isConflateDetection()} the detection stage is a {@link ConflatingDetectionScheduler},
+ * the book update stage reports the end of a burst when its ring batch ends or its lane queue is empty.
+ * <p>
+ * The book update stage tells whether an update changed a top of book. Updates which did not change any
+ * edge of the graph are counted as filtered and do not trigger the detection.
+ */
+public class OrderBookPipeline implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(OrderBookPipeline.class);
+
+    private final PipelineConfig config;
+    private final ThreadPoolExecutor[] bookUpdateLanes;
+    private final PriceEventRing[] rings;
+    private final ExecutorService detectionExecutor;
+    private final ConflatingDetectionScheduler detectionScheduler;
+    private final BiPredicate<Action, Price> bookUpdateStage;
+    private final Runnable detectionStage;
+    // one task for every unconflated run, the runs never overlap
+    private final Runnable detectionTask = this::runDetection;
+    private final LongAdder processedEvents = new LongAdder();
+    private final LongAdder filteredEvents = new LongAdder();
+
+    /**
+     * @param config
+     * @param bookUpdateStage applies an update and returns true if it changed a top of book
+     * @param detectionStage
+     */
+    public OrderBookPipeline(PipelineConfig config, BiPredicate<Action, Price> bookUpdateStage, Runnable detectionStage) {
+        this.config = config;
+        this.bookUpdateStage = bookUpdateStage;
+        this.detectionStage = detectionStage;
+        if (config.isConflateDetection()) {
+            this.detectionExecutor = null;
+            this.detectionScheduler = new ConflatingDetectionScheduler(detectionStage, config.getMaxDetectionDelayMicros(),
+                    TimeUnit.MICROSECONDS, config.getMaxDetectionBatch(), "arbitrage-detection");
+        } else {
+            this.detectionScheduler = null;
+            // the detection stage reuses its state from run to run, the runs must not overlap
+            this.detectionExecutor = Executors.newSingleThreadExecutor(threadFactory("arbitrage-detection-%d"));
+        }
+        switch (config.getIngestionMode()) {
+            case RING -> {
+                this.bookUpdateLanes = new ThreadPoolExecutor[0];
+                this.rings = new PriceEventRing[]{newRing("book-update-ring")};
+            }
+            case SHARDED -> {
+                this.bookUpdateLanes = new ThreadPoolExecutor[0];
+                this.rings = new PriceEventRing[Math.max(1, config.getShards())];
+                for (int i = 0; i < rings.length; i++) {
+                    rings[i] = newRing("book-shard-" + i);
+                }
+            }
+            default -> {
+                this.rings = new PriceEventRing[0];
+                this.bookUpdateLanes = new ThreadPoolExecutor[Math.max(1, config.getBookUpdateThreads())];
+                for (int i = 0; i < bookUpdateLanes.length; i++) {
+                    // a plain executor instead of newSingleThreadExecutor so the lane can look at its queue
+                    bookUpdateLanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(), threadFactory("book-update-" + i));
+                }
+            }
+        }
+    }
+
+    /**
+     * hands the update to the lane or ring of its currency pair, the detection is triggered once it is applied
+     *
+     * @param action
+     * @param price
+     */
+    public void submit(Action action, Price price) {
+        if (rings.length > 0) {
+            rings[shard(price.instrument())].publish(action, price);
+            return;
+        }
+        ThreadPoolExecutor lane = lane(price.instrument());
+        lane.execute(() -> applyUpdate(lane, action, price));
+    }
+
+    /**
+     * @param pair id of the currency pair
+     * @return ring the updates of the currency pair are published to, 0 if there is only one ring
+     */
+    public int shard(int pair) {
+        return rings.length == 0 ? 0 : pair % rings.length;
+    }
+
+    /**
+     * @return number of updates which changed a top of book and triggered the detection
+     */
+    public long getProcessedEvents() {
+        return processedEvents.sum();
+    }
+
+    /**
+     * @return number of updates which did not change any top of book and were not passed to the detection
+     */
+    public long getFilteredEvents() {
+        return filteredEvents.sum();
+    }
+
+    /**
+     * @return number of detections run so far, 0 if the detection is not conflated
+     */
+    public long getDetectionRuns() {
+        return detectionScheduler == null ? 0 : detectionScheduler.getDetectionRuns();
+    }
+
+    /**
+     * @return number of updates covered by the detections run so far, 0 if the detection is not conflated
+     */
+    public long getConflatedUpdates() {
+        return detectionScheduler == null ? 0 : detectionScheduler.getConflatedUpdates();
+    }
+
+    /**
+     * @return number of updates waiting in the rings, always 0 if the pipeline does not use rings
+     */
+    public int getRingOccupancy() {
+        int occupancy = 0;
+        for (PriceEventRing ring : rings) {
+            occupancy += ring.occupancy();
+        }
+        return occupancy;
+    }
+
+    /**
+     * @return number of slots of all rings, 0 if the pipeline does not use rings
+     */
+    public int getRingCapacity() {
+        int capacity = 0;
+        for (PriceEventRing ring : rings) {
+            capacity += ring.capacity();
+        }
+        return capacity;
+    }
+
+    /**
+     * stops accepting updates, lets the book update stage finish its pending updates and then the
+     * detection stage its pending runs
+     */
+    @Override
+    public void close() {
+        for (PriceEventRing ring : rings) {
+            ring.close(config.getShutdownTimeoutMs());
+        }
+        for (ExecutorService lane : bookUpdateLanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : bookUpdateLanes) {
+            awaitTermination(lane);
+        }
+        if (detectionScheduler != null) {
+            detectionScheduler.close(config.getShutdownTimeoutMs());
+        } else {
+            detectionExecutor.shutdown();
+            awaitTermination(detectionExecutor);
+        }
+    }
+
+    private PriceEventRing newRing(String threadName) {
+        return new PriceEventRing(config.getRingSize(), config.getWaitStrategy(), this::onRingEvent, threadName);
+    }
+
+    /**
+     * runs on the thread of the lane, applies the update and triggers the detection
+     */
+    private void applyUpdate(ThreadPoolExecutor lane, Action action, Price price) {
+        try {
+            boolean changed = bookUpdateStage.test(action, price);
+            triggerDetection(changed, lane.getQueue().isEmpty());
+        } catch (RuntimeException e) {
+            LOG.info("Can not process update {} {}: {}", action, price.id(), e.getMessage());
+        }
+    }
+
+    /**
+     * runs on the consumer thread of the ring, applies the update and triggers the detection
+     */
+    private void onRingEvent(Action action, Price price, boolean endOfBatch) {
+        boolean changed = bookUpdateStage.test(action, price);
+        triggerDetection(changed, endOfBatch);
+    }
+
+    /**
+     * runs on the book update thread once the update is applied
+     *
+     * @param changed    true if the update changed a top of book
+     * @param endOfBurst true if the book update thread has no further update to apply
+     */
+    private void triggerDetection(boolean changed, boolean endOfBurst) {
+        if (!changed) {
+            filteredEvents.increment();
+            if (endOfBurst && detectionScheduler != null) {
+                detectionScheduler.onBurstEnd();
+            }
+            return;
+        }
+        processedEvents.increment();
+        if (detectionScheduler != null) {
+            detectionScheduler.onUpdate(endOfBurst);
+            return;
+        }
+        detectionExecutor.execute(detectionTask);
+    }
+
+    private void runDetection() {
+        try {
+            detectionStage.run();
+        } catch (RuntimeException e) {
+            LOG.info("Can not detect arbitrage: {}", e.getMessage());
+        }
+    }
+
+    private ThreadPoolExecutor lane(int pair) {
+        return bookUpdateLanes[pair % bookUpdateLanes.length];
+    }
+
+    private void awaitTermination(ExecutorService executorService) {
+        try {
+            if (!executorService.awaitTermination(config.getShutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String nameFormat) {
+        return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+    }
+}
@@ -0,0 +1,273 @@
+package com.estar.customcode.processors;
+
+import com.estar.customcode.collections.LongIntHashIndex;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.orderbook.model.Price;
+
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * One side of a {@link CurrencyOrderBook}. Orders are indexed by id and grouped into price levels which
+ * are kept sorted from best to worst ({@link PriceLevelTree}), so an insert, modify or delete costs
+ * O(log n) and the best price is cached after every change and read in O(1).
+ * <p>
+ * Order state lives in a pool of slots held in parallel arrays and the order id is mapped to its slot by
+ * a {@link LongIntHashIndex}. Freed slots are reused, so once the side reached its largest depth no
+ * update allocates. Orders within a level are kept in arrival order and the oldest one is reported as best.
+ * <p>
+ * The -log weights of the graph edges are computed once per price level when the level is created and
+ * kept with it, so a new best price only copies the weights of its level.
+ * <p>
+ * The class is not thread safe, all mutations are expected to happen under the lock of the owning book.
+ * Only the best values and the best {@link #DEPTH_LEVELS} levels are published to readers. The levels are
+ * written in place under a sequence lock: the version is odd while they are written and readers copy them
+ * again until they saw the same even version before and after the copy. They are only written again if
+ * the change touched one of these levels.
+ */
+class OrderBookSide {
+    private static final int NIL = PriceLevelTree.NIL;
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * number of best price levels published for sizing
+     */
+    static final int DEPTH_LEVELS = 16;
+
+    private final LongIntHashIndex orderIndex = new LongIntHashIndex(INITIAL_CAPACITY);
+    private final PriceLevelTree levels;
+    private final boolean ascending;
+    private final int pair;
+    private final PricePrecision precision;
+
+    private long[] orderTicks = new long[INITIAL_CAPACITY];
+    private Price[] orderPrices = new Price[INITIAL_CAPACITY];
+    private int[] orderLevel = new int[INITIAL_CAPACITY];
+    private int[] orderNext = new int[INITIAL_CAPACITY];
+    private int[] orderPrevious = new int[INITIAL_CAPACITY];
+    private int freeSlot = NIL;
+    private int usedSlots;
+
+    private volatile Price bestPrice;
+    private volatile long bestTicks = OrderBook.NO_PRICE;
+    // only read by the writer when it publishes the top of book
+    private double bestWeight = Double.NaN;
+    private double bestInverseWeight = Double.NaN;
+
+    private final int[] depthLevels = new int[DEPTH_LEVELS];
+    private final long[] depthTicks = new long[DEPTH_LEVELS];
+    private final long[] depthQuantities = new long[DEPTH_LEVELS];
+    private int depthSize;
+    private volatile int depthVersion;
+
+    /**
+     * @param ascending    true if the lowest price is the best one (ask side), false for the bid side
+     * @param pair         id of the currency pair
+     * @param precision    precision the ticks of the side are in
+     */
+    OrderBookSide(boolean ascending, int pair, PricePrecision precision) {
+        this.levels = new PriceLevelTree(ascending, INITIAL_CAPACITY);
+        this.ascending = ascending;
+        this.pair = pair;
+        this.precision = precision;
+    }
+
+    /**
+     * @return best price of the side or null if the side is empty
+     */
+    Price getBestPrice() {
+        return bestPrice;
+    }
+
+    /**
+     * @return best price of the side in ticks or {@link OrderBook#NO_PRICE} if the side is empty
+     */
+    long getBestTicks() {
+        return bestTicks;
+    }
+
+    /**
+     * @return -log weight of the best price or NaN if the side is empty
+     */
+    double getBestWeight() {
+        return bestWeight;
+    }
+
+    /**
+     * @return -log weight of the inverted best price or NaN if the side is empty
+     */
+    double getBestInverseWeight() {
+        return bestInverseWeight;
+    }
+
+    /**
+     * copies the best levels published last, can be called from any thread
+     *
+     * @param ticks      price of the levels from best to worst
+     * @param quantities total quantity of the orders of each level
+     * @return number of levels copied, at most the length of the arrays
+     */
+    int copyDepth(long[] ticks, long[] quantities) {
+        while (true) {
+            int version = depthVersion;
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int size = Math.min(depthSize, Math.min(ticks.length, quantities.length));
+            System.arraycopy(depthTicks, 0, ticks, 0, size);
+            System.arraycopy(depthQuantities, 0, quantities, 0, size);
+            VarHandle.acquireFence();
+            if (depthVersion == version) {
+                return size;
+            }
+        }
+    }
+
+    boolean contains(long id) {
+        return orderIndex.containsKey(id);
+    }
+
+    boolean isEmpty() {
+        return orderIndex.isEmpty();
+    }
+
+    /**
+     * adds the price to the side, an existing order with the same id is replaced
+     *
+     * @param price
+     * @param ticks price of the order in ticks
+     */
+    void put(Price price, long ticks) {
+        int slot = orderIndex.get(price.id());
+        boolean depthChanged = inDepth(ticks);
+        if (slot != LongIntHashIndex.NOT_FOUND) {
+            depthChanged |= inDepth(orderTicks[slot]);
+            unlink(slot);
+        } else {
+            slot = allocateSlot();
+            orderIndex.put(price.id(), slot);
+        }
+        orderTicks[slot] = ticks;
+        orderPrices[slot] = price;
+        int level = levels.findOrInsert(ticks);
+        if (Double.isNaN(levels.weight(level))) {
+            levels.weights(level, precision.toWeight(pair, ticks),
+                    precision.toWeight(pair, precision.invert(pair, ticks)));
+        }
+        link(slot, level);
+        refreshBest();
+        if (depthChanged) {
+            publishDepth();
+        }
+    }
+
+    void remove(long id) {
+        int slot = orderIndex.remove(id);
+        if (slot != LongIntHashIndex.NOT_FOUND) {
+            boolean depthChanged = inDepth(orderTicks[slot]);
+            unlink(slot);
+            orderPrices[slot] = null;
+            orderNext[slot] = freeSlot;
+            freeSlot = slot;
+            refreshBest();
+            if (depthChanged) {
+                publishDepth();
+            }
+        }
+    }
+
+    /**
+     * appends the order to the end of the FIFO list of the level
+     */
+    private void link(int slot, int level) {
+        int tail = levels.tail(level);
+        orderLevel[slot] = level;
+        orderPrevious[slot] = tail;
+        orderNext[slot] = NIL;
+        if (tail == NIL) {
+            levels.head(level, slot);
+        } else {
+            orderNext[tail] = slot;
+        }
+        levels.tail(level, slot);
+        levels.addQuantity(level, orderPrices[slot].quantity());
+    }
+
+    /**
+     * takes the order out of the list of its level and drops the level if it became empty
+     */
+    private void unlink(int slot) {
+        int level = orderLevel[slot];
+        int previous = orderPrevious[slot];
+        int next = orderNext[slot];
+        if (previous == NIL) {
+            levels.head(level, next);
+        } else {
+            orderNext[previous] = next;
+        }
+        if (next == NIL) {
+            levels.tail(level, previous);
+        } else {
+            orderPrevious[next] = previous;
+        }
+        levels.addQuantity(level, -orderPrices[slot].quantity());
+        if (levels.head(level) == NIL) {
+            levels.remove(orderTicks[slot]);
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NIL) {
+            int slot = freeSlot;
+            freeSlot = orderNext[slot];
+            return slot;
+        }
+        if (usedSlots == orderTicks.length) {
+            int capacity = orderTicks.length << 1;
+            orderTicks = Arrays.copyOf(orderTicks, capacity);
+            orderPrices = Arrays.copyOf(orderPrices, capacity);
+            orderLevel = Arrays.copyOf(orderLevel, capacity);
+            orderNext = Arrays.copyOf(orderNext, capacity);
+            orderPrevious = Arrays.copyOf(orderPrevious, capacity);
+        }
+        return usedSlots++;
+    }
+
+    private void refreshBest() {
+        int level = levels.first();
+        if (level == NIL) {
+            bestPrice = null;
+            bestTicks = OrderBook.NO_PRICE;
+            bestWeight = Double.NaN;
+            bestInverseWeight = Double.NaN;
+        } else {
+            bestPrice = orderPrices[levels.head(level)];
+            bestTicks = levels.ticks(level);
+            bestWeight = levels.weight(level);
+            bestInverseWeight = levels.inverseWeight(level);
+        }
+    }
+
+    /**
+     * @return true if a level at this price is or would be one of the published levels
+     */
+    private boolean inDepth(long ticks) {
+        if (depthSize < DEPTH_LEVELS) {
+            return true;
+        }
+        long worst = depthTicks[DEPTH_LEVELS - 1];
+        return ascending ? ticks <= worst : ticks >= worst;
+    }
+
+    private void publishDepth() {
+        int version = depthVersion;
+        depthVersion = version + 1;
+        VarHandle.storeStoreFence();
+        depthSize = levels.bestLevels(depthLevels, DEPTH_LEVELS);
+        for (int i = 0; i < depthSize; i++) {
+            depthTicks[i] = levels.ticks(depthLevels[i]);
+            depthQuantities[i] = levels.quantity(depthLevels[i]);
+        }
+        depthVersion = version + 2;
+    }
+}
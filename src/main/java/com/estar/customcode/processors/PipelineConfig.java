@@ -0,0 +1,202 @@
+package com.estar.customcode.processors;
+
+import com.estar.arbitrage.AsyncArbitrageProcessor;
+import com.estar.orderbook.model.CurrencyPair;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Configuration of the {@link OrderBookPipeline}.
+ */
+@Getter
+@Builder
+public class PipelineConfig {
+    public enum IngestionMode {
+        /**
+         * the feed thread submits every update as a task to the book update lanes
+         */
+        EXECUTOR,
+        /**
+         * the feed thread only publishes the update into a {@link PriceEventRing}, a dedicated consumer
+         * thread applies it to the order books
+         */
+        RING,
+        /**
+         * like {@link #RING} but with one ring and consumer thread per shard, every currency pair is owned
+         * by exactly one shard which is the only writer of its order book
+         */
+        SHARDED
+    }
+
+    public enum DetectionMode {
+        /**
+         * one Bellman-Ford run from every currency
+         */
+        PER_VERTEX,
+        /**
+         * one Bellman-Ford run from a virtual source connected to every currency
+         */
+        SUPER_SOURCE,
+        /**
+         * keeps the state of the previous run and only repairs it around the changed edges, falls back to
+         * {@link #SUPER_SOURCE} when there is a negative cycle
+         */
+        INCREMENTAL,
+        /**
+         * evaluates the cycles of up to {@link #maxCycleLength} currencies enumerated at startup, only the
+         * cycles through a changed pair are evaluated again
+         */
+        TRIANGULAR,
+        /**
+         * like {@link #PER_VERTEX} with the source currencies split over the common fork/join pool once the
+         * graph has {@link #parallelismThreshold} currencies
+         */
+        PARALLEL,
+        /**
+         * like {@link #SUPER_SOURCE} with the rounds relaxed by the Vector API kernel, the scalar kernel is
+         * used if the jdk.incubator.vector module is not added
+         */
+        SIMD,
+        /**
+         * keeps the all pairs best rate matrix, updated in O(V²) for pairs getting cheaper and computed again
+         * by a blocked Floyd-Warshall otherwise
+         */
+        MIN_PLUS
+    }
+
+    /**
+     * how updates are handed from the feed thread to the book update stage
+     */
+    @Builder.Default
+    private final IngestionMode ingestionMode = IngestionMode.EXECUTOR;
+    /**
+     * number of threads applying updates to the order books in {@link IngestionMode#EXECUTOR}, updates of
+     * one currency pair are always applied by the same thread so they stay in order
+     */
+    @Builder.Default
+    private final int bookUpdateThreads = 1;
+    /**
+     * number of shards in {@link IngestionMode#SHARDED}, currency pairs are partitioned over the shards
+     */
+    @Builder.Default
+    private final int shards = Math.min(Runtime.getRuntime().availableProcessors(), CurrencyPair.values().length);
+    /**
+     * number of slots of each ring in {@link IngestionMode#RING} and {@link IngestionMode#SHARDED},
+     * has to be a power of two
+     */
+    @Builder.Default
+    private final int ringSize = 4096;
+    /**
+     * how the ring consumers and the producer wait in {@link IngestionMode#RING} and {@link IngestionMode#SHARDED}
+     */
+    @Builder.Default
+    private final WaitStrategy waitStrategy = WaitStrategy.PARK;
+    /**
+     * how the negative cycles are searched
+     */
+    @Builder.Default
+    private final DetectionMode detectionMode = DetectionMode.INCREMENTAL;
+    /**
+     * longest cycle in currencies evaluated in {@link DetectionMode#TRIANGULAR}
+     */
+    @Builder.Default
+    private final int maxCycleLength = 3;
+    /**
+     * smallest number of currencies searched in parallel in {@link DetectionMode#PARALLEL}
+     */
+    @Builder.Default
+    private final int parallelismThreshold = 16;
+    /**
+     * number of most profitable distinct cycles reported per detection run
+     */
+    @Builder.Default
+    private final int topCycles = 10;
+    /**
+     * cycles with a factor up to this value are not reported
+     */
+    @Builder.Default
+    private final double minCycleProfit = 0;
+    /**
+     * number of recently profitable cycles priced again before searching the whole graph, see
+     * {@link com.estar.customcode.algo.HotCycleDetector}, 0 searches the whole graph on every run
+     */
+    @Builder.Default
+    private final int hotCycles = 0;
+    /**
+     * with {@link #hotCycles}, the whole graph is searched at least every this many detection runs
+     */
+    @Builder.Default
+    private final int fullSearchInterval = 8;
+    /**
+     * with {@link #hotCycles}, detection runs a cycle stays cached after it last paid
+     */
+    @Builder.Default
+    private final long hotCycleMaxAge = 256;
+    /**
+     * true to run the detection once per burst of updates with a {@link ConflatingDetectionScheduler},
+     * false to run it once per update. The detection runs on a single thread in both cases, every run reuses
+     * the best price matrix, the graph and the result of the previous one.
+     */
+    @Builder.Default
+    private final boolean conflateDetection = true;
+    /**
+     * longest time in microseconds a conflated update waits for the detection while a burst goes on
+     */
+    @Builder.Default
+    private final long maxDetectionDelayMicros = 1000;
+    /**
+     * number of conflated updates which triggers the detection while a burst goes on
+     */
+    @Builder.Default
+    private final int maxDetectionBatch = 64;
+    /**
+     * true to report only the changes of the opportunities with an {@link com.estar.arbitrage.OpportunityTracker},
+     * false reports every kept cycle on every detection run
+     */
+    @Builder.Default
+    private final boolean trackOpportunities = true;
+    /**
+     * change of the factor of an open opportunity reported as UPDATED with {@link #trackOpportunities}
+     */
+    @Builder.Default
+    private final double opportunityTolerance = 0.0001;
+    /**
+     * true to write the arbitrage records on a thread of their own with an {@link AsyncArbitrageProcessor},
+     * false prints them on the detection thread
+     */
+    @Builder.Default
+    private final boolean asyncReporting = true;
+    /**
+     * records waiting to be written at most with {@link #asyncReporting}, more are dropped
+     */
+    @Builder.Default
+    private final int reportQueueSize = 1024;
+    /**
+     * records written at once at most with {@link #asyncReporting}
+     */
+    @Builder.Default
+    private final int reportBatchSize = 64;
+    @Builder.Default
+    private final AsyncArbitrageProcessor.OverflowPolicy reportOverflowPolicy = AsyncArbitrageProcessor.OverflowPolicy.DROP_NEWEST;
+    /**
+     * file the records are written to with {@link #asyncReporting}, rolled over by size, null writes to stdout
+     */
+    @Builder.Default
+    private final String reportFile = null;
+    @Builder.Default
+    private final long reportFileMaxBytes = 64L << 20;
+    /**
+     * number of report files kept including the current one
+     */
+    @Builder.Default
+    private final int reportFileCount = 5;
+    /**
+     * time given to the stages to finish the pending tasks on shutdown
+     */
+    @Builder.Default
+    private final long shutdownTimeoutMs = 5000;
+
+    public static PipelineConfig defaults() {
+        return PipelineConfig.builder().build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.estar.customcode.processors;
+
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated single producer ring buffer handing price updates from the feed thread to a dedicated
+ * consumer thread. Publishing only stores the action and the price reference into the slot of the next
+ * sequence and releases the sequence, it does not allocate and does not take a lock.
+ * <p>
+ * Only one thread may publish at a time, calls to {@link #publish(Action, Price)} from different threads
+ * have to be ordered by the caller (e.g. a monitor like the synchronized methods of the price generator).
+ * The consumer processes all published events in batches and tells the handler which event ends a batch.
+ * A handler throwing a runtime exception only loses its event, an error stops the consumer and a producer
+ * waiting for room in the full ring then fails instead of waiting forever.
+ */
+public class PriceEventRing implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PriceEventRing.class);
+
+    @FunctionalInterface
+    public interface EventHandler {
+        /**
+         * @param action
+         * @param price
+         * @param endOfBatch true if this is the last event which was available to the consumer
+         */
+        void onEvent(Action action, Price price, boolean endOfBatch);
+    }
+
+    private final int mask;
+    private final Action[] actions;
+    private final Price[] prices;
+    private final WaitStrategy waitStrategy;
+    private final EventHandler handler;
+    private final Thread consumerThread;
+
+    /**
+     * last published sequence
+     */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /**
+     * last sequence processed by the consumer
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private volatile boolean running = true;
+
+    // only accessed by the producer
+    private long nextSequence;
+    private long cachedConsumed = -1;
+
+    /**
+     * @param size         number of slots, has to be a power of two
+     * @param waitStrategy
+     * @param handler      called on the consumer thread for every event
+     * @param threadName
+     */
+    public PriceEventRing(int size, WaitStrategy waitStrategy, EventHandler handler, String threadName) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size has to be a power of two: " + size);
+        }
+        this.mask = size - 1;
+        this.actions = new Action[size];
+        this.prices = new Price[size];
+        this.waitStrategy = waitStrategy;
+        this.handler = handler;
+        this.consumerThread = new Thread(this::consume, threadName);
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * claims the next slot, waiting with the wait strategy while the ring is full, and publishes the event
+     *
+     * @param action
+     * @param price
+     */
+    public void publish(Action action, Price price) {
+        if (!running) {
+            throw new IllegalStateException("Ring is closed");
+        }
+        long sequence = nextSequence;
+        long wrapPoint = sequence - actions.length;
+        int attempt = 0;
+        while (wrapPoint > cachedConsumed) {
+            cachedConsumed = consumed.get();
+            if (wrapPoint > cachedConsumed) {
+                // a full ring is only drained by a live consumer
+                if (!consumerThread.isAlive()) {
+                    throw new IllegalStateException("Ring consumer " + consumerThread.getName() + " is not running");
+                }
+                waitStrategy.idle(attempt++);
+            }
+        }
+        nextSequence++;
+        int index = (int) sequence & mask;
+        actions[index] = action;
+        prices[index] = price;
+        cursor.lazySet(sequence);
+    }
+
+    /**
+     * @return number of events published but not yet processed by the consumer
+     */
+    public int occupancy() {
+        long consumedSequence = consumed.get();
+        return (int) (cursor.get() - consumedSequence);
+    }
+
+    public int capacity() {
+        return actions.length;
+    }
+
+    /**
+     * stops the ring once the consumer processed all events published so far
+     */
+    @Override
+    public void close() {
+        close(0);
+    }
+
+    /**
+     * @param timeoutMs time to wait for the consumer to finish, 0 waits until it is done
+     */
+    public void close(long timeoutMs) {
+        running = false;
+        try {
+            consumerThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        long next = consumed.get() + 1;
+        int attempt = 0;
+        while (true) {
+            long available = cursor.get();
+            if (available >= next) {
+                attempt = 0;
+                for (; next <= available; next++) {
+                    int index = (int) next & mask;
+                    Action action = actions[index];
+                    Price price = prices[index];
+                    prices[index] = null;
+                    try {
+                        handler.onEvent(action, price, next == available);
+                    } catch (RuntimeException e) {
+                        LOG.info("Can not process update {} {}: {}", action, price != null ? price.id() : null, e.getMessage());
+                    } catch (Error e) {
+                        LOG.error("Ring consumer stopped on update {}", action, e);
+                        throw e;
+                    }
+                    consumed.lazySet(next);
+                }
+            } else if (!running && cursor.get() < next) {
+                return;
+            } else {
+                waitStrategy.idle(attempt++);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.estar.customcode.processors;
+
+import java.util.Arrays;
+
+/**
+ * Sorted price levels of one book side, kept as a treap whose nodes live in primitive arrays.
+ * Finding, adding and removing a level is O(log n) expected and reusing freed nodes means no
+ * allocation once the tree reached its largest size.
+ * <p>
+ * Every level holds the first and last order slot of a FIFO list of the orders on that level, the list
+ * itself is maintained by {@link OrderBookSide}, the total quantity of these orders and the -log weights of
+ * the price and of its inverse, computed once when the level is created. Levels are ordered from best to worst, for a descending
+ * side the key of a node is the negated price. The class is not thread safe.
+ */
+class PriceLevelTree {
+    static final int NIL = -1;
+
+    private final boolean ascending;
+    private long[] keys;
+    private int[] left;
+    private int[] right;
+    private int[] priority;
+    private int[] head;
+    private int[] tail;
+    private long[] quantity;
+    private double[] weight;
+    private double[] inverseWeight;
+    // nodes still to visit by bestLevels
+    private int[] stack = new int[32];
+    private int root = NIL;
+    private int free = NIL;
+    private int used;
+    private int size;
+    private int seed = 0x2545F491;
+    private int lastLevel;
+
+    PriceLevelTree(boolean ascending, int initialCapacity) {
+        this.ascending = ascending;
+        allocate(Math.max(4, initialCapacity));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return level with the best price or {@link #NIL} if there is no level
+     */
+    int first() {
+        int node = root;
+        if (node == NIL) {
+            return NIL;
+        }
+        while (left[node] != NIL) {
+            node = left[node];
+        }
+        return node;
+    }
+
+    /**
+     * fills the levels from best to worst by an in order walk of the tree
+     *
+     * @param levels
+     * @param max    largest number of levels wanted
+     * @return number of levels filled
+     */
+    int bestLevels(int[] levels, int max) {
+        int count = 0;
+        int depth = 0;
+        int node = root;
+        while (count < max && (node != NIL || depth > 0)) {
+            if (node != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth << 1);
+                }
+                stack[depth++] = node;
+                node = left[node];
+            } else {
+                node = stack[--depth];
+                levels[count++] = node;
+                node = right[node];
+            }
+        }
+        return count;
+    }
+
+    int find(long ticks) {
+        long key = toKey(ticks);
+        int node = root;
+        while (node != NIL && keys[node] != key) {
+            node = key < keys[node] ? left[node] : right[node];
+        }
+        return node;
+    }
+
+    /**
+     * returns the level for the price, a new empty level is added if none exists
+     *
+     * @param ticks
+     * @return
+     */
+    int findOrInsert(long ticks) {
+        int level = find(ticks);
+        if (level != NIL) {
+            return level;
+        }
+        root = insert(root, toKey(ticks));
+        size++;
+        return lastLevel;
+    }
+
+    void remove(long ticks) {
+        root = remove(root, toKey(ticks));
+    }
+
+    long ticks(int level) {
+        return ascending ? keys[level] : -keys[level];
+    }
+
+    int head(int level) {
+        return head[level];
+    }
+
+    void head(int level, int slot) {
+        head[level] = slot;
+    }
+
+    int tail(int level) {
+        return tail[level];
+    }
+
+    void tail(int level, int slot) {
+        tail[level] = slot;
+    }
+
+    long quantity(int level) {
+        return quantity[level];
+    }
+
+    void addQuantity(int level, long delta) {
+        quantity[level] += delta;
+    }
+
+    /**
+     * @param level
+     * @return -log weight of the price of the level or NaN if not set yet
+     */
+    double weight(int level) {
+        return weight[level];
+    }
+
+    /**
+     * @param level
+     * @return -log weight of the inverted price of the level or NaN if not set yet
+     */
+    double inverseWeight(int level) {
+        return inverseWeight[level];
+    }
+
+    void weights(int level, double weight, double inverseWeight) {
+        this.weight[level] = weight;
+        this.inverseWeight[level] = inverseWeight;
+    }
+
+    private long toKey(long ticks) {
+        return ascending ? ticks : -ticks;
+    }
+
+    private int insert(int node, long key) {
+        if (node == NIL) {
+            lastLevel = newNode(key);
+            return lastLevel;
+        }
+        // the child is assigned after the call as inserting may replace the arrays
+        if (key < keys[node]) {
+            int child = insert(left[node], key);
+            left[node] = child;
+            if (priority[child] > priority[node]) {
+                node = rotateRight(node);
+            }
+        } else {
+            int child = insert(right[node], key);
+            right[node] = child;
+            if (priority[child] > priority[node]) {
+                node = rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    private int remove(int node, long key) {
+        if (node == NIL) {
+            return NIL;
+        }
+        if (key < keys[node]) {
+            left[node] = remove(left[node], key);
+        } else if (key > keys[node]) {
+            right[node] = remove(right[node], key);
+        } else if (left[node] == NIL || right[node] == NIL) {
+            int child = left[node] == NIL ? right[node] : left[node];
+            release(node);
+            return child;
+        } else if (priority[left[node]] > priority[right[node]]) {
+            node = rotateRight(node);
+            right[node] = remove(right[node], key);
+        } else {
+            node = rotateLeft(node);
+            left[node] = remove(left[node], key);
+        }
+        return node;
+    }
+
+    private int rotateRight(int node) {
+        int pivot = left[node];
+        left[node] = right[pivot];
+        right[pivot] = node;
+        return pivot;
+    }
+
+    private int rotateLeft(int node) {
+        int pivot = right[node];
+        right[node] = left[pivot];
+        left[pivot] = node;
+        return pivot;
+    }
+
+    private int newNode(long key) {
+        int node;
+        if (free != NIL) {
+            node = free;
+            free = left[node];
+        } else {
+            if (used == keys.length) {
+                allocate(keys.length << 1);
+            }
+            node = used++;
+        }
+        keys[node] = key;
+        left[node] = NIL;
+        right[node] = NIL;
+        priority[node] = nextPriority();
+        head[node] = NIL;
+        tail[node] = NIL;
+        quantity[node] = 0;
+        weight[node] = Double.NaN;
+        inverseWeight[node] = Double.NaN;
+        return node;
+    }
+
+    private void release(int node) {
+        left[node] = free;
+        free = node;
+        size--;
+    }
+
+    private int nextPriority() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    private void allocate(int capacity) {
+        keys = keys == null ? new long[capacity] : Arrays.copyOf(keys, capacity);
+        left = left == null ? new int[capacity] : Arrays.copyOf(left, capacity);
+        right = right == null ? new int[capacity] : Arrays.copyOf(right, capacity);
+        priority = priority == null ? new int[capacity] : Arrays.copyOf(priority, capacity);
+        head = head == null ? new int[capacity] : Arrays.copyOf(head, capacity);
+        tail = tail == null ? new int[capacity] : Arrays.copyOf(tail, capacity);
+        quantity = quantity == null ? new long[capacity] : Arrays.copyOf(quantity, capacity);
+        weight = weight == null ? new double[capacity] : Arrays.copyOf(weight, capacity);
+        inverseWeight = inverseWeight == null ? new double[capacity] : Arrays.copyOf(inverseWeight, capacity);
+    }
+}
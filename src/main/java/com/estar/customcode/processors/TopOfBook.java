@@ -0,0 +1,29 @@
+package com.estar.customcode.processors;
+
+import com.estar.orderbook.model.Price;
+
+/**
+ * Best buy and best sell of a book in ticks taken at the same moment. A book publishes a new instance
+ * every time one of the values changes, so readers never see the values of two different updates, and
+ * stamps it with the next {@link BookEpoch} value.
+ *
+ * @param buyTicks   best buy in ticks or {@link OrderBook#NO_PRICE}
+ * @param sellTicks  best sell in ticks or {@link OrderBook#NO_PRICE}
+ * @param buyWeight  -log weight of the best buy or NaN if the book does not keep it
+ * @param sellWeight -log weight of the best sell or NaN if the book does not keep it
+ * @param buy        best buy as returned by {@link OrderBook#getBestBuy()} at the same moment
+ * @param sell       best sell as returned by {@link OrderBook#getBestSell()} at the same moment
+ * @param version    epoch the book advanced to when publishing it, 0 if not published by a book
+ */
+public record TopOfBook(long buyTicks, long sellTicks, double buyWeight, double sellWeight, Price buy, Price sell,
+                        long version) {
+    public static final TopOfBook EMPTY = new TopOfBook(OrderBook.NO_PRICE, OrderBook.NO_PRICE, null, null);
+
+    public TopOfBook(long buyTicks, long sellTicks, Price buy, Price sell) {
+        this(buyTicks, sellTicks, Double.NaN, Double.NaN, buy, sell, 0);
+    }
+
+    public boolean isComplete() {
+        return buyTicks != OrderBook.NO_PRICE && sellTicks != OrderBook.NO_PRICE;
+    }
+}
@@ -0,0 +1,55 @@
+package com.estar.customcode.processors;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread of the {@link PriceEventRing} waits for the other side, the consumer when the ring is empty
+ * and the producer when the ring is full. The strategies trade CPU usage for hand-off latency.
+ */
+public enum WaitStrategy {
+    /**
+     * keeps the core busy, lowest latency but burns a full core while idle
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * spins for a short while and then gives up the core to other threads
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    /**
+     * spins for a short while and then parks the thread for {@link #PARK_NANOS}
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_ATTEMPTS = 100;
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * called each time the thread finds nothing to do
+     *
+     * @param attempt number of times in a row the thread was idle
+     */
+    abstract void idle(int attempt);
+}
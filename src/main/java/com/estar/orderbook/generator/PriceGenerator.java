@@ -28,6 +28,8 @@ public class PriceGenerator {
 	private static final double PRICE_RANGE = 0.2d;
 	private static final int MAX_QUANTITY = 50;
 	private static final Map<CurrencyPair, BigDecimal> ORDERBOOK_MID = new EnumMap<>(CurrencyPair.class);
+	// currency pair by the instrument of a price
+	private static final CurrencyPair[] INSTRUMENTS = CurrencyPair.values();
 	
 	private int currentPriceId;
 	
@@ -124,10 +126,10 @@ public class PriceGenerator {
 	// Removes top of book for both sides
 	private void deleteTopOfBook(PriorityQueue<Price> bidPrices, PriorityQueue<Price> askPrices) {
 		Price deletedBidPrice = bidPrices.remove();
-		hashedBidPrices.getOrDefault(deletedBidPrice.instrument(), new HashSet<>()).remove(deletedBidPrice.price());
+		hashedBidPrices.getOrDefault(INSTRUMENTS[deletedBidPrice.instrument()], new HashSet<>()).remove(deletedBidPrice.price());
 		sendUpdateToListeners(Action.DELETE, deletedBidPrice);
 		Price deletedAskPrice = askPrices.remove();
-		hashedAskPrices.getOrDefault(deletedAskPrice.instrument(), new HashSet<>()).remove(deletedAskPrice.price());
+		hashedAskPrices.getOrDefault(INSTRUMENTS[deletedAskPrice.instrument()], new HashSet<>()).remove(deletedAskPrice.price());
 		sendUpdateToListeners(Action.DELETE, deletedAskPrice);
 	}
 	
@@ -138,9 +140,9 @@ public class PriceGenerator {
 	private void modifyTopOfBook(CurrencyPair instrument, PriorityQueue<Price> bidPrices,	PriorityQueue<Price> askPrices) {
 		
 		Price bidPriceToModify = bidPrices.remove();
-		hashedBidPrices.getOrDefault(bidPriceToModify.instrument(), new HashSet<>()).remove(bidPriceToModify.price());
+		hashedBidPrices.getOrDefault(INSTRUMENTS[bidPriceToModify.instrument()], new HashSet<>()).remove(bidPriceToModify.price());
 		Price askPriceToModify = askPrices.remove();
-		hashedAskPrices.getOrDefault(askPriceToModify.instrument(), new HashSet<>()).remove(askPriceToModify.price());
+		hashedAskPrices.getOrDefault(INSTRUMENTS[askPriceToModify.instrument()], new HashSet<>()).remove(askPriceToModify.price());
 		
 		// calculate new orderbook mid based on current top of book
 		calculateNewOrderbookMid(instrument);
@@ -148,7 +150,7 @@ public class PriceGenerator {
 		// modify bid price
 		Price newValuesForBidPrice = createPrice(false, instrument);
 		Price modifiedBidPrice = new Price(bidPriceToModify.id(), bidPriceToModify.instrument(), false, newValuesForBidPrice.quantity(), newValuesForBidPrice.price());
-		hashedBidPrices.getOrDefault(modifiedBidPrice.instrument(), new HashSet<>()).add(modifiedBidPrice.price());
+		hashedBidPrices.getOrDefault(INSTRUMENTS[modifiedBidPrice.instrument()], new HashSet<>()).add(modifiedBidPrice.price());
 		bidPrices.add(modifiedBidPrice);
 		sendUpdateToListeners(Action.MODIFY, modifiedBidPrice);
 		
@@ -156,7 +158,7 @@ public class PriceGenerator {
 		Price newValuesForAskPrice = createPrice(true, instrument);
 		Price modifiedAskPrice = new Price(askPriceToModify.id(), askPriceToModify.instrument(), true, newValuesForAskPrice.quantity(), newValuesForAskPrice.price());
 		askPrices.add(modifiedAskPrice);
-		hashedAskPrices.getOrDefault(modifiedAskPrice.instrument(), new HashSet<>()).add(modifiedAskPrice.price());
+		hashedAskPrices.getOrDefault(INSTRUMENTS[modifiedAskPrice.instrument()], new HashSet<>()).add(modifiedAskPrice.price());
 		sendUpdateToListeners(Action.MODIFY, modifiedAskPrice);
 	}
 	
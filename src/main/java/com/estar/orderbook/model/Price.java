@@ -2,10 +2,18 @@ package com.estar.orderbook.model;
 
 import java.math.BigDecimal;
 
+/**
+ * @param instrument id of the currency pair in the instrument registry of the listener, the ordinal for a
+ *                   {@link CurrencyPair}
+ */
 public record Price(
 		long id,
-		CurrencyPair instrument,
+		int instrument,
 		boolean ask,
 		int quantity, 
 		BigDecimal price) 
-{}
+{
+	public Price(long id, CurrencyPair instrument, boolean ask, int quantity, BigDecimal price) {
+		this(id, instrument.ordinal(), ask, quantity, price);
+	}
+}
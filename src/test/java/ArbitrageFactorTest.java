@@ -0,0 +1,122 @@
+import com.estar.customcode.algo.ArbitrageDetector;
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.ArbitragePathFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.EdgeRelaxer;
+import com.estar.customcode.algo.IncrementalArbitrageDetector;
+import com.estar.customcode.algo.MinPlusArbitrageEngine;
+import com.estar.customcode.algo.ParallelArbitragePathFinder;
+import com.estar.customcode.algo.RelaxationKernel;
+import com.estar.customcode.algo.SuperSourceArbitrageFinder;
+import com.estar.customcode.algo.TriangularArbitrageEngine;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.PipelineConfig;
+import com.estar.customcode.processors.PipelineConfig.DetectionMode;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class ArbitrageFactorTest {
+
+    /**
+     * the reported factor is the product of the rates round the cycle minus 1, up to the rounding of the
+     * weights to 4 decimal places
+     */
+    @Test
+    void testFactorIsProductOfRates() {
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        graph.update(triangle());
+        DetectionResult result = new DetectionResult(graph);
+        new TriangularArbitrageEngine(graph, 3, new ArbitrageFactorFinder()).detect(graph, result);
+
+        double expected = 1.10 * 0.80 * 1.1627907 - 1;
+        Assertions.assertEquals(3, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Assertions.assertEquals(expected, result.getFactor(result.getPair(i)), 2e-4);
+        }
+    }
+
+    /**
+     * every detection mode, the default one of the pipeline included, reports the triangle with its factor
+     * on all three pairs
+     */
+    @Test
+    void testEveryDetectorFindsTriangle() {
+        Assertions.assertEquals(DetectionMode.INCREMENTAL, PipelineConfig.defaults().getDetectionMode());
+        double expected = 1.10 * 0.80 * 1.1627907 - 1;
+        for (DetectionMode detectionMode : DetectionMode.values()) {
+            // some detectors consume the changes of their graph
+            DenseGraph graph = DenseGraph.forCurrencyPairs();
+            ArbitrageDetector detector = detector(detectionMode, graph);
+            graph.update(triangle());
+            DetectionResult result = new DetectionResult(graph);
+            detector.detect(graph, result);
+
+            Assertions.assertEquals(3, result.size(), detectionMode.name());
+            for (int i = 0; i < result.size(); i++) {
+                int pair = result.getPair(i);
+                Assertions.assertEquals(expected, result.getFactor(pair), 2e-4, detectionMode.name());
+                Set<Integer> currencies = new HashSet<>();
+                for (int k = 0; k < result.getCycleLength(pair); k++) {
+                    currencies.add(result.getCycleVertex(pair, k));
+                }
+                Assertions.assertEquals(Set.of(Currency.EUR.ordinal(), Currency.USD.ordinal(), Currency.GBP.ordinal()),
+                        currencies, detectionMode.name());
+            }
+        }
+    }
+
+    /**
+     * EUR -> USD at 1.10, USD -> GBP at 0.80, GBP -> EUR at 1 / 0.86, the other directions do not pay
+     */
+    private static BestPriceMatrix triangle() {
+        Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
+        instrumentData.put(CurrencyPair.EUR_USD, new BigDecimal[]{new BigDecimal("1.10"), new BigDecimal("0.50")});
+        instrumentData.put(CurrencyPair.USD_GBP, new BigDecimal[]{new BigDecimal("0.80"), new BigDecimal("0.50")});
+        instrumentData.put(CurrencyPair.EUR_GBP, new BigDecimal[]{new BigDecimal("0.50"), new BigDecimal("1.1627907")});
+        return BestPriceMatrix.of(instrumentData, PricePrecision.defaults());
+    }
+
+    private static ArbitrageDetector detector(DetectionMode detectionMode, DenseGraph graph) {
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        ArbitragePathFinder arbitragePathFinder = new ArbitragePathFinder(new EdgeRelaxer(), arbitrageFactorFinder,
+                InstrumentRegistry.forCurrencyPairs());
+        return switch (detectionMode) {
+            case PER_VERTEX -> arbitragePathFinder;
+            case SUPER_SOURCE -> new SuperSourceArbitrageFinder(arbitrageFactorFinder);
+            case INCREMENTAL -> new IncrementalArbitrageDetector(arbitrageFactorFinder);
+            case TRIANGULAR -> new TriangularArbitrageEngine(graph, 3, arbitrageFactorFinder);
+            case PARALLEL -> new ParallelArbitragePathFinder(arbitragePathFinder, ForkJoinPool.commonPool(), 1);
+            case SIMD -> new SuperSourceArbitrageFinder(arbitrageFactorFinder, RelaxationKernel.vectorOrScalar());
+            case MIN_PLUS -> new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        };
+    }
+
+    /**
+     * the weights copied from the matrix are the -log of the rates
+     */
+    @Test
+    void testWeightsOfMatrix() {
+        PricePrecision precision = PricePrecision.defaults();
+        BestPriceMatrix bestPriceMatrix = new BestPriceMatrix(precision);
+        int pair = CurrencyPair.EUR_USD.ordinal();
+        bestPriceMatrix.put(pair, precision.toTicks(pair, new BigDecimal("1.0850")),
+                precision.toTicks(pair, new BigDecimal("0.9200")));
+
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        graph.update(bestPriceMatrix);
+        Assertions.assertEquals(-Math.log(1.085), graph.getWeight(2 * pair), 5e-5);
+        Assertions.assertEquals(-Math.log(0.92), graph.getWeight(2 * pair + 1), 5e-5);
+    }
+}
@@ -0,0 +1,147 @@
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.ArbitrageSizer;
+import com.estar.customcode.processors.CurrencyOrderBook;
+import com.estar.customcode.processors.OrderBook;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class ArbitrageSizerTest {
+    private int priceId;
+
+    /**
+     * EUR -> USD -> GBP -> EUR pays on the best levels, the walk moves to the next level of the side used up
+     * first until the EUR_USD buy levels are all taken
+     */
+    @Test
+    void testNotionalOverDepth() {
+        Map<CurrencyPair, OrderBook> orderBooks = orderBooks();
+        add(orderBooks, CurrencyPair.EUR_USD, true, 100, "1.10");
+        add(orderBooks, CurrencyPair.EUR_USD, true, 100, "1.12");
+        add(orderBooks, CurrencyPair.USD_GBP, true, 1000, "0.80");
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 50, "1.16");
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 1000, "1.15");
+        // deeper than the published levels does not matter
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 1000, "1.05");
+
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        TopCycles topCycles = new TopCycles(10, 0, graph.getVertexCount());
+        // predecessor order of EUR -> USD -> GBP -> EUR
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.01);
+        new ArbitrageSizer(PricePrecision.defaults(), graph, 16).size(graph, topCycles, snapshot(orderBooks));
+
+        // 50 EUR of the first GBP -> EUR level, then the rest of the first EUR -> USD level, then its second level
+        double first = 50 / 1.16 / (1.10 * 0.80);
+        double second = 100 - first;
+        double third = 100;
+        double proceeds = first * 1.10 * 0.80 * 1.16 + second * 1.10 * 0.80 * 1.15 + third * 1.12 * 0.80 * 1.15;
+        double notional = topCycles.getNotional(0);
+        Assertions.assertEquals(200, notional, 1e-9);
+        Assertions.assertEquals(proceeds / notional - 1, topCycles.getVolumeWeightedFactor(0), 1e-12);
+    }
+
+    /**
+     * nothing is executable if the best levels do not pay, the factor of the best levels is reported
+     */
+    @Test
+    void testNoNotionalWithoutProfit() {
+        Map<CurrencyPair, OrderBook> orderBooks = orderBooks();
+        add(orderBooks, CurrencyPair.EUR_USD, true, 100, "1.08");
+        add(orderBooks, CurrencyPair.USD_GBP, true, 1000, "0.80");
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 50, "1.13");
+
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        TopCycles topCycles = new TopCycles(10, 0, graph.getVertexCount());
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.01);
+        new ArbitrageSizer(PricePrecision.defaults(), graph, 16).size(graph, topCycles, snapshot(orderBooks));
+
+        Assertions.assertEquals(0, topCycles.getNotional(0));
+        Assertions.assertEquals(1.08 * 0.80 * 1.13 - 1, topCycles.getVolumeWeightedFactor(0), 1e-12);
+    }
+
+    /**
+     * with different buy and sell sides on every pair each edge is sized on the side the graph weights it
+     * from, the buy book from base to quote and the sell book back, in both directions of the triangle
+     */
+    @Test
+    void testSidesOfAsymmetricSpreads() {
+        Map<CurrencyPair, OrderBook> orderBooks = orderBooks();
+        add(orderBooks, CurrencyPair.EUR_USD, true, 100, "1.10");
+        add(orderBooks, CurrencyPair.EUR_USD, false, 100, "0.85");
+        add(orderBooks, CurrencyPair.USD_GBP, true, 1000, "0.80");
+        add(orderBooks, CurrencyPair.USD_GBP, false, 1000, "1.20");
+        add(orderBooks, CurrencyPair.EUR_GBP, true, 1000, "0.70");
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 50, "1.16");
+
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        TopCycles topCycles = new TopCycles(10, 0, graph.getVertexCount());
+        // predecessor order of EUR -> USD -> GBP -> EUR and of EUR -> GBP -> USD -> EUR
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        int[] reverse = {Currency.EUR.ordinal(), Currency.USD.ordinal(), Currency.GBP.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.02);
+        topCycles.offer(reverse, reverse.length, 0.01);
+        new ArbitrageSizer(PricePrecision.defaults(), graph, 16).size(graph, topCycles, snapshot(orderBooks));
+
+        // the 50 EUR of the GBP -> EUR sell level limit the notional
+        Assertions.assertEquals(50 / 1.16 / (1.10 * 0.80), topCycles.getNotional(0), 1e-9);
+        Assertions.assertEquals(1.10 * 0.80 * 1.16 - 1, topCycles.getVolumeWeightedFactor(0), 1e-12);
+        Assertions.assertEquals(0, topCycles.getNotional(1));
+        Assertions.assertEquals(0.70 * 1.20 * 0.85 - 1, topCycles.getVolumeWeightedFactor(1), 1e-12);
+    }
+
+    /**
+     * the levels are the ones copied with the snapshot, an order taken from the book after the detection does
+     * not change the sizing of the cycles found on the snapshot
+     */
+    @Test
+    void testSizedOnSnapshotDepth() {
+        Map<CurrencyPair, OrderBook> orderBooks = orderBooks();
+        add(orderBooks, CurrencyPair.EUR_USD, true, 100, "1.10");
+        add(orderBooks, CurrencyPair.USD_GBP, true, 1000, "0.80");
+        add(orderBooks, CurrencyPair.EUR_GBP, false, 50, "1.16");
+        BestPriceMatrix snapshot = snapshot(orderBooks);
+        orderBooks.get(CurrencyPair.EUR_USD).manageOrder(Action.DELETE,
+                new Price(1, CurrencyPair.EUR_USD, true, 100, new BigDecimal("1.10")));
+        Assertions.assertEquals(0, snapshot(orderBooks).getDepth(CurrencyPair.EUR_USD.ordinal()).getLevels(true));
+
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        TopCycles topCycles = new TopCycles(10, 0, graph.getVertexCount());
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.01);
+        new ArbitrageSizer(PricePrecision.defaults(), graph, 16).size(graph, topCycles, snapshot);
+
+        Assertions.assertEquals(50 / 1.16 / (1.10 * 0.80), topCycles.getNotional(0), 1e-9);
+        Assertions.assertEquals(1.10 * 0.80 * 1.16 - 1, topCycles.getVolumeWeightedFactor(0), 1e-12);
+    }
+
+    private static BestPriceMatrix snapshot(Map<CurrencyPair, OrderBook> orderBooks) {
+        BestPriceMatrix snapshot = new BestPriceMatrix(PricePrecision.defaults(), CurrencyPair.values().length, 16);
+        orderBooks.forEach((currencyPair, orderBook) -> orderBook.copyDepth(snapshot.getDepth(currencyPair.ordinal())));
+        return snapshot;
+    }
+
+    private static Map<CurrencyPair, OrderBook> orderBooks() {
+        Map<CurrencyPair, OrderBook> orderBooks = new EnumMap<>(CurrencyPair.class);
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            orderBooks.put(currencyPair, new CurrencyOrderBook(currencyPair.ordinal()));
+        }
+        return orderBooks;
+    }
+
+    private void add(Map<CurrencyPair, OrderBook> orderBooks, CurrencyPair currencyPair, boolean ask, int quantity, String price) {
+        orderBooks.get(currencyPair).manageOrder(Action.INSERT,
+                new Price(++priceId, currencyPair, ask, quantity, new BigDecimal(price)));
+    }
+}
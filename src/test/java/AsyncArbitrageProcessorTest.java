@@ -0,0 +1,136 @@
+import com.estar.arbitrage.ArbitrageRecord;
+import com.estar.arbitrage.ArbitrageSink;
+import com.estar.arbitrage.AsyncArbitrageProcessor;
+import com.estar.arbitrage.AsyncArbitrageProcessor.OverflowPolicy;
+import com.estar.arbitrage.RollingFileSink;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncArbitrageProcessorTest {
+
+    /**
+     * a sink stuck in a write never blocks the reporting thread, records beyond the queue are dropped and
+     * counted and the queued ones are written in order once the sink is back
+     */
+    @Test
+    void testBlockedSinkDropsInsteadOfBlocking() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StringBuilder out = new StringBuilder();
+        ArbitrageSink sink = new ArbitrageSink() {
+            @Override
+            public void write(CharSequence text) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                out.append(text);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncArbitrageProcessor processor = new AsyncArbitrageProcessor(sink, 4, 2, OverflowPolicy.DROP_NEWEST, "report-test");
+        processor.reportArbitrage(record(0));
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // the writer holds record 0, 1 to 4 fill the queue
+        for (int i = 1; i <= 10; i++) {
+            processor.reportArbitrage(record(i));
+        }
+        Assertions.assertEquals(11, processor.getReported());
+        Assertions.assertEquals(6, processor.getDropped());
+
+        release.countDown();
+        processor.close(5000);
+        Assertions.assertEquals(5, processor.getWritten());
+        Assertions.assertEquals(3, processor.getBatches());
+        String text = out.toString();
+        for (int i = 0; i <= 4; i++) {
+            Assertions.assertTrue(text.contains("factor " + i + " "));
+        }
+        Assertions.assertTrue(text.indexOf("factor 1 ") < text.indexOf("factor 4 "));
+        Assertions.assertFalse(text.contains("factor 5 "));
+    }
+
+    /**
+     * a close timing out while the writer is stuck in a write leaves the sink open, the writer closes it
+     * after its last write
+     */
+    @Test
+    void testSinkNotClosedUnderWrite() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        StringBuilder out = new StringBuilder();
+        ArbitrageSink sink = new ArbitrageSink() {
+            @Override
+            public void write(CharSequence text) throws IOException {
+                Assertions.assertEquals(1, closed.getCount());
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                out.append(text);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        AsyncArbitrageProcessor processor = new AsyncArbitrageProcessor(sink, 4, 1, OverflowPolicy.DROP_NEWEST, "report-test");
+        processor.reportArbitrage(record(0));
+        Assertions.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        processor.reportArbitrage(record(1));
+
+        Assertions.assertFalse(processor.close(50));
+        Assertions.assertEquals(1, closed.getCount());
+        release.countDown();
+        Assertions.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, processor.getWritten());
+        Assertions.assertTrue(out.toString().contains("factor 1 "));
+    }
+
+    /**
+     * a file over the max size is rolled before the next batch, only the configured number of files is kept
+     */
+    @Test
+    void testRollingFileSink(@TempDir Path directory) throws Exception {
+        RollingFileSink sink = new RollingFileSink(directory, "arbitrage", 10, 3);
+        for (int i = 0; i < 5; i++) {
+            sink.write("record " + i + "\n");
+        }
+        sink.close();
+        Assertions.assertEquals("record 4\n", Files.readString(directory.resolve("arbitrage.log")));
+        Assertions.assertEquals("record 3\n", Files.readString(directory.resolve("arbitrage.1.log")));
+        Assertions.assertEquals("record 2\n", Files.readString(directory.resolve("arbitrage.2.log")));
+        Assertions.assertFalse(Files.exists(directory.resolve("arbitrage.3.log")));
+    }
+
+    private static ArbitrageRecord record(int factor) {
+        return new ArbitrageRecord(BigDecimal.valueOf(factor), List.of());
+    }
+}
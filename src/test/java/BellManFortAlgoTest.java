@@ -1,4 +1,5 @@
 import com.estar.customcode.algo.*;
+import com.estar.customcode.model.InstrumentRegistry;
 import com.estar.orderbook.model.CurrencyPair;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -19,8 +20,8 @@ public class BellManFortAlgoTest {
         CurrencyPairGraphBuilder graphBuilder = new CurrencyPairGraphBuilder(new AdjacentVertexMapBuilder());
         ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
         EdgeRelaxer edgeRelaxer = new EdgeRelaxer();
-        Map<String, CurrencyPair> currencyStringCurrencyPairMap = UtilClass.getCurrencyPair();
-        ArbitragePathFinder cycleFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder, currencyStringCurrencyPairMap);
+        ArbitragePathFinder cycleFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder,
+                InstrumentRegistry.forCurrencyPairs());
         AlgoRunner algorithmRunner = new AlgoRunner(graphBuilder, cycleFinder);
         Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
         BigDecimal[] sellBuyValueUsdGbp = new BigDecimal[2];
@@ -57,8 +58,8 @@ public class BellManFortAlgoTest {
         CurrencyPairGraphBuilder graphBuilder = new CurrencyPairGraphBuilder(new AdjacentVertexMapBuilder());
         ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
         EdgeRelaxer edgeRelaxer = new EdgeRelaxer();
-        Map<String, CurrencyPair> currencyStringCurrencyPairMap = UtilClass.getCurrencyPair();
-        ArbitragePathFinder cycleFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder, currencyStringCurrencyPairMap);
+        ArbitragePathFinder cycleFinder = new ArbitragePathFinder(edgeRelaxer, arbitrageFactorFinder,
+                InstrumentRegistry.forCurrencyPairs());
         AlgoRunner algorithmRunner = new AlgoRunner(graphBuilder, cycleFinder);
         Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
         BigDecimal[] sellBuyValueUsdGbp = new BigDecimal[2];
@@ -0,0 +1,98 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.ConversionRouteService;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.ConversionRoute;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ConversionRouteServiceTest {
+
+    /**
+     * the route rate is the best rate over every simple path between the two currencies, tick after tick
+     */
+    @Test
+    void testBestRouteOverAllPaths() {
+        Random random = new Random(16);
+        ConversionRouteService routeService = new ConversionRouteService(new ArbitrageFactorFinder());
+        Assertions.assertTrue(routeService.getRoute("CHF", "USD").isEmpty());
+        double[] values = {1, 1.08, 0.86, 0.97};
+        for (int tick = 0; tick < 100; tick++) {
+            Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
+            for (CurrencyPair currencyPair : CurrencyPair.values()) {
+                double rate = values[currencyPair.getQuoteCurrency().ordinal()] / values[currencyPair.getBaseCurrency().ordinal()];
+                instrumentData.put(currencyPair, new BigDecimal[]{
+                        BigDecimal.valueOf(rate * (1 - 0.0005 - random.nextDouble() * 0.02)),
+                        BigDecimal.valueOf(1 / rate * (1 - 0.0005 - random.nextDouble() * 0.02))});
+            }
+            BestPriceMatrix bestPriceMatrix = BestPriceMatrix.of(instrumentData, PricePrecision.defaults());
+            routeService.update(bestPriceMatrix);
+            Assertions.assertFalse(routeService.hasArbitrage());
+
+            DenseGraph graph = DenseGraph.forCurrencyPairs();
+            graph.update(bestPriceMatrix);
+            for (Currency from : Currency.values()) {
+                for (Currency to : Currency.values()) {
+                    ConversionRoute route = routeService.getRoute(from.name(), to.name()).orElseThrow();
+                    Assertions.assertEquals(from.name(), route.currencies().get(0));
+                    Assertions.assertEquals(to.name(), route.currencies().get(route.hops()));
+                    double bestWeight = bestWeight(graph, from.ordinal(), to.ordinal(), new boolean[graph.getVertexCount()]);
+                    Assertions.assertEquals(Math.exp(-bestWeight), route.rate(), 1e-12);
+                }
+            }
+        }
+    }
+
+    /**
+     * a route is built on its first query and kept until a changed rate publishes a new table
+     */
+    @Test
+    void testRouteKeptUntilRatesChange() {
+        ConversionRouteService routeService = new ConversionRouteService(new ArbitrageFactorFinder());
+        double[] values = {1, 1.08, 0.86, 0.97};
+        routeService.update(quotes(values, 0.001));
+        ConversionRoute route = routeService.getRoute("CHF", "USD").orElseThrow();
+        Assertions.assertSame(route, routeService.getRoute("CHF", "USD").orElseThrow());
+        routeService.update(quotes(values, 0.001));
+        Assertions.assertSame(route, routeService.getRoute("CHF", "USD").orElseThrow());
+
+        routeService.update(quotes(values, 0.002));
+        ConversionRoute changed = routeService.getRoute("CHF", "USD").orElseThrow();
+        Assertions.assertNotSame(route, changed);
+        Assertions.assertTrue(changed.rate() < route.rate());
+    }
+
+    private static BestPriceMatrix quotes(double[] values, double spread) {
+        Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            double rate = values[currencyPair.getQuoteCurrency().ordinal()] / values[currencyPair.getBaseCurrency().ordinal()];
+            instrumentData.put(currencyPair, new BigDecimal[]{
+                    BigDecimal.valueOf(rate * (1 - spread)), BigDecimal.valueOf(1 / rate * (1 - spread))});
+        }
+        return BestPriceMatrix.of(instrumentData, PricePrecision.defaults());
+    }
+
+    private static double bestWeight(DenseGraph graph, int from, int to, boolean[] visited) {
+        if (from == to) {
+            return 0;
+        }
+        visited[from] = true;
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = graph.getOutEdgeStart(from); i < graph.getOutEdgeEnd(from); i++) {
+            int edge = graph.getOutEdge(i);
+            if (graph.isActive(edge) && !visited[graph.getTo(edge)]) {
+                best = Math.min(best, graph.getWeight(edge) + bestWeight(graph, graph.getTo(edge), to, visited));
+            }
+        }
+        visited[from] = false;
+        return best;
+    }
+}
@@ -0,0 +1,279 @@
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.BookEpoch;
+import com.estar.customcode.processors.CurrencyOrderBook;
+import com.estar.customcode.processors.OrderBook;
+import com.estar.customcode.processors.PriorityQueueOrderBook;
+import com.estar.customcode.processors.TopOfBook;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class CurrencyOrderBookTest {
+
+    private static final CurrencyPair INSTRUMENT = CurrencyPair.EUR_USD;
+
+    /**
+     * deep inserts keep the top of book, deleting or modifying the top promotes the next level
+     */
+    @Test
+    void testTopOfBookMaintenance() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal());
+        orderBook.manageOrder(Action.INSERT, price(1, true, "1.090"));
+        orderBook.manageOrder(Action.INSERT, price(2, true, "1.085"));
+        orderBook.manageOrder(Action.INSERT, price(3, true, "1.095"));
+        orderBook.manageOrder(Action.INSERT, price(4, false, "1.080"));
+        orderBook.manageOrder(Action.INSERT, price(5, false, "1.070"));
+        Assertions.assertEquals(2, orderBook.getBestBuy().id());
+        Assertions.assertEquals(4, orderBook.getBestSell().id());
+
+        orderBook.manageOrder(Action.DELETE, price(2, true, "1.085"));
+        Assertions.assertEquals(1, orderBook.getBestBuy().id());
+
+        orderBook.manageOrder(Action.MODIFY, price(4, false, "1.060"));
+        Assertions.assertEquals(5, orderBook.getBestSell().id());
+        orderBook.manageOrder(Action.MODIFY, price(3, true, "1.081"));
+        Assertions.assertEquals(3, orderBook.getBestBuy().id());
+        Assertions.assertEquals(108100, orderBook.getBestBuyTicks());
+        Assertions.assertEquals(107000, orderBook.getBestSellTicks());
+    }
+
+    /**
+     * only updates which move the best buy or best sell report a change of the top of book
+     */
+    @Test
+    void testTopOfBookChangeReported() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal());
+        Assertions.assertTrue(orderBook.manageOrder(Action.INSERT, price(1, true, "1.090")));
+        Assertions.assertTrue(orderBook.manageOrder(Action.INSERT, price(2, true, "1.085")));
+        Assertions.assertFalse(orderBook.manageOrder(Action.INSERT, price(3, true, "1.095")));
+        Assertions.assertTrue(orderBook.manageOrder(Action.INSERT, price(4, false, "1.080")));
+        Assertions.assertFalse(orderBook.manageOrder(Action.INSERT, price(5, false, "1.070")));
+        Assertions.assertFalse(orderBook.manageOrder(Action.MODIFY, price(3, true, "1.099")));
+        Assertions.assertFalse(orderBook.manageOrder(Action.DELETE, price(5, false, "1.070")));
+        Assertions.assertTrue(orderBook.manageOrder(Action.DELETE, price(2, true, "1.085")));
+    }
+
+    /**
+     * a book with only one side returns the inverted best price of the other side
+     */
+    @Test
+    void testDefaultBestValues() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal());
+        orderBook.manageOrder(Action.INSERT, price(1, false, "1.250"));
+        Assertions.assertEquals(0, new BigDecimal("0.800").compareTo(orderBook.getBestBuy().price()));
+        Assertions.assertTrue(orderBook.getBestBuy().ask());
+        Assertions.assertEquals(80000, orderBook.getBestBuyTicks());
+    }
+
+    /**
+     * the top of book carries the -log weights of the best values, of the inverted other side while a side
+     * is empty
+     */
+    @Test
+    void testTopOfBookWeights() {
+        PricePrecision precision = PricePrecision.defaults();
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal(), precision);
+        orderBook.manageOrder(Action.INSERT, price(1, false, "1.250"));
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        Assertions.assertEquals(DenseGraph.toWeight(0.8), topOfBook.buyWeight());
+        Assertions.assertEquals(DenseGraph.toWeight(1.25), topOfBook.sellWeight());
+
+        orderBook.manageOrder(Action.INSERT, price(2, true, "1.300"));
+        orderBook.manageOrder(Action.INSERT, price(3, true, "1.260"));
+        topOfBook = orderBook.getTopOfBook();
+        Assertions.assertEquals(DenseGraph.toWeight(1.26), topOfBook.buyWeight());
+        Assertions.assertEquals(DenseGraph.toWeight(1.25), topOfBook.sellWeight());
+
+        orderBook.manageOrder(Action.DELETE, price(3, true, "1.260"));
+        Assertions.assertEquals(DenseGraph.toWeight(1.3), orderBook.getTopOfBook().buyWeight());
+    }
+
+    /**
+     * the top of book carries the best orders, another order becoming the best of the same level is
+     * published without reporting a change of the best values
+     */
+    @Test
+    void testTopOfBookPrices() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal());
+        orderBook.manageOrder(Action.INSERT, price(1, true, "1.090"));
+        orderBook.manageOrder(Action.INSERT, price(2, true, "1.090"));
+        orderBook.manageOrder(Action.INSERT, price(3, false, "1.080"));
+        TopOfBook topOfBook = orderBook.getTopOfBook();
+        Assertions.assertEquals(1, topOfBook.buy().id());
+        Assertions.assertEquals(3, topOfBook.sell().id());
+
+        Assertions.assertFalse(orderBook.manageOrder(Action.DELETE, price(1, true, "1.090")));
+        Assertions.assertEquals(2, orderBook.getTopOfBook().buy().id());
+        Assertions.assertEquals(topOfBook.buyTicks(), orderBook.getTopOfBook().buyTicks());
+    }
+
+    /**
+     * every published top of book is stamped with the next epoch shared by the books, a reader holding a top
+     * of book keeps the values of its update while the writer goes on without waiting
+     */
+    @Test
+    void testTopOfBookVersions() {
+        BookEpoch bookEpoch = new BookEpoch();
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal(), PricePrecision.defaults(), bookEpoch, true);
+        OrderBook otherBook = new CurrencyOrderBook(CurrencyPair.EUR_GBP.ordinal(), PricePrecision.defaults(), bookEpoch, true);
+        orderBook.manageOrder(Action.INSERT, price(1, true, "1.10"));
+        TopOfBook read = orderBook.getTopOfBook();
+        Assertions.assertEquals(1, read.version());
+
+        otherBook.manageOrder(Action.INSERT, new Price(2, CurrencyPair.EUR_GBP, true, 10, new BigDecimal("0.85")));
+        orderBook.manageOrder(Action.INSERT, price(3, true, "1.09"));
+        Assertions.assertEquals(110000, read.buyTicks());
+        Assertions.assertEquals(109000, orderBook.getTopOfBook().buyTicks());
+        Assertions.assertEquals(2, otherBook.getTopOfBook().version());
+        Assertions.assertEquals(3, orderBook.getTopOfBook().version());
+
+        // a deeper order publishes nothing
+        orderBook.manageOrder(Action.INSERT, price(4, true, "1.11"));
+        Assertions.assertEquals(3, orderBook.getTopOfBook().version());
+        Assertions.assertEquals(3, bookEpoch.current());
+    }
+
+    /**
+     * replays a random feed against the incremental book and the priority queue reference book and
+     * compares the top of book after every update. The reference book inverts prices with 3 decimal places
+     * so the same precision is used for the incremental book.
+     */
+    @Test
+    void testSameResultsAsPriorityQueueOrderBook() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal(), new PricePrecision(3));
+        OrderBook referenceOrderBook = new PriorityQueueOrderBook(INSTRUMENT.ordinal());
+        Random random = new Random(42);
+        List<List<Price>> liveOrders = List.of(new ArrayList<>(), new ArrayList<>());
+        List<Set<BigDecimal>> usedPrices = List.of(new HashSet<>(), new HashSet<>());
+        long id = 0;
+        for (int i = 0; i < 5000; i++) {
+            boolean ask = random.nextBoolean();
+            int side = ask ? 0 : 1;
+            List<Price> orders = liveOrders.get(side);
+            int choice = orders.size() < 2 ? 0 : random.nextInt(3);
+            Action action;
+            Price price;
+            if (choice == 0) {
+                action = Action.INSERT;
+                price = new Price(++id, INSTRUMENT, ask, random.nextInt(1, 50), uniquePrice(random, ask, usedPrices.get(side)));
+                orders.add(price);
+            } else if (choice == 1) {
+                action = Action.DELETE;
+                price = orders.remove(random.nextInt(orders.size()));
+                usedPrices.get(side).remove(price.price());
+            } else {
+                action = Action.MODIFY;
+                int index = random.nextInt(orders.size());
+                Price previous = orders.get(index);
+                usedPrices.get(side).remove(previous.price());
+                price = new Price(previous.id(), INSTRUMENT, ask, random.nextInt(1, 50), uniquePrice(random, ask, usedPrices.get(side)));
+                orders.set(index, price);
+            }
+            boolean changed = orderBook.manageOrder(action, price);
+            Assertions.assertEquals(referenceOrderBook.manageOrder(action, price), changed);
+            assertSamePrice(referenceOrderBook.getBestBuy(), orderBook.getBestBuy());
+            assertSamePrice(referenceOrderBook.getBestSell(), orderBook.getBestSell());
+        }
+    }
+
+    /**
+     * same replay with few distinct prices, so orders share price levels, and deletes which empty a side.
+     * Orders of the same price are equally good, only the best prices are compared. The reference book
+     * keeps returning no best price for a side which was emptied, the book falls back to the inverted best
+     * price of the other side like for a side which never had orders.
+     */
+    @Test
+    void testSameResultsWithTiedPricesAndEmptySides() {
+        OrderBook orderBook = new CurrencyOrderBook(INSTRUMENT.ordinal(), new PricePrecision(3));
+        OrderBook referenceOrderBook = new PriorityQueueOrderBook(INSTRUMENT.ordinal());
+        Random random = new Random(7);
+        List<List<Price>> liveOrders = List.of(new ArrayList<>(), new ArrayList<>());
+        long id = 0;
+        int emptied = 0;
+        for (int i = 0; i < 5000; i++) {
+            boolean ask = random.nextBoolean();
+            List<Price> orders = liveOrders.get(ask ? 0 : 1);
+            int choice = orders.isEmpty() ? 0 : random.nextInt(3);
+            Action action;
+            Price price;
+            if (choice == 0) {
+                action = Action.INSERT;
+                price = new Price(++id, INSTRUMENT, ask, random.nextInt(1, 50), tiedPrice(random, ask));
+                orders.add(price);
+            } else if (choice == 1) {
+                action = Action.DELETE;
+                price = orders.remove(random.nextInt(orders.size()));
+                if (orders.isEmpty()) {
+                    emptied++;
+                }
+            } else {
+                action = Action.MODIFY;
+                int index = random.nextInt(orders.size());
+                price = new Price(orders.get(index).id(), INSTRUMENT, ask, random.nextInt(1, 50), tiedPrice(random, ask));
+                orders.set(index, price);
+            }
+            orderBook.manageOrder(action, price);
+            referenceOrderBook.manageOrder(action, price);
+            Price bestBuy = liveOrders.get(0).isEmpty() ? null : referenceOrderBook.getBestBuy();
+            Price bestSell = liveOrders.get(1).isEmpty() ? null : referenceOrderBook.getBestSell();
+            assertSameLevel(bestBuy != null ? bestBuy : inverted(bestSell), orderBook.getBestBuy());
+            assertSameLevel(bestSell != null ? bestSell : inverted(bestBuy), orderBook.getBestSell());
+        }
+        Assertions.assertTrue(emptied > 10);
+    }
+
+    private static Price inverted(Price price) {
+        return price == null ? null : new Price(price.id(), INSTRUMENT, !price.ask(), price.quantity(),
+                BigDecimal.ONE.divide(price.price(), 3, RoundingMode.HALF_UP));
+    }
+
+    private static BigDecimal tiedPrice(Random random, boolean ask) {
+        return BigDecimal.valueOf(1083 + (ask ? 1 : -1) * random.nextInt(1, 4), 3);
+    }
+
+    private static void assertSameLevel(Price expected, Price actual) {
+        if (expected == null) {
+            Assertions.assertNull(actual);
+            return;
+        }
+        Assertions.assertNotNull(actual);
+        Assertions.assertEquals(expected.ask(), actual.ask());
+        Assertions.assertEquals(0, expected.price().compareTo(actual.price()));
+    }
+
+    private static BigDecimal uniquePrice(Random random, boolean ask, Set<BigDecimal> usedPrices) {
+        BigDecimal price;
+        do {
+            double offset = random.nextDouble(0.001d, 0.2d) * (ask ? 1 : -1);
+            price = BigDecimal.valueOf(1.083 + offset).setScale(3, RoundingMode.HALF_UP);
+        } while (!usedPrices.add(price));
+        return price;
+    }
+
+    private static void assertSamePrice(Price expected, Price actual) {
+        if (expected == null) {
+            Assertions.assertNull(actual);
+            return;
+        }
+        Assertions.assertNotNull(actual);
+        Assertions.assertEquals(expected.id(), actual.id());
+        Assertions.assertEquals(expected.ask(), actual.ask());
+        Assertions.assertEquals(expected.quantity(), actual.quantity());
+        Assertions.assertEquals(0, expected.price().compareTo(actual.price()));
+    }
+
+    private static Price price(long id, boolean ask, String price) {
+        return new Price(id, INSTRUMENT, ask, 10, new BigDecimal(price));
+    }
+}
@@ -0,0 +1,84 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.HotCycleDetector;
+import com.estar.customcode.algo.TriangularArbitrageEngine;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class HotCycleDetectorTest {
+
+    /**
+     * the cycles found by the full search are reported from the cache until the next full search, once they
+     * stop paying every run searches the whole graph and they are evicted after the max age
+     */
+    @Test
+    void testCachedCyclesUntilTheyStopPaying() {
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            graph.update(pair, 0.999, 0.999);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        HotCycleDetector detector = new HotCycleDetector(new TriangularArbitrageEngine(graph, 3, arbitrageFactorFinder),
+                arbitrageFactorFinder, 8, 4, 2);
+        DetectionResult result = new DetectionResult(graph);
+
+        // EUR -> USD -> GBP -> EUR and EUR -> USD -> CHF -> EUR pay
+        graph.update(CurrencyPair.EUR_USD.ordinal(), 1.01, 0.98);
+        detector.detect(graph, result);
+        int fullSearchPairs = result.size();
+        double factor = result.getFactor(CurrencyPair.EUR_USD.ordinal());
+        Assertions.assertEquals(5, fullSearchPairs);
+        Assertions.assertEquals(1, detector.getFullSearches());
+
+        for (int run = 0; run < 3; run++) {
+            detector.detect(graph, result);
+            Assertions.assertEquals(fullSearchPairs, result.size());
+            Assertions.assertEquals(factor, result.getFactor(CurrencyPair.EUR_USD.ordinal()));
+        }
+        Assertions.assertEquals(1, detector.getFullSearches());
+        Assertions.assertEquals(3, detector.getCachedRuns());
+        Assertions.assertEquals(6, detector.getHits());
+
+        // the interval is over
+        detector.detect(graph, result);
+        Assertions.assertEquals(2, detector.getFullSearches());
+
+        graph.update(CurrencyPair.EUR_USD.ordinal(), 0.999, 0.999);
+        for (int run = 0; run < 3; run++) {
+            detector.detect(graph, result);
+            Assertions.assertTrue(result.isEmpty());
+        }
+        Assertions.assertEquals(5, detector.getFullSearches());
+        Assertions.assertEquals(2, detector.getEvictions());
+        Assertions.assertEquals(6.0 / (6 + detector.getMisses()), detector.getHitRatio());
+    }
+
+    /**
+     * a cycle found by a later full search joins the cached ones
+     */
+    @Test
+    void testNewCycleFoundByFullSearch() {
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            graph.update(pair, 0.999, 0.999);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        HotCycleDetector detector = new HotCycleDetector(new TriangularArbitrageEngine(graph, 3, arbitrageFactorFinder),
+                arbitrageFactorFinder, 8, 2, 100);
+        DetectionResult result = new DetectionResult(graph);
+
+        graph.update(CurrencyPair.EUR_USD.ordinal(), 1.01, 0.98);
+        detector.detect(graph, result);
+        graph.update(CurrencyPair.GBP_CHF.ordinal(), 1.01, 0.98);
+        // answered from the cache, the GBP_CHF cycles wait for the full search
+        detector.detect(graph, result);
+        Assertions.assertFalse(result.contains(CurrencyPair.GBP_CHF.ordinal()));
+        detector.detect(graph, result);
+        Assertions.assertTrue(result.contains(CurrencyPair.GBP_CHF.ordinal()));
+        detector.detect(graph, result);
+        Assertions.assertTrue(result.contains(CurrencyPair.GBP_CHF.ordinal()));
+        Assertions.assertEquals(2, detector.getCachedRuns());
+    }
+}
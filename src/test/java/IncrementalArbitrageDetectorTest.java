@@ -0,0 +1,100 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.IncrementalArbitrageDetector;
+import com.estar.customcode.algo.SuperSourceArbitrageFinder;
+import com.estar.customcode.model.DenseGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class IncrementalArbitrageDetectorTest {
+
+    /**
+     * tick after tick the detector reports what a full run on the same prices reports, while mispriced pairs
+     * open and close real cycles between quiet ticks which only repair the potentials
+     */
+    @Test
+    void testSameResultAsFullRun() {
+        Random random = new Random(11);
+        int currencies = 20;
+        double[] values = randomValues(currencies, random);
+        // the detector consumes the changes of its graph
+        DenseGraph graph = completeGraph(currencies);
+        DenseGraph fullGraph = completeGraph(currencies);
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            double spread = 0.002 + random.nextDouble() * 0.01;
+            quote(graph, pair, values, spread, 0);
+            quote(fullGraph, pair, values, spread, 0);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        IncrementalArbitrageDetector detector = new IncrementalArbitrageDetector(arbitrageFactorFinder);
+        SuperSourceArbitrageFinder fullSearch = new SuperSourceArbitrageFinder(arbitrageFactorFinder);
+        DetectionResult result = new DetectionResult(graph);
+        DetectionResult expected = new DetectionResult(fullGraph);
+
+        int arbitrageTicks = 0;
+        int mispricedPair = 0;
+        for (int tick = 0; tick < 300; tick++) {
+            // every fifth tick the buy rate of a pair pays 1% above its fair value, the next tick quotes it fair
+            double premium = tick % 5 == 0 ? 0.01 : 0;
+            int pair = tick % 5 == 1 ? mispricedPair : random.nextInt(graph.getPairCount());
+            mispricedPair = pair;
+            double spread = 0.0005 + random.nextDouble() * 0.01;
+            quote(graph, pair, values, spread, premium);
+            quote(fullGraph, pair, values, spread, premium);
+
+            detector.detect(graph, result);
+            fullSearch.detect(fullGraph, expected);
+            assertSameResult(expected, result);
+            if (!expected.isEmpty()) {
+                arbitrageTicks++;
+            }
+        }
+        Assertions.assertTrue(arbitrageTicks > 0);
+        Assertions.assertTrue(detector.getIncrementalRuns() > 0);
+        Assertions.assertTrue(detector.getFullRuns() > 1);
+    }
+
+    private static void assertSameResult(DetectionResult expected, DetectionResult result) {
+        Assertions.assertEquals(expected.size(), result.size());
+        for (int i = 0; i < expected.size(); i++) {
+            int pair = expected.getPair(i);
+            Assertions.assertTrue(result.contains(pair));
+            Assertions.assertEquals(expected.getFactor(pair), result.getFactor(pair));
+            Assertions.assertEquals(expected.getCycleLength(pair), result.getCycleLength(pair));
+            for (int k = 0; k < expected.getCycleLength(pair); k++) {
+                Assertions.assertEquals(expected.getCycleVertex(pair, k), result.getCycleVertex(pair, k));
+            }
+        }
+    }
+
+    private static double[] randomValues(int currencies, Random random) {
+        double[] values = new double[currencies];
+        for (int currency = 0; currency < currencies; currency++) {
+            values[currency] = Math.exp(random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static void quote(DenseGraph graph, int pair, double[] values, double spread, double premium) {
+        int base = graph.getFrom(2 * pair);
+        int quote = graph.getTo(2 * pair);
+        double rate = values[quote] / values[base];
+        graph.update(pair, rate * (1 + premium), 1 / rate * (1 - spread));
+    }
+
+    private static DenseGraph completeGraph(int currencies) {
+        int pairs = currencies * (currencies - 1) / 2;
+        int[] pairBase = new int[pairs];
+        int[] pairQuote = new int[pairs];
+        int pair = 0;
+        for (int base = 0; base < currencies; base++) {
+            for (int quote = base + 1; quote < currencies; quote++) {
+                pairBase[pair] = base;
+                pairQuote[pair++] = quote;
+            }
+        }
+        return new DenseGraph(currencies, pairBase, pairQuote);
+    }
+}
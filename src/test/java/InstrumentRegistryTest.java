@@ -0,0 +1,65 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.MinPlusArbitrageEngine;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class InstrumentRegistryTest {
+
+    /**
+     * the registry of the enums has the ordinals as ids and finds a pair from both of its currencies
+     */
+    @Test
+    void testEnumIds() {
+        InstrumentRegistry instrumentRegistry = InstrumentRegistry.forCurrencyPairs();
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            int base = currencyPair.getBaseCurrency().ordinal();
+            int quote = currencyPair.getQuoteCurrency().ordinal();
+            Assertions.assertEquals(currencyPair.ordinal(), instrumentRegistry.pairId(base, quote));
+            Assertions.assertEquals(InstrumentRegistry.NO_ID, instrumentRegistry.pairId(quote, base));
+            Assertions.assertEquals(currencyPair.ordinal(), instrumentRegistry.pairBetween(quote, base));
+            Assertions.assertEquals(currencyPair.name(), instrumentRegistry.pairSymbol(currencyPair.ordinal()));
+        }
+        Assertions.assertEquals(Currency.GBP.ordinal(), instrumentRegistry.currencyId("GBP"));
+    }
+
+    /**
+     * currencies and pairs beyond the enums are added at runtime, the graph of the registry finds a cycle
+     * through them
+     */
+    @Test
+    void testAddedInstruments() {
+        InstrumentRegistry instrumentRegistry = InstrumentRegistry.forCurrencyPairs();
+        int pairs = instrumentRegistry.getPairCount();
+        for (int currency = 0; currency < 40; currency++) {
+            instrumentRegistry.addPair("USD", "C" + currency);
+        }
+        int jpy = instrumentRegistry.addPair("USD", "JPY");
+        Assertions.assertEquals(jpy, instrumentRegistry.addPair("USD", "JPY"));
+        int eurJpy = instrumentRegistry.addPair("EUR", "JPY");
+        Assertions.assertEquals(pairs + 42, instrumentRegistry.getPairCount());
+        Assertions.assertEquals(Currency.values().length + 41, instrumentRegistry.getCurrencyCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> instrumentRegistry.addPair("JPY", "USD"));
+
+        DenseGraph graph = instrumentRegistry.toGraph();
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            graph.update(pair, 0.999, 0.999);
+        }
+        // EUR -> USD -> JPY -> EUR pays
+        graph.update(jpy, 150, 1 / 150.0);
+        graph.update(eurJpy, 130, 1 / 140.0);
+        DetectionResult result = new DetectionResult(graph);
+        new MinPlusArbitrageEngine(graph, new ArbitrageFactorFinder()).detect(graph, result);
+        Assertions.assertFalse(result.isEmpty());
+        int cycleLength = result.getCycleLength(result.getPair(0));
+        for (int i = 0; i < cycleLength; i++) {
+            int currency = result.getCycleVertex(result.getPair(0), i);
+            Assertions.assertTrue(currency == Currency.EUR.ordinal() || currency == Currency.USD.ordinal()
+                    || currency == instrumentRegistry.currencyId("JPY"));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import com.estar.customcode.model.ConversionRoute;
+import com.estar.customcode.model.InstrumentRegistry;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.ManageOrderBook;
+import com.estar.customcode.processors.PipelineConfig;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ManageOrderBookTest {
+    private static final int CURRENCIES = 12;
+    private static final double SPREAD = 0.999;
+
+    private long priceId;
+
+    /**
+     * a universe with more currencies and pairs than the enums runs through the listener, the route between
+     * the two currencies furthest apart goes over the pairs of the registry
+     */
+    @Test
+    void testRoutesOfRegistryUniverse(@TempDir Path directory) throws Exception {
+        InstrumentRegistry instrumentRegistry = universe();
+        Assertions.assertTrue(instrumentRegistry.getCurrencyCount() > Currency.values().length);
+        Assertions.assertTrue(instrumentRegistry.getPairCount() > CurrencyPair.values().length);
+
+        ManageOrderBook manageOrderBook = new ManageOrderBook(instrumentRegistry, PricePrecision.defaults(), config(directory));
+        for (int pair = 0; pair < instrumentRegistry.getPairCount(); pair++) {
+            quote(manageOrderBook, instrumentRegistry, pair, 1);
+        }
+        manageOrderBook.close();
+
+        ConversionRoute route = manageOrderBook.getBestRoute("C0", "C11").orElseThrow();
+        Assertions.assertEquals("C0", route.currencies().get(0));
+        Assertions.assertEquals("C11", route.currencies().get(route.hops()));
+        Assertions.assertEquals(6, route.hops());
+        Assertions.assertEquals(value(11) / value(0) * Math.pow(SPREAD, 6), route.rate(), 1e-3);
+        Assertions.assertEquals("", report(directory));
+    }
+
+    /**
+     * a mispriced pair between currencies past the enums is reported with the codes and symbols of the
+     * registry
+     */
+    @Test
+    void testArbitrageOfRegistryUniverse(@TempDir Path directory) throws Exception {
+        InstrumentRegistry instrumentRegistry = universe();
+        ManageOrderBook manageOrderBook = new ManageOrderBook(instrumentRegistry, PricePrecision.defaults(), config(directory));
+        int mispriced = instrumentRegistry.pairId(instrumentRegistry.currencyId("C9"), instrumentRegistry.currencyId("C11"));
+        for (int pair = 0; pair < instrumentRegistry.getPairCount(); pair++) {
+            quote(manageOrderBook, instrumentRegistry, pair, pair == mispriced ? 1.01 : 1);
+        }
+        manageOrderBook.close();
+
+        String report = report(directory);
+        Assertions.assertTrue(report.contains("Arbitrage OPENED"), report);
+        Assertions.assertTrue(report.contains("C9_C11 - Best Bid"), report);
+        Assertions.assertTrue(report.contains("C10_C11 - Best Bid"), report);
+        Assertions.assertTrue(report.contains("C9_C10 - Best Bid"), report);
+    }
+
+    /**
+     * currencies C0 to C11 with a pair between every two currencies at most two apart
+     */
+    private static InstrumentRegistry universe() {
+        InstrumentRegistry instrumentRegistry = new InstrumentRegistry();
+        for (int base = 0; base < CURRENCIES; base++) {
+            for (int quote = base + 1; quote < CURRENCIES && quote <= base + 2; quote++) {
+                instrumentRegistry.addPair("C" + base, "C" + quote);
+            }
+        }
+        return instrumentRegistry;
+    }
+
+    private static double value(int currency) {
+        return 1 + currency * 0.1;
+    }
+
+    private static PipelineConfig config(Path directory) {
+        return PipelineConfig.builder().reportFile(directory.resolve("arbitrage.log").toString()).build();
+    }
+
+    /**
+     * quotes the pair a little off its fair rate in both directions, the fair rate scaled by the mispricing
+     */
+    private void quote(ManageOrderBook manageOrderBook, InstrumentRegistry instrumentRegistry, int pair, double mispricing) {
+        double rate = value(instrumentRegistry.getQuote(pair)) / value(instrumentRegistry.getBase(pair)) * mispricing;
+        manageOrderBook.handlePriceUpdate(Action.INSERT, new Price(++priceId, pair, true, 100, price(rate * SPREAD)));
+        manageOrderBook.handlePriceUpdate(Action.INSERT, new Price(++priceId, pair, false, 100, price(SPREAD / rate)));
+    }
+
+    private static BigDecimal price(double rate) {
+        return BigDecimal.valueOf(rate).setScale(PricePrecision.DEFAULT_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private static String report(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            StringBuilder report = new StringBuilder();
+            for (Path file : files.sorted().collect(Collectors.toList())) {
+                report.append(Files.readString(file));
+            }
+            return report.toString();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.MinPlusArbitrageEngine;
+import com.estar.customcode.algo.TriangularArbitrageEngine;
+import com.estar.customcode.model.DenseGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class MinPlusArbitrageEngineTest {
+
+    /**
+     * the matrix updated with the changed pairs tick after tick is the one computed from scratch, on more
+     * currencies than a block holds
+     */
+    @Test
+    void testIncrementalSameAsFullRun() {
+        Random random = new Random(15);
+        int currencies = 40;
+        double[] values = randomValues(currencies, random);
+        DenseGraph graph = completeGraph(currencies);
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            quote(graph, pair, values, 0.002 + random.nextDouble() * 0.01);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        MinPlusArbitrageEngine engine = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        DetectionResult result = new DetectionResult(graph);
+        for (int tick = 0; tick < 200; tick++) {
+            for (int i = 0; i < 3; i++) {
+                quote(graph, random.nextInt(graph.getPairCount()), values, 0.0005 + random.nextDouble() * 0.01);
+            }
+            engine.detect(graph, result);
+            Assertions.assertTrue(result.isEmpty());
+
+            MinPlusArbitrageEngine fullRun = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+            fullRun.detect(graph, new DetectionResult(graph));
+            for (int from = 0; from < currencies; from++) {
+                for (int to = 0; to < currencies; to++) {
+                    Assertions.assertEquals(fullRun.getBestRate(from, to), engine.getBestRate(from, to), 1e-9);
+                }
+            }
+        }
+        Assertions.assertTrue(engine.getIncrementalRuns() > 0);
+    }
+
+    /**
+     * under a random walk of the currencies with pairs going up and down, removed, quoted again and now and
+     * then mispriced for a tick, only the first run computes the whole matrix. The arbitrage is found exactly
+     * when a run from scratch finds it and without arbitrage the rates are the ones from scratch.
+     */
+    @Test
+    void testRandomWalkStaysIncremental() {
+        Random random = new Random(115);
+        int currencies = 36;
+        double[] values = randomValues(currencies, random);
+        DenseGraph graph = completeGraph(currencies);
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            quote(graph, pair, values, 0.002);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        MinPlusArbitrageEngine engine = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        DetectionResult result = new DetectionResult(graph);
+        int arbitrageRuns = 0;
+        for (int tick = 0; tick < 300; tick++) {
+            for (int i = 0; i < 4; i++) {
+                int currency = random.nextInt(currencies);
+                values[currency] *= Math.exp(random.nextGaussian() * 0.001);
+                int pair = random.nextInt(graph.getPairCount());
+                double draw = random.nextDouble();
+                if (draw < 0.05) {
+                    graph.remove(pair);
+                } else if (draw < 0.08) {
+                    // the buy side 1.5% too high
+                    int base = graph.getFrom(2 * pair);
+                    int quote = graph.getTo(2 * pair);
+                    double rate = values[quote] / values[base];
+                    graph.update(pair, rate * 1.015, 1 / rate * (1 - 0.002));
+                } else {
+                    quote(graph, pair, values, 0.002);
+                }
+            }
+            engine.detect(graph, result);
+
+            MinPlusArbitrageEngine fullRun = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+            DetectionResult expected = new DetectionResult(graph);
+            fullRun.detect(graph, expected);
+            Assertions.assertEquals(expected.isEmpty(), result.isEmpty());
+            if (result.isEmpty()) {
+                for (int from = 0; from < currencies; from++) {
+                    for (int to = 0; to < currencies; to++) {
+                        Assertions.assertEquals(fullRun.getBestRate(from, to), engine.getBestRate(from, to), 1e-9);
+                    }
+                }
+            } else {
+                arbitrageRuns++;
+                for (int i = 0; i < result.size(); i++) {
+                    Assertions.assertTrue(result.getFactor(result.getPair(i)) > 0);
+                }
+            }
+        }
+        Assertions.assertTrue(arbitrageRuns > 0);
+        Assertions.assertEquals(1, engine.getFullRuns());
+        Assertions.assertEquals(299, engine.getIncrementalRuns());
+    }
+
+    /**
+     * an arbitrage is found exactly when one of all the cycles of the four currencies pays, and every
+     * reported pair pays
+     */
+    @Test
+    void testSameArbitrageAsAllCycles() {
+        Random random = new Random(51);
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        // both detectors consume the changes of their graph
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        DenseGraph cycleGraph = DenseGraph.forCurrencyPairs();
+        MinPlusArbitrageEngine engine = new MinPlusArbitrageEngine(graph, arbitrageFactorFinder);
+        TriangularArbitrageEngine allCycles = new TriangularArbitrageEngine(cycleGraph, 4, arbitrageFactorFinder);
+        DetectionResult result = new DetectionResult(graph);
+        DetectionResult expected = new DetectionResult(cycleGraph);
+        for (int tick = 0; tick < 500; tick++) {
+            int pair = random.nextInt(graph.getPairCount());
+            double rate = Math.exp(random.nextGaussian() * 0.2);
+            double buyRate = rate * (1 - random.nextDouble() * 0.01);
+            double sellRate = 1 / rate * (1 - random.nextDouble() * 0.01);
+            graph.update(pair, buyRate, sellRate);
+            cycleGraph.update(pair, buyRate, sellRate);
+            engine.detect(graph, result);
+            allCycles.detect(cycleGraph, expected);
+            Assertions.assertEquals(expected.isEmpty(), result.isEmpty());
+            for (int i = 0; i < result.size(); i++) {
+                Assertions.assertTrue(result.getFactor(result.getPair(i)) > 0);
+            }
+        }
+    }
+
+    /**
+     * a cycle between currencies of different blocks is reported, also when other entries of the matrix
+     * go negative through it
+     */
+    @Test
+    void testCycleAcrossBlocks() {
+        Random random = new Random(32);
+        int currencies = 45;
+        double[] values = randomValues(currencies, random);
+        DenseGraph graph = completeGraph(currencies);
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            quote(graph, pair, values, 0.002);
+        }
+        // 3 -> 40 -> 41 -> 3 pays about 1%
+        int toward = graph.edge(3, 40);
+        int pair = DenseGraph.pairOf(toward);
+        double rate = values[40] / values[3] * 1.01;
+        if (toward == 2 * pair) {
+            graph.update(pair, rate, 1 / rate * 0.98);
+        } else {
+            graph.update(pair, 1 / rate * 0.98, rate);
+        }
+        MinPlusArbitrageEngine engine = new MinPlusArbitrageEngine(graph, new ArbitrageFactorFinder());
+        DetectionResult result = new DetectionResult(graph);
+        engine.detect(graph, result);
+        Assertions.assertFalse(result.isEmpty());
+        for (int i = 0; i < result.size(); i++) {
+            Assertions.assertTrue(result.getFactor(result.getPair(i)) > 0);
+        }
+    }
+
+    private static double[] randomValues(int currencies, Random random) {
+        double[] values = new double[currencies];
+        for (int currency = 0; currency < currencies; currency++) {
+            values[currency] = Math.exp(random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static void quote(DenseGraph graph, int pair, double[] values, double spread) {
+        int base = graph.getFrom(2 * pair);
+        int quote = graph.getTo(2 * pair);
+        double rate = values[quote] / values[base];
+        graph.update(pair, rate * (1 - spread), 1 / rate * (1 - spread));
+    }
+
+    private static DenseGraph completeGraph(int currencies) {
+        int pairs = currencies * (currencies - 1) / 2;
+        int[] pairBase = new int[pairs];
+        int[] pairQuote = new int[pairs];
+        int pair = 0;
+        for (int base = 0; base < currencies; base++) {
+            for (int quote = base + 1; quote < currencies; quote++) {
+                pairBase[pair] = base;
+                pairQuote[pair++] = quote;
+            }
+        }
+        return new DenseGraph(currencies, pairBase, pairQuote);
+    }
+}
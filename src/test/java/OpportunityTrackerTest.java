@@ -0,0 +1,116 @@
+import com.estar.arbitrage.ArbitrageRecord;
+import com.estar.arbitrage.ArbitrageRecord.Event;
+import com.estar.arbitrage.OpportunityTracker;
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.HotCycleDetector;
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.algo.TriangularArbitrageEngine;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+public class OpportunityTrackerTest {
+
+    /**
+     * a cycle is reported when it opens, when its factor moved beyond the tolerance and when it is gone, any
+     * rotation of the cycle is the same opportunity
+     */
+    @Test
+    void testLifecycleEvents() {
+        TopCycles topCycles = new TopCycles(4, 0, 4);
+        OpportunityTracker tracker = new OpportunityTracker(0.0001, 4, 4);
+        List<ArbitrageRecord> reported = new ArrayList<>();
+
+        topCycles.offer(new int[]{0, 1, 2}, 3, 0.01);
+        track(tracker, topCycles, 100, reported);
+        Assertions.assertEquals(1, reported.size());
+        Assertions.assertEquals(Event.OPENED, reported.get(0).event());
+
+        topCycles.clear();
+        topCycles.offer(new int[]{1, 2, 0}, 3, 0.01005);
+        track(tracker, topCycles, 200, reported);
+        Assertions.assertEquals(1, reported.size());
+        Assertions.assertEquals(1, tracker.getSuppressed());
+
+        topCycles.clear();
+        topCycles.offer(new int[]{2, 0, 1}, 3, 0.02);
+        topCycles.offer(new int[]{0, 1, 3}, 3, 0.005);
+        track(tracker, topCycles, 300, reported);
+        Assertions.assertEquals(3, reported.size());
+        Assertions.assertEquals(Event.UPDATED, reported.get(1).event());
+        Assertions.assertEquals(200, reported.get(1).openNanos());
+        Assertions.assertEquals(Event.OPENED, reported.get(2).event());
+        Assertions.assertEquals(2, tracker.getOpenOpportunities());
+
+        topCycles.clear();
+        topCycles.offer(new int[]{0, 1, 3}, 3, 0.005);
+        track(tracker, topCycles, 400, reported);
+        topCycles.clear();
+        track(tracker, topCycles, 500, reported);
+        Assertions.assertEquals(5, reported.size());
+        ArbitrageRecord closed = reported.get(3);
+        Assertions.assertEquals(Event.CLOSED, closed.event());
+        Assertions.assertEquals(300, closed.openNanos());
+        Assertions.assertEquals(ArbitrageFactorFinder.toBigDecimal(0.02), closed.peakFactor());
+        Assertions.assertEquals(Event.CLOSED, reported.get(4).event());
+        Assertions.assertEquals(200, reported.get(4).openNanos());
+        Assertions.assertEquals(0, tracker.getOpenOpportunities());
+        Assertions.assertEquals(2, tracker.getOpened());
+        Assertions.assertEquals(1, tracker.getUpdated());
+        Assertions.assertEquals(2, tracker.getClosed());
+    }
+
+    /**
+     * with hot cycles and a cache too small for the open opportunities the runs answered from the cache see
+     * only one of them, the other one stays open until a full search no longer finds it
+     */
+    @Test
+    void testCachedRunsKeepOpportunitiesOpen() {
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        for (int pair = 0; pair < graph.getPairCount(); pair++) {
+            graph.update(pair, 0.999, 0.999);
+        }
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        HotCycleDetector detector = new HotCycleDetector(new TriangularArbitrageEngine(graph, 3, arbitrageFactorFinder),
+                arbitrageFactorFinder, 1, 4, 100);
+        DetectionResult result = new DetectionResult(graph);
+        TopCycles topCycles = new TopCycles(4, 0, graph.getVertexCount());
+        result.setTopCycles(topCycles);
+        OpportunityTracker tracker = new OpportunityTracker(0.0001, graph.getVertexCount(), 4);
+        List<ArbitrageRecord> reported = new ArrayList<>();
+
+        // EUR -> USD -> GBP -> EUR and EUR -> USD -> CHF -> EUR pay
+        graph.update(CurrencyPair.EUR_USD.ordinal(), 1.01, 0.98);
+        for (int run = 1; run <= 8; run++) {
+            detector.detect(graph, result);
+            tracker.track(topCycles, run * 100L, record(topCycles), reported::add, !detector.isLastRunCached());
+        }
+        Assertions.assertEquals(6, detector.getCachedRuns());
+        Assertions.assertEquals(2, reported.size());
+        reported.forEach(record -> Assertions.assertEquals(Event.OPENED, record.event()));
+        Assertions.assertEquals(2, tracker.getOpenOpportunities());
+
+        graph.update(CurrencyPair.EUR_USD.ordinal(), 0.999, 0.999);
+        detector.detect(graph, result);
+        Assertions.assertFalse(detector.isLastRunCached());
+        tracker.track(topCycles, 900, record(topCycles), reported::add, !detector.isLastRunCached());
+        Assertions.assertEquals(4, reported.size());
+        Assertions.assertEquals(Event.CLOSED, reported.get(2).event());
+        Assertions.assertEquals(Event.CLOSED, reported.get(3).event());
+        Assertions.assertEquals(0, tracker.getOpenOpportunities());
+    }
+
+    private static void track(OpportunityTracker tracker, TopCycles topCycles, long nowNanos, List<ArbitrageRecord> reported) {
+        tracker.track(topCycles, nowNanos, record(topCycles), reported::add);
+    }
+
+    private static IntFunction<ArbitrageRecord> record(TopCycles topCycles) {
+        return rank -> new ArbitrageRecord(ArbitrageFactorFinder.toBigDecimal(topCycles.getFactor(rank)), List.<ArbitrageRecord.Element>of());
+    }
+}
@@ -0,0 +1,68 @@
+import com.estar.customcode.collections.LongIntHashIndex;
+import com.estar.customcode.processors.CurrencyOrderBook;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the retained heap per live order of the former {@code ConcurrentHashMap<Long, Price>} order index
+ * with the {@link LongIntHashIndex} plus a slot array holding the price, and with the whole
+ * {@link CurrencyOrderBook} (id index, slot pool and sorted price levels). The {@link Price} objects are
+ * created up front and are not part of the measured memory.
+ * <p>
+ * Not a unit test, run the main method with a fixed heap e.g. {@code -Xms512m -Xmx512m}.
+ */
+public class OrderBookMemoryComparison {
+    private static final int ORDERS = 200_000;
+
+    public static void main(String[] args) {
+        Price[] prices = new Price[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            prices[i] = new Price(i + 1, CurrencyPair.EUR_USD, i % 2 == 0, 10, BigDecimal.valueOf(100_000 + i, 5));
+        }
+
+        long before = usedMemory();
+        Map<Long, Price> buyOrderBook = new ConcurrentHashMap<>();
+        Map<Long, Price> sellOrderBook = new ConcurrentHashMap<>();
+        for (Price price : prices) {
+            (price.ask() ? buyOrderBook : sellOrderBook).put(price.id(), price);
+        }
+        long mapBytes = usedMemory() - before;
+
+        before = usedMemory();
+        LongIntHashIndex buyIndex = new LongIntHashIndex(16);
+        LongIntHashIndex sellIndex = new LongIntHashIndex(16);
+        Price[] slots = new Price[ORDERS];
+        for (int i = 0; i < ORDERS; i++) {
+            (prices[i].ask() ? buyIndex : sellIndex).put(prices[i].id(), i);
+            slots[i] = prices[i];
+        }
+        long indexBytes = usedMemory() - before;
+
+        before = usedMemory();
+        CurrencyOrderBook orderBook = new CurrencyOrderBook(CurrencyPair.EUR_USD.ordinal());
+        for (Price price : prices) {
+            orderBook.manageOrder(Action.INSERT, price);
+        }
+        long bookBytes = usedMemory() - before;
+
+        System.out.printf("ConcurrentHashMap<Long, Price> index: %.1f bytes per order%n", (double) mapBytes / ORDERS);
+        System.out.printf("LongIntHashIndex with price slot: %.1f bytes per order%n", (double) indexBytes / ORDERS);
+        System.out.printf("CurrencyOrderBook (index, slots, levels): %.1f bytes per order%n", (double) bookBytes / ORDERS);
+        // keep the structures reachable until all measurements are taken
+        System.out.println(buyOrderBook.size() + sellOrderBook.size() + buyIndex.size() + sellIndex.size()
+                + slots.length + " " + orderBook.getBestBuyTicks());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,115 @@
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.BookEpoch;
+import com.estar.customcode.processors.CurrencyOrderBook;
+import com.estar.customcode.processors.OrderBook;
+import com.estar.customcode.processors.OrderBookPipeline;
+import com.estar.customcode.processors.PipelineConfig;
+import com.estar.customcode.processors.PipelineConfig.IngestionMode;
+import com.estar.customcode.processors.TopOfBook;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class OrderBookPipelineTest {
+
+    /**
+     * every currency pair is updated by the one shard it is routed to, and the books end up the same as
+     * with the executor lanes
+     */
+    @Test
+    void testShardedSameAsExecutor() {
+        List<Action> actions = new ArrayList<>();
+        List<Price> prices = new ArrayList<>();
+        feed(actions, prices);
+
+        Map<CurrencyPair, Set<String>> writers = new ConcurrentHashMap<>();
+        PipelineConfig sharded = PipelineConfig.builder().ingestionMode(IngestionMode.SHARDED).shards(4)
+                .conflateDetection(false).build();
+        Map<CurrencyPair, OrderBook> shardedBooks = books();
+        OrderBookPipeline pipeline = new OrderBookPipeline(sharded, (action, price) -> {
+            writers.computeIfAbsent(CurrencyPair.values()[price.instrument()], currencyPair -> ConcurrentHashMap.newKeySet())
+                    .add(Thread.currentThread().getName());
+            return shardedBooks.get(CurrencyPair.values()[price.instrument()]).manageOrder(action, price);
+        }, () -> {
+        });
+        for (int i = 0; i < actions.size(); i++) {
+            pipeline.submit(actions.get(i), prices.get(i));
+        }
+        pipeline.close();
+
+        Set<Integer> shards = new HashSet<>();
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            Assertions.assertEquals(Set.of("book-shard-" + pipeline.shard(currencyPair.ordinal())), writers.get(currencyPair));
+            shards.add(pipeline.shard(currencyPair.ordinal()));
+        }
+        Assertions.assertEquals(4, shards.size());
+
+        Map<CurrencyPair, OrderBook> executorBooks = books();
+        OrderBookPipeline executorPipeline = new OrderBookPipeline(PipelineConfig.builder().bookUpdateThreads(2)
+                .conflateDetection(false).build(),
+                (action, price) -> executorBooks.get(CurrencyPair.values()[price.instrument()]).manageOrder(action, price), () -> {
+        });
+        for (int i = 0; i < actions.size(); i++) {
+            executorPipeline.submit(actions.get(i), prices.get(i));
+        }
+        executorPipeline.close();
+
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            // the versions depend on how the books of different threads interleave
+            Assertions.assertEquals(values(executorBooks.get(currencyPair).getTopOfBook()),
+                    values(shardedBooks.get(currencyPair).getTopOfBook()));
+        }
+        Assertions.assertEquals(executorPipeline.getProcessedEvents(), pipeline.getProcessedEvents());
+        Assertions.assertEquals(executorPipeline.getFilteredEvents(), pipeline.getFilteredEvents());
+    }
+
+    private static TopOfBook values(TopOfBook topOfBook) {
+        return new TopOfBook(topOfBook.buyTicks(), topOfBook.sellTicks(), topOfBook.buyWeight(), topOfBook.sellWeight(),
+                topOfBook.buy(), topOfBook.sell(), 0);
+    }
+
+    private static Map<CurrencyPair, OrderBook> books() {
+        BookEpoch bookEpoch = new BookEpoch();
+        Map<CurrencyPair, OrderBook> books = new EnumMap<>(CurrencyPair.class);
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            books.put(currencyPair, new CurrencyOrderBook(currencyPair.ordinal(), PricePrecision.defaults(), bookEpoch, true));
+        }
+        return books;
+    }
+
+    private static void feed(List<Action> actions, List<Price> prices) {
+        Random random = new Random(6);
+        Map<CurrencyPair, List<Price>> live = new EnumMap<>(CurrencyPair.class);
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            live.put(currencyPair, new ArrayList<>());
+        }
+        long id = 0;
+        for (int i = 0; i < 5000; i++) {
+            CurrencyPair currencyPair = CurrencyPair.values()[random.nextInt(CurrencyPair.values().length)];
+            List<Price> orders = live.get(currencyPair);
+            boolean ask = random.nextBoolean();
+            BigDecimal rate = BigDecimal.valueOf(100 + (ask ? 1 : -1) * random.nextInt(1, 20), 2);
+            if (orders.size() < 4 || random.nextBoolean()) {
+                Price price = new Price(++id, currencyPair, ask, random.nextInt(1, 50), rate);
+                orders.add(price);
+                actions.add(Action.INSERT);
+                prices.add(price);
+            } else {
+                actions.add(Action.DELETE);
+                prices.add(orders.remove(random.nextInt(orders.size())));
+            }
+        }
+    }
+}
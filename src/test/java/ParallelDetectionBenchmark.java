@@ -0,0 +1,100 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.ArbitragePathFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.EdgeRelaxer;
+import com.estar.customcode.algo.ParallelArbitragePathFinder;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the serial per currency search of {@link ArbitragePathFinder} with
+ * {@link ParallelArbitragePathFinder} on complete graphs of 20, 50 and 150 currencies. The rates are
+ * consistent apart from one triangle with an arbitrage so both searches also have a cycle to report, the
+ * results are checked to be the same pairs, factors and cycles and not to be empty.
+ * <p>
+ * Not a unit test, run the main method on a machine with several cores. The fork/join pool uses all
+ * available processors unless a parallelism is given as first argument.
+ */
+public class ParallelDetectionBenchmark {
+    private static final int[] CURRENCIES = {20, 50, 150};
+
+    public static void main(String[] args) {
+        int parallelism = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        ArbitragePathFinder serialFinder = new ArbitragePathFinder(new EdgeRelaxer(), new ArbitrageFactorFinder(),
+                InstrumentRegistry.forCurrencyPairs());
+        ParallelArbitragePathFinder parallelFinder = new ParallelArbitragePathFinder(serialFinder, forkJoinPool, 1);
+        System.out.println("parallelism " + parallelism);
+        for (int currencies : CURRENCIES) {
+            DenseGraph graph = completeGraph(currencies, new Random(currencies));
+            DetectionResult serialResult = new DetectionResult(graph);
+            DetectionResult parallelResult = new DetectionResult(graph);
+            int runs = Math.max(3, 200_000_000 / (currencies * currencies * graph.getEdgeCount()));
+
+            double serialMs = measure(() -> serialFinder.detect(graph, serialResult), runs);
+            double parallelMs = measure(() -> parallelFinder.detect(graph, parallelResult), runs);
+            if (serialResult.isEmpty() || !sameResult(serialResult, parallelResult)) {
+                throw new IllegalStateException("Missing or different results for " + currencies + " currencies");
+            }
+            System.out.printf("%3d currencies %6d edges: serial %9.3f ms, parallel %9.3f ms, speedup %.2f%n",
+                    currencies, graph.getEdgeCount(), serialMs, parallelMs, serialMs / parallelMs);
+        }
+        forkJoinPool.shutdown();
+    }
+
+    private static boolean sameResult(DetectionResult result, DetectionResult other) {
+        if (result.size() != other.size()) {
+            return false;
+        }
+        for (int i = 0; i < result.size(); i++) {
+            int pair = result.getPair(i);
+            if (pair != other.getPair(i) || result.getFactor(pair) != other.getFactor(pair)
+                    || result.getCycleLength(pair) != other.getCycleLength(pair)) {
+                return false;
+            }
+            for (int k = 0; k < result.getCycleLength(pair); k++) {
+                if (result.getCycleVertex(pair, k) != other.getCycleVertex(pair, k)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static DenseGraph completeGraph(int currencies, Random random) {
+        int pairs = currencies * (currencies - 1) / 2;
+        int[] pairBase = new int[pairs];
+        int[] pairQuote = new int[pairs];
+        int pair = 0;
+        for (int base = 0; base < currencies; base++) {
+            for (int quote = base + 1; quote < currencies; quote++) {
+                pairBase[pair] = base;
+                pairQuote[pair++] = quote;
+            }
+        }
+        DenseGraph graph = new DenseGraph(currencies, pairBase, pairQuote);
+        double[] values = new double[currencies];
+        for (int currency = 0; currency < currencies; currency++) {
+            values[currency] = Math.exp(random.nextGaussian());
+        }
+        for (pair = 0; pair < pairs; pair++) {
+            double rate = values[pairQuote[pair]] / values[pairBase[pair]];
+            graph.update(pair, rate * 0.9995, 1 / rate * 0.9995);
+        }
+        // 0 -> 1 -> 2 -> 0 pays about 1 percent
+        graph.update(0, values[1] / values[0] * 1.01, values[0] / values[1] * 0.9995);
+        return graph;
+    }
+
+    private static double measure(Runnable detection, int runs) {
+        detection.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            detection.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+}
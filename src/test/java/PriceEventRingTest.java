@@ -0,0 +1,95 @@
+import com.estar.customcode.processors.PriceEventRing;
+import com.estar.customcode.processors.WaitStrategy;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PriceEventRingTest {
+
+    /**
+     * many more events than slots arrive in order, close returns once all of them are processed
+     */
+    @Test
+    void testWrapAroundAndDrainOnClose() {
+        List<Long> ids = new ArrayList<>();
+        PriceEventRing ring = new PriceEventRing(4, WaitStrategy.YIELD, (action, price, endOfBatch) -> ids.add(price.id()), "ring-test");
+        for (int i = 0; i < 1000; i++) {
+            ring.publish(Action.INSERT, price(i));
+        }
+        ring.close();
+        Assertions.assertEquals(1000, ids.size());
+        for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(i, ids.get(i));
+        }
+        Assertions.assertEquals(0, ring.occupancy());
+        Assertions.assertThrows(IllegalStateException.class, () -> ring.publish(Action.INSERT, price(1000)));
+    }
+
+    /**
+     * a full ring holds the producer back until the consumer frees a slot
+     */
+    @Test
+    void testFullRingBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PriceEventRing ring = new PriceEventRing(4, WaitStrategy.PARK, (action, price, endOfBatch) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "ring-test");
+        for (int i = 0; i < 4; i++) {
+            ring.publish(Action.INSERT, price(i));
+        }
+        Assertions.assertEquals(4, ring.occupancy());
+        Thread producer = new Thread(() -> ring.publish(Action.INSERT, price(4)));
+        producer.start();
+        producer.join(100);
+        Assertions.assertTrue(producer.isAlive());
+        Assertions.assertEquals(4, ring.occupancy());
+
+        release.countDown();
+        producer.join(5000);
+        Assertions.assertFalse(producer.isAlive());
+        ring.close(5000);
+        Assertions.assertEquals(0, ring.occupancy());
+    }
+
+    /**
+     * a runtime exception loses only its event, an error stops the consumer and a producer waiting on the
+     * full ring fails instead of waiting forever
+     */
+    @Test
+    void testFailingConsumer() throws Exception {
+        CountDownLatch handled = new CountDownLatch(1);
+        PriceEventRing ring = new PriceEventRing(2, WaitStrategy.PARK, (action, price, endOfBatch) -> {
+            if (price == null) {
+                throw new IllegalArgumentException("no price");
+            }
+            if (price.id() == 1) {
+                handled.countDown();
+                throw new AssertionError("consumer down");
+            }
+        }, "ring-test");
+        ring.publish(Action.DELETE, null);
+        ring.publish(Action.INSERT, price(1));
+        Assertions.assertTrue(handled.await(5, TimeUnit.SECONDS));
+        Assertions.assertThrows(IllegalStateException.class, () -> {
+            for (int i = 2; i < 10; i++) {
+                ring.publish(Action.INSERT, price(i));
+            }
+        });
+    }
+
+    private static Price price(long id) {
+        return new Price(id, CurrencyPair.EUR_USD, true, 10, new BigDecimal("1.1"));
+    }
+}
@@ -0,0 +1,98 @@
+import com.estar.customcode.journal.PriceJournal;
+import com.estar.customcode.journal.PriceJournalReader;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+public class PriceJournalTest {
+
+    /**
+     * the records are read back in order over the rolled segments, a new journal continues after the
+     * existing segments
+     */
+    @Test
+    void testAppendAndReadAcrossSegments(@TempDir Path directory) throws Exception {
+        Action[] actions = Action.values();
+        CurrencyPair[] currencyPairs = CurrencyPair.values();
+        // header and 4 records per segment
+        try (PriceJournal journal = new PriceJournal(directory, PriceJournal.HEADER_SIZE + 4 * PriceJournal.RECORD_SIZE)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(actions[i % actions.length], price(i, currencyPairs[i % currencyPairs.length]), 1_000 + i);
+            }
+            Assertions.assertEquals(3, journal.getSegments());
+        }
+        try (PriceJournal journal = new PriceJournal(directory, 1024)) {
+            journal.append(Action.DELETE, price(10, CurrencyPair.EUR_USD));
+        }
+
+        PriceJournalReader reader = new PriceJournalReader(directory);
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(1_000 + i, reader.getTimestampNanos());
+            Assertions.assertEquals(actions[i % actions.length], reader.getAction());
+            Price price = price(i, currencyPairs[i % currencyPairs.length]);
+            Assertions.assertEquals(price.id(), reader.toPrice().id());
+            Assertions.assertEquals(price.instrument(), reader.getInstrument());
+            Assertions.assertEquals(price.ask(), reader.isAsk());
+            Assertions.assertEquals(price.quantity(), reader.getQuantity());
+            Assertions.assertEquals(price.price(), reader.toPrice().price());
+        }
+        Assertions.assertTrue(reader.next());
+        Assertions.assertEquals(10, reader.getId());
+        Assertions.assertEquals(Action.DELETE, reader.getAction());
+        Assertions.assertTrue(reader.getTimestampNanos() > 1_000_000_000_000_000_000L);
+        Assertions.assertFalse(reader.next());
+    }
+
+    /**
+     * prices with more decimal places than the price precision, trailing zeros, more digits than a double
+     * holds and a negative scale are all read back with the same value and scale
+     */
+    @Test
+    void testPricesReadBackExactly(@TempDir Path directory) throws Exception {
+        String[] prices = {"1.123456789", "1.10", "0.000000000000000001", "123456789.123456789", "1E+3", "-0.5"};
+        try (PriceJournal journal = new PriceJournal(directory, 1024)) {
+            for (int i = 0; i < prices.length; i++) {
+                journal.append(Action.INSERT, new Price(i, CurrencyPair.EUR_USD, true, 100, new BigDecimal(prices[i])));
+            }
+            Assertions.assertThrows(ArithmeticException.class, () -> journal.append(Action.INSERT,
+                    new Price(99, CurrencyPair.EUR_USD, true, 100, new BigDecimal("12345678901234567890.5"))));
+        }
+
+        PriceJournalReader reader = new PriceJournalReader(directory);
+        for (String price : prices) {
+            Assertions.assertTrue(reader.next());
+            Assertions.assertEquals(new BigDecimal(price), reader.toPrice().price());
+        }
+        Assertions.assertFalse(reader.next());
+    }
+
+    /**
+     * closing the journal twice is harmless and appending to a closed journal fails, the records appended
+     * before stay readable
+     */
+    @Test
+    void testAppendAfterCloseFails(@TempDir Path directory) throws Exception {
+        PriceJournal journal = new PriceJournal(directory, 1024);
+        journal.append(Action.INSERT, price(0, CurrencyPair.EUR_USD));
+        journal.close();
+        journal.close();
+        Assertions.assertThrows(IllegalStateException.class, () -> journal.append(Action.INSERT, price(1, CurrencyPair.EUR_USD)));
+        Assertions.assertEquals(1, journal.getRecords());
+
+        PriceJournalReader reader = new PriceJournalReader(directory);
+        Assertions.assertTrue(reader.next());
+        Assertions.assertEquals(price(0, CurrencyPair.EUR_USD), reader.toPrice());
+        Assertions.assertFalse(reader.next());
+    }
+
+    private static Price price(int id, CurrencyPair currencyPair) {
+        return new Price(id, currencyPair, id % 2 == 0, 100 + id, new BigDecimal("1.0").add(BigDecimal.valueOf(id, 4)));
+    }
+}
@@ -0,0 +1,89 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.IncomingEdges;
+import com.estar.customcode.algo.RelaxationKernel;
+import com.estar.customcode.algo.ScalarRelaxationKernel;
+import com.estar.customcode.algo.SuperSourceArbitrageFinder;
+import com.estar.customcode.algo.VectorRelaxationKernel;
+import com.estar.customcode.model.DenseGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class RelaxationKernelTest {
+
+    /**
+     * the vector kernel gives exactly the distances and predecessors of the scalar kernel round after round,
+     * on graphs with fewer and more in edges than lanes and with many equal weights
+     */
+    @Test
+    void testVectorKernelSameAsScalar() {
+        RelaxationKernel scalarKernel = new ScalarRelaxationKernel();
+        RelaxationKernel vectorKernel = new VectorRelaxationKernel();
+        Random random = new Random(14);
+        for (int currencies : new int[]{3, 4, 7, 12, 33}) {
+            for (int run = 0; run < 20; run++) {
+                IncomingEdges edges = new IncomingEdges(randomGraph(currencies, random));
+                double[] scalarDistances = new double[currencies];
+                double[] vectorDistances = new double[currencies];
+                int[] scalarPredecessors = new int[currencies];
+                int[] vectorPredecessors = new int[currencies];
+                for (int v = 0; v < currencies; v++) {
+                    scalarPredecessors[v] = v;
+                    vectorPredecessors[v] = v;
+                }
+                double[] scalarNext = new double[currencies];
+                double[] vectorNext = new double[currencies];
+                for (int round = 0; round < currencies; round++) {
+                    boolean scalarRelaxed = scalarKernel.relax(edges, scalarDistances, scalarNext, scalarPredecessors);
+                    boolean vectorRelaxed = vectorKernel.relax(edges, vectorDistances, vectorNext, vectorPredecessors);
+                    Assertions.assertEquals(scalarRelaxed, vectorRelaxed);
+                    Assertions.assertArrayEquals(scalarNext, vectorNext);
+                    Assertions.assertArrayEquals(scalarPredecessors, vectorPredecessors);
+                    System.arraycopy(scalarNext, 0, scalarDistances, 0, currencies);
+                    System.arraycopy(vectorNext, 0, vectorDistances, 0, currencies);
+                }
+            }
+        }
+    }
+
+    /**
+     * the finder reports the same cycles whether the rounds are run by a kernel or in place
+     */
+    @Test
+    void testSameCyclesWithKernel() {
+        Random random = new Random(41);
+        ArbitrageFactorFinder arbitrageFactorFinder = new ArbitrageFactorFinder();
+        SuperSourceArbitrageFinder scalarFinder = new SuperSourceArbitrageFinder(arbitrageFactorFinder,
+                new ScalarRelaxationKernel());
+        SuperSourceArbitrageFinder vectorFinder = new SuperSourceArbitrageFinder(arbitrageFactorFinder,
+                new VectorRelaxationKernel());
+        for (int run = 0; run < 50; run++) {
+            DenseGraph graph = randomGraph(4, random);
+            Assertions.assertEquals(scalarFinder.findCycles(graph), vectorFinder.findCycles(graph));
+        }
+    }
+
+    /**
+     * complete graph with rates around 1, rounded to few values so that equal candidate distances are common
+     */
+    private static DenseGraph randomGraph(int currencies, Random random) {
+        int pairs = currencies * (currencies - 1) / 2;
+        int[] pairBase = new int[pairs];
+        int[] pairQuote = new int[pairs];
+        int pair = 0;
+        for (int base = 0; base < currencies; base++) {
+            for (int quote = base + 1; quote < currencies; quote++) {
+                pairBase[pair] = base;
+                pairQuote[pair++] = quote;
+            }
+        }
+        DenseGraph graph = new DenseGraph(currencies, pairBase, pairQuote);
+        for (pair = 0; pair < pairs; pair++) {
+            if (random.nextInt(10) > 0) {
+                graph.update(pair, 1 + (random.nextInt(5) - 2) / 100d, 1 + (random.nextInt(5) - 2) / 100d);
+            }
+        }
+        return graph;
+    }
+}
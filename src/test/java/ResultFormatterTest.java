@@ -0,0 +1,92 @@
+import com.estar.arbitrage.ArbitrageRecord;
+import com.estar.arbitrage.OpportunityTracker;
+import com.estar.arbitrage.ResultFormatter;
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.InstrumentRegistry;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.customcode.processors.CurrencyOrderBook;
+import com.estar.customcode.processors.OrderBook;
+import com.estar.customcode.processors.TopOfBook;
+import com.estar.orderbook.model.Currency;
+import com.estar.orderbook.model.CurrencyPair;
+import com.estar.orderbook.model.OrderbookListener.Action;
+import com.estar.orderbook.model.Price;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultFormatterTest {
+
+    /**
+     * the record is built from the snapshot the cycle was detected on, books changing afterwards do not
+     * show up in it
+     */
+    @Test
+    void testRecordCarriesSnapshot() {
+        PricePrecision precision = PricePrecision.defaults();
+        OrderBook[] orderBooks = new OrderBook[CurrencyPair.values().length];
+        BestPriceMatrix snapshot = new BestPriceMatrix(precision);
+        int id = 0;
+        for (CurrencyPair currencyPair : CurrencyPair.values()) {
+            int pair = currencyPair.ordinal();
+            OrderBook orderBook = new CurrencyOrderBook(pair, precision);
+            orderBook.manageOrder(Action.INSERT, new Price(++id, currencyPair, true, 100, new BigDecimal("1.10")));
+            orderBook.manageOrder(Action.INSERT, new Price(++id, currencyPair, false, 100, new BigDecimal("1.00")));
+            orderBooks[pair] = orderBook;
+            TopOfBook topOfBook = orderBook.getTopOfBook();
+            snapshot.put(pair, topOfBook.buyTicks(), topOfBook.sellTicks());
+            snapshot.putPrices(pair, topOfBook.buy(), topOfBook.sell());
+        }
+        snapshot.setEpoch(42);
+        TopCycles topCycles = new TopCycles(1, 0, Currency.values().length);
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.01);
+
+        orderBooks[CurrencyPair.EUR_USD.ordinal()].manageOrder(Action.INSERT,
+                new Price(++id, CurrencyPair.EUR_USD, true, 100, new BigDecimal("1.05")));
+        List<ArbitrageRecord> records = new ArrayList<>();
+        new ResultFormatter(InstrumentRegistry.forCurrencyPairs(), orderBooks, records::add).processArbitrageRecord(topCycles, snapshot);
+
+        Assertions.assertEquals(1, records.size());
+        ArbitrageRecord arbitrageRecord = records.get(0);
+        Assertions.assertEquals(42, arbitrageRecord.snapshotEpoch());
+        Assertions.assertEquals(List.of("EUR", "USD", "GBP", "EUR"), arbitrageRecord.currencyPath());
+        ArbitrageRecord.Element element = arbitrageRecord.arbitrageElements().get(0);
+        Assertions.assertEquals("EUR_USD", element.currencyPair());
+        Assertions.assertSame(snapshot.getBuyPrice(CurrencyPair.EUR_USD.ordinal()), element.bestBidPrice());
+        Assertions.assertEquals(0, new BigDecimal("1.10").compareTo(element.bestBidPrice().price()));
+    }
+
+    /**
+     * with the opportunity tracker only the cycles of OPENED and UPDATED events are sized, an opportunity
+     * which persists unchanged is not sized again
+     */
+    @Test
+    void testOnlyReportedCyclesAreSized() {
+        OrderBook[] orderBooks = new OrderBook[CurrencyPair.values().length];
+        BestPriceMatrix snapshot = new BestPriceMatrix(PricePrecision.defaults());
+        TopCycles topCycles = new TopCycles(2, 0, Currency.values().length);
+        int[] cycle = {Currency.EUR.ordinal(), Currency.GBP.ordinal(), Currency.USD.ordinal()};
+        int[] other = {Currency.EUR.ordinal(), Currency.CHF.ordinal(), Currency.USD.ordinal()};
+        topCycles.offer(cycle, cycle.length, 0.02);
+        topCycles.offer(other, other.length, 0.01);
+        OpportunityTracker opportunityTracker = new OpportunityTracker(0.001, Currency.values().length, 2);
+        List<ArbitrageRecord> records = new ArrayList<>();
+        List<Integer> sized = new ArrayList<>();
+        ResultFormatter resultFormatter = new ResultFormatter(InstrumentRegistry.forCurrencyPairs(), orderBooks, records::add);
+
+        resultFormatter.processArbitrageEvents(topCycles, snapshot, opportunityTracker, sized::add);
+        Assertions.assertEquals(List.of(0, 1), sized);
+        resultFormatter.processArbitrageEvents(topCycles, snapshot, opportunityTracker, sized::add);
+        Assertions.assertEquals(List.of(0, 1), sized);
+        topCycles.offer(other, other.length, 0.03);
+        resultFormatter.processArbitrageEvents(topCycles, snapshot, opportunityTracker, sized::add);
+        // the improved cycle ranks first now
+        Assertions.assertEquals(List.of(0, 1, 0), sized);
+        Assertions.assertEquals(3, records.size());
+    }
+}
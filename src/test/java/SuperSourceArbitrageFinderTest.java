@@ -0,0 +1,95 @@
+import com.estar.customcode.algo.*;
+import com.estar.customcode.model.BestPriceMatrix;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.PricePrecision;
+import com.estar.orderbook.model.CurrencyPair;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class SuperSourceArbitrageFinderTest {
+
+    /**
+     * the single pass finder reports every pair of the triangle EUR -> USD -> GBP -> EUR with the product of
+     * its rates, in place and with the relaxation kernel
+     */
+    @Test
+    void testKnownCycleFactor() {
+        Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
+        instrumentData.put(CurrencyPair.EUR_USD, new BigDecimal[]{new BigDecimal("1.10"), new BigDecimal("0.50")});
+        instrumentData.put(CurrencyPair.USD_GBP, new BigDecimal[]{new BigDecimal("0.80"), new BigDecimal("0.50")});
+        instrumentData.put(CurrencyPair.EUR_GBP, new BigDecimal[]{new BigDecimal("0.50"), new BigDecimal("1.1627907")});
+
+        double expected = 1.10 * 0.80 * 1.1627907 - 1;
+        for (SuperSourceArbitrageFinder finder : finders()) {
+            Map<CurrencyPair, BigDecimal> result = runFinder(finder, instrumentData);
+            Assertions.assertEquals(Set.of(CurrencyPair.EUR_USD, CurrencyPair.USD_GBP, CurrencyPair.EUR_GBP),
+                    result.keySet());
+            // the reported factor is rounded up to 3 decimal places
+            result.values().forEach(factor -> Assertions.assertEquals(expected, factor.doubleValue(), 1e-3));
+        }
+    }
+
+    /**
+     * no negative cycle for consistent cross rates with a spread on every pair
+     */
+    @Test
+    void testNoResultForNonArbitrage() {
+        Map<CurrencyPair, BigDecimal[]> instrumentData = new HashMap<>();
+        instrumentData.put(CurrencyPair.USD_GBP, new BigDecimal[]{new BigDecimal("1.24"), new BigDecimal(1 / 1.25)});
+        instrumentData.put(CurrencyPair.EUR_USD, new BigDecimal[]{new BigDecimal("1.08"), new BigDecimal(1 / 1.09)});
+        instrumentData.put(CurrencyPair.EUR_GBP, new BigDecimal[]{new BigDecimal("1.3392"), new BigDecimal(1 / 1.35)});
+
+        for (SuperSourceArbitrageFinder finder : finders()) {
+            Assertions.assertTrue(runFinder(finder, instrumentData).isEmpty());
+        }
+    }
+
+    /**
+     * with the kernel the incoming edges are laid out once for a graph, later runs only refresh the weights and
+     * still see pairs quoted, requoted and removed since the last run
+     */
+    @Test
+    void testKernelLayoutBuiltOncePerGraph() {
+        SuperSourceArbitrageFinder finder = new SuperSourceArbitrageFinder(new ArbitrageFactorFinder(),
+                RelaxationKernel.vectorOrScalar());
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        int eurUsd = CurrencyPair.EUR_USD.ordinal();
+        int usdGbp = CurrencyPair.USD_GBP.ordinal();
+        int eurGbp = CurrencyPair.EUR_GBP.ordinal();
+        graph.update(eurUsd, 1.08, 1 / 1.09);
+        graph.update(usdGbp, 1.24, 1 / 1.25);
+        Assertions.assertTrue(finder.findCycles(graph).isEmpty());
+
+        graph.update(eurGbp, 0.50, 1.1627907);
+        graph.update(eurUsd, 1.10, 0.50);
+        graph.update(usdGbp, 0.80, 0.50);
+        Assertions.assertEquals(Set.of(CurrencyPair.EUR_USD, CurrencyPair.USD_GBP, CurrencyPair.EUR_GBP),
+                finder.findCycles(graph).keySet());
+
+        graph.remove(eurGbp);
+        Assertions.assertTrue(finder.findCycles(graph).isEmpty());
+        Assertions.assertEquals(1, finder.getLayoutBuilds());
+
+        finder.findCycles(DenseGraph.forCurrencyPairs());
+        Assertions.assertEquals(2, finder.getLayoutBuilds());
+    }
+
+    private static SuperSourceArbitrageFinder[] finders() {
+        return new SuperSourceArbitrageFinder[]{
+                new SuperSourceArbitrageFinder(new ArbitrageFactorFinder()),
+                new SuperSourceArbitrageFinder(new ArbitrageFactorFinder(), RelaxationKernel.vectorOrScalar())
+        };
+    }
+
+    private static Map<CurrencyPair, BigDecimal> runFinder(SuperSourceArbitrageFinder finder,
+                                                           Map<CurrencyPair, BigDecimal[]> instrumentData) {
+        DenseGraph graph = DenseGraph.forCurrencyPairs();
+        graph.update(BestPriceMatrix.of(instrumentData, PricePrecision.defaults()));
+        return finder.findCycles(graph);
+    }
+}
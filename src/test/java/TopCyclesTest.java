@@ -0,0 +1,166 @@
+import com.estar.customcode.algo.ArbitrageFactorFinder;
+import com.estar.customcode.algo.ArbitragePathFinder;
+import com.estar.customcode.algo.DetectionResult;
+import com.estar.customcode.algo.EdgeRelaxer;
+import com.estar.customcode.algo.ParallelArbitragePathFinder;
+import com.estar.customcode.algo.TopCycles;
+import com.estar.customcode.model.DenseGraph;
+import com.estar.customcode.model.InstrumentRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class TopCyclesTest {
+
+    /**
+     * rotations of a cycle are kept once with the best factor, the opposite direction is another cycle
+     */
+    @Test
+    void testRotationsAreOneCycle() {
+        TopCycles topCycles = new TopCycles(5, 0, 4);
+        // predecessor order, traded 0 -> 2 -> 1 -> 0
+        Assertions.assertTrue(topCycles.offer(new int[]{0, 1, 2}, 3, 0.01));
+        Assertions.assertTrue(topCycles.offer(new int[]{1, 2, 0}, 3, 0.02));
+        Assertions.assertFalse(topCycles.offer(new int[]{2, 0, 1}, 3, 0.015));
+        Assertions.assertTrue(topCycles.offer(new int[]{0, 2, 1}, 3, 0.005));
+        Assertions.assertFalse(topCycles.offer(new int[]{3, 1}, 2, 0));
+
+        Assertions.assertEquals(2, topCycles.size());
+        Assertions.assertEquals(0.02, topCycles.getFactor(0));
+        Assertions.assertArrayEquals(new int[]{0, 2, 1}, cycle(topCycles, 0));
+        Assertions.assertEquals(0.005, topCycles.getFactor(1));
+        Assertions.assertArrayEquals(new int[]{0, 1, 2}, cycle(topCycles, 1));
+    }
+
+    /**
+     * only the K best cycles are kept and ranked the same whatever the order they are offered in, equal
+     * factors included
+     */
+    @Test
+    void testBestCyclesInAnyOrder() {
+        List<int[]> cycles = new ArrayList<>();
+        List<Double> factors = new ArrayList<>();
+        for (int first = 0; first < 6; first++) {
+            for (int second = first + 1; second < 6; second++) {
+                cycles.add(new int[]{first, second});
+                factors.add(factor(first, second));
+            }
+        }
+        factors.sort(Collections.reverseOrder());
+        int[][] expected = null;
+        Random random = new Random(18);
+        for (int run = 0; run < 20; run++) {
+            Collections.shuffle(cycles, random);
+            TopCycles topCycles = new TopCycles(7, 0, 6);
+            for (int[] cycle : cycles) {
+                topCycles.offer(cycle, 2, factor(cycle[0], cycle[1]));
+            }
+            Assertions.assertEquals(7, topCycles.size());
+            int[][] ranked = new int[7][];
+            for (int rank = 0; rank < 7; rank++) {
+                ranked[rank] = cycle(topCycles, rank);
+                Assertions.assertEquals(factors.get(rank), topCycles.getFactor(rank));
+            }
+            if (expected == null) {
+                expected = ranked;
+            }
+            Assertions.assertArrayEquals(expected, ranked);
+        }
+    }
+
+    /**
+     * a partial result keeps only the best cycle of a pair, merging it still keeps every cycle of its top
+     * cycles
+     */
+    @Test
+    void testMergeKeepsCyclesSharingPair() {
+        DetectionResult partialResult = new DetectionResult(6, 4);
+        partialResult.setTopCycles(new TopCycles(5, 0, 4));
+        partialResult.record(0, 0.02, new int[]{0, 1, 2}, 3);
+        partialResult.record(0, 0.01, new int[]{0, 1, 3}, 3);
+        DetectionResult result = new DetectionResult(6, 4);
+        result.setTopCycles(new TopCycles(5, 0, 4));
+
+        result.merge(partialResult);
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals(0.02, result.getFactor(0));
+        TopCycles topCycles = result.getTopCycles();
+        Assertions.assertEquals(2, topCycles.size());
+        Assertions.assertArrayEquals(new int[]{0, 2, 1}, cycle(topCycles, 0));
+        Assertions.assertArrayEquals(new int[]{0, 3, 1}, cycle(topCycles, 1));
+        Assertions.assertEquals(0.01, topCycles.getFactor(1));
+    }
+
+    /**
+     * the parallel search keeps the same top cycles as the serial one, not only the best cycle of every pair
+     */
+    @Test
+    void testParallelSearchKeepsSameCycles() {
+        Random random = new Random(7);
+        int currencies = 40;
+        int pairs = currencies * (currencies - 1) / 2;
+        int[] pairBase = new int[pairs];
+        int[] pairQuote = new int[pairs];
+        int pair = 0;
+        for (int base = 0; base < currencies; base++) {
+            for (int quote = base + 1; quote < currencies; quote++) {
+                pairBase[pair] = base;
+                pairQuote[pair++] = quote;
+            }
+        }
+        DenseGraph graph = new DenseGraph(currencies, pairBase, pairQuote);
+        double[] values = new double[currencies];
+        for (int currency = 0; currency < currencies; currency++) {
+            values[currency] = Math.exp(random.nextGaussian());
+        }
+        for (pair = 0; pair < pairs; pair++) {
+            double rate = values[pairQuote[pair]] / values[pairBase[pair]];
+            // a few pairs pay above their fair value, every one of them opens many cycles
+            double premium = pair % 29 == 0 ? 0.01 : -0.0005;
+            graph.update(pair, rate * (1 + premium), 1 / rate * 0.9995);
+        }
+        ArbitragePathFinder serialFinder = new ArbitragePathFinder(new EdgeRelaxer(), new ArbitrageFactorFinder(),
+                InstrumentRegistry.forCurrencyPairs());
+        // leaves of 5 sources, whose cycles share pairs
+        ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+        try {
+            DetectionResult serialResult = new DetectionResult(graph);
+            serialResult.setTopCycles(new TopCycles(8, 0, currencies));
+            serialFinder.detect(graph, serialResult);
+            DetectionResult parallelResult = new DetectionResult(graph);
+            parallelResult.setTopCycles(new TopCycles(8, 0, currencies));
+            new ParallelArbitragePathFinder(serialFinder, forkJoinPool, 1).detect(graph, parallelResult);
+
+            TopCycles expected = serialResult.getTopCycles();
+            TopCycles topCycles = parallelResult.getTopCycles();
+            Assertions.assertTrue(expected.size() > 1);
+            Assertions.assertEquals(expected.size(), topCycles.size());
+            for (int rank = 0; rank < expected.size(); rank++) {
+                Assertions.assertEquals(expected.getFactor(rank), topCycles.getFactor(rank));
+                Assertions.assertArrayEquals(cycle(expected, rank), cycle(topCycles, rank));
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+    /**
+     * factors 0.01 to 0.05, many cycles share one
+     */
+    private static double factor(int first, int second) {
+        return ((first * 6 + second) % 5 + 1) / 100d;
+    }
+
+    private static int[] cycle(TopCycles topCycles, int rank) {
+        int[] cycle = new int[topCycles.getCycleLength(rank)];
+        for (int i = 0; i < cycle.length; i++) {
+            cycle[i] = topCycles.getCycleVertex(rank, i);
+        }
+        return cycle;
+    }
+}